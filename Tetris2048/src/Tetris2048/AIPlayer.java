@@ -32,18 +32,38 @@ import java.util.LinkedList;
 import java.util.NoSuchElementException;
 
 /**
+ * Plays by the rules above, whose column visit order, uppermost rule & "unused column" are
+ * RulesParameters, loaded from the file of RulesParameters.CONFIG_PROPERTY if set, e.g. as tuned by RulesTuner.
  *
  * @author ILoveIdunna
  */
-public class AIPlayer {
-    private static int[] colVisitOrder = {0,2,3};
+public class AIPlayer implements GameAI {
+    private static final int LAST_COL = NO_COL - 1; //reached by right moves only, even to merge at the bottom
+    private final RulesParameters parameters;
+    private final int[] absorbingCols; //the columns visited, but LAST_COL, dropped into instead: {0,2} by default
+    private final int[][] valuesByCol; //of colList, for parameters.chooseCol(..)
+    private final int[] lengthByCol;
     private Tile latestTile;
+    private int latestTileSerialNo; //a Tile obj is reused by later tiles, so a new tile is told by its serial no
     private ArrayList<ArrayList<Tile>> colList; //the latestTile is not included
     private TileList tileListSource;
     private LinkedList<Integer> keyCodeInputForGame;
     
     public AIPlayer(TileList tileListSource)
     {
+        this(tileListSource, RulesParameters.fromSystemProperties(NO_COL));
+    }
+    AIPlayer(TileList tileListSource, RulesParameters parameters)
+    {
+        this.parameters = parameters;
+        int[] colVisitOrder = parameters.getColVisitOrder();
+        int noOfAbsorbingCols = 0;
+        for (int col : colVisitOrder)
+            if (col != LAST_COL)    //a BOTTOM choice of any other column falls down the lane column, to be absorbed
+                colVisitOrder[noOfAbsorbingCols++] = col;
+        absorbingCols = Arrays.copyOf(colVisitOrder, noOfAbsorbingCols);
+        valuesByCol = new int[NO_COL][NO_ROW];
+        lengthByCol = new int[NO_COL];
         colList = new ArrayList<ArrayList<Tile>>(NO_COL);
         for (int i = 0; i < NO_COL; i++)
         {
@@ -55,14 +75,18 @@ public class AIPlayer {
     
     //**  public methods  **//
     //
+    @Override
     public int getAINextInput()
     {
+        long startTime_ns = System.nanoTime();
+        boolean pathDetermined = false;
         try
         {
             //**determine a path for latest Tile
             if (latestTile == null)
             {
                 latestTile = tileListSource.getLatestTile();
+                latestTileSerialNo = latestTile.getSerialNo();
                 keyCodeInputForGame.addLast(KeyEvent.VK_DOWN);
             }
             else
@@ -73,16 +97,21 @@ public class AIPlayer {
                     keyCodeInputForGame.clear();
                     refreshColList();
                     setPathBeforeLowerBoundary();
+                    pathDetermined = true;
                 }
                 
                 //handle path when this Tile is on the lower boundary
                 if (latestTileOnLowerBoundary() && latestTile.readyForNewPplMv())
                 {
                     keyCodeInputForGame.clear();
-                    if (!absorbTileOnLowerBoundary(0))
-                        absorbTileOnLowerBoundary(2);
+                    for (int col : absorbingCols)
+                        if (absorbTileOnLowerBoundary(col))
+                            break;
+                    pathDetermined = !keyCodeInputForGame.isEmpty();
                 }
             }
+            if (pathDetermined)
+                recordDecision(System.nanoTime() - startTime_ns);
             
             //**return the determined path for the latest Tile
             if (latestTile.readyForNewPplMv())
@@ -96,6 +125,7 @@ public class AIPlayer {
             return -2;
         }
     }
+    @Override
     public void nextInputTaken()
     {
         keyCodeInputForGame.removeFirst();
@@ -106,14 +136,28 @@ public class AIPlayer {
     
     //**  private methods  **//
     //
+    private void recordDecision(long computeTime_ns)
+    {
+        FlightEvents.AIDecision event = new FlightEvents.AIDecision();
+        if (!event.shouldCommit())
+            return;
+        StringBuilder path = new StringBuilder();
+        for (Integer keyCode : keyCodeInputForGame)
+            path.append(KeyEvent.getKeyText(keyCode)).append(' ');
+        event.value = latestTile.getValue();
+        event.path = path.toString().trim();
+        event.computeTime = computeTime_ns;
+        event.commit();
+    }
     private boolean updateIfLatestTileChanged()
     {
         Tile latestTile = tileListSource.getLatestTile();
-        if (this.latestTile == latestTile)
+        if (this.latestTile == latestTile && latestTileSerialNo == latestTile.getSerialNo())
             return false;
         else
         {
-            this.latestTile = tileListSource.getLatestTile();
+            this.latestTile = latestTile;
+            latestTileSerialNo = latestTile.getSerialNo();
             return true;
         }
     }
@@ -138,88 +182,31 @@ public class AIPlayer {
     }
     private void setPathBeforeLowerBoundary()
     {
-        for (int i = 0; i < colVisitOrder.length; i++)
+        for (int col = 0; col < NO_COL; col++)
         {
-            if (visitCol(colVisitOrder[i]))
-                return;
+            ArrayList<Tile> tiles = colList.get(col);
+            lengthByCol[col] = Math.min(tiles.size(), NO_ROW);
+            for (int i = 0; i < lengthByCol[col]; i++)
+                valuesByCol[col][i] = tiles.get(i).getValue();
         }
-        generateKeyCodeInput(3,true);
-    }
-    
-    private boolean visitCol(int colNo)
-    {
-        //**examine the column from low to high
-        ArrayList<Tile> col = colList.get(colNo);
-        int colLength = col.size();
-        if (colLength == 0) //when it is an empty column
-        {
-            generateKeyCodeInput(colNo, false);
-            return true;
-        }
-        else
-        {
-            if (col.get(0).getValue() == latestTile.getValue()) //when the lowest one has a value equal to latestTile's
-            {
-                generateKeyCodeInput(colNo, true);
-                return true;
-            }
-            else
-            {
-                if (colLength == 1)
-                {
-                    generateKeyCodeInput(colNo, false);
-                    return true;
-                }
-                else
-                {
-                    if (col.get(colLength - 1).getValue() >= latestTile.getValue()) //when the uppermost one has a value >= latestTile's
-                    {
-                        if (colLength == NO_ROW - 1 && //when reaching upper boundary
-                            col.get(colLength - 1).getValue() != latestTile.getValue())
-                            return false;
-                        generateKeyCodeInput(colNo, false);
-                        return true;
-                    }
-                }
-            }
-        }
-        return false;
+        int choice = parameters.chooseCol(valuesByCol, lengthByCol, NO_ROW, latestTile.getValue());
+        generateKeyCodeInput(choice & RulesParameters.COL_MASK, (choice & RulesParameters.BOTTOM) != 0);
     }
     
+    //new tiles come in col0, so a path is made of right moves to the column, & then a down move.
+    //a tile to merge at the bottom falls down the lane column instead, kept empty by the rules
     private void generateKeyCodeInput(int colNo, boolean bottom)
     {
-        if (bottom && colNo !=3)
+        if (bottom && colNo != LAST_COL)
         {
-            switch(colNo)
-            {
-                case 0:
-                    keyCodeInputForGame.addLast(KeyEvent.VK_RIGHT);
-                    keyCodeInputForGame.addLast(KeyEvent.VK_DOWN);
-                    break;
-                case 2:
-                    keyCodeInputForGame.addLast(KeyEvent.VK_RIGHT);
-                    keyCodeInputForGame.addLast(KeyEvent.VK_DOWN);
-                    break;
-            }
+            for (int i = 0; i < RulesParameters.LANE_COL; i++)
+                keyCodeInputForGame.addLast(KeyEvent.VK_RIGHT);
+            keyCodeInputForGame.addLast(KeyEvent.VK_DOWN);
         }
-        else if (!bottom && colNo!=3)
-        {
-            switch(colNo)
-            {
-                case 0:
-                    keyCodeInputForGame.addLast(KeyEvent.VK_DOWN);
-                    break;
-                case 2:
-                    keyCodeInputForGame.addLast(KeyEvent.VK_RIGHT);
-                    keyCodeInputForGame.addLast(KeyEvent.VK_RIGHT);
-                    keyCodeInputForGame.addLast(KeyEvent.VK_DOWN);
-                    break;
-            }
-        }else if (colNo == 3)
+        else
         {
-            keyCodeInputForGame.addLast(KeyEvent.VK_RIGHT);
-            keyCodeInputForGame.addLast(KeyEvent.VK_RIGHT);
-            keyCodeInputForGame.addLast(KeyEvent.VK_RIGHT);
+            for (int i = 0; i < colNo; i++)
+                keyCodeInputForGame.addLast(KeyEvent.VK_RIGHT);
             keyCodeInputForGame.addLast(KeyEvent.VK_DOWN);
         }
     }
@@ -260,23 +247,17 @@ public class AIPlayer {
      * @param row   the lowest row is marked as 0
      * @return 
      */
+    //called in every frame while latestTile is on the lower boundary,
+    //hence the tile is looked up by its grid instead of refreshing colList
     private Tile getSettledTile(int targetCol, int targetRow)
     {
-        int targetTop;
-        ArrayList<Tile> col;
+        int targetTop, targetLeft;
+        Tile tile;
         
-        refreshColList();
         targetTop = LOWER_BOUNDARY - (targetRow + 1) * GRID_SIZE;
-        col = colList.get(targetCol);
-        for (Tile tile : col)
-        {
-            int topBeingChecked = tile.getCurrPosi().getTop();
-            if (topBeingChecked == targetTop)
-                return tile;
-            else if (topBeingChecked < targetTop)
-                return null;
-        }
-        return null;
+        targetLeft = NEW_TILE_LEFT + targetCol * GRID_SIZE;
+        tile = tileListSource.tileAt(targetTop, targetLeft);
+        return (tile == latestTile) ? null : tile;
     }
     //
     //**  END of private methods  **//
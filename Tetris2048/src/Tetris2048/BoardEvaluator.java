@@ -0,0 +1,156 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package Tetris2048;
+
+/**
+ * Evaluates fields by hand-made features, many at once, for the leaves of a search.
+ *
+ * A field is taken packed into a long, as by Tablebase.keyOf(..): 4 bits per playable cell, column by column.
+ * The features are:
+ *   empty cells
+ *   merges in reach: a tile lying on one of the same value, i.e. a chain a drop of the right value completes
+ *   inversions: a tile lying on one of a lower value, which the column can no longer merge down to
+ *
+ * The features of a field are counted for all its cells at once, within the long (SWAR): the nibbles are
+ * spread into 2 longs of 8 bytes, the cells at even & at odd positions, so that each cell lies in the same byte
+ * as the one below or above it, & the bytes are compared by carries that cannot cross into the next byte.
+ * evaluate(long[], ..) runs this over a batch, e.g. the 16 fields 2 placements away at the last ply of a search,
+ * in one tight loop with no branch per cell. evaluateByCells(..) counts cell by cell, for the checking of it.
+ *
+ * @author ILoveIdunna
+ */
+class BoardEvaluator
+{
+    static final String SWAR_PROPERTY = "tetris2048.ai.eval.swar";  //"false" to count cell by cell
+    static final float DEFAULT_EMPTY_WEIGHT = 16, DEFAULT_MERGE_WEIGHT = 6, DEFAULT_INVERSION_WEIGHT = -8;
+    private static final long LOW_NIBBLES = 0x0F0F0F0F0F0F0F0FL;
+    private static final long LOW_BITS = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    private final int noOfRows, noOfCols;       //of the playable cells
+    private final int noOfCells;
+    private final long cellsMask;               //of the nibbles in use
+    private final long evenPairs, oddPairs;     //byte masks of pairs of a cell & the one above it, see pairMask(..)
+    private final float emptyWeight, mergeWeight, inversionWeight;
+    private final boolean swar;
+
+    BoardEvaluator(int noOfRows, int noOfCols)
+    {
+        this(noOfRows, noOfCols, DEFAULT_EMPTY_WEIGHT, DEFAULT_MERGE_WEIGHT, DEFAULT_INVERSION_WEIGHT,
+             !"false".equalsIgnoreCase(System.getProperty(SWAR_PROPERTY)));
+    }
+    /**
+     * @param noOfRows   including the row where new tiles are created, as of GridEngine
+     */
+    BoardEvaluator(int noOfRows, int noOfCols, float emptyWeight, float mergeWeight, float inversionWeight, boolean swar)
+    {
+        if (!Tablebase.fits(noOfRows, noOfCols))
+            throw new IllegalArgumentException("a board of " + noOfRows + "x" + noOfCols + " does not fit in a long");
+        this.noOfRows = noOfRows - 1;
+        this.noOfCols = noOfCols;
+        noOfCells = this.noOfRows * noOfCols;
+        cellsMask = (noOfCells == 16) ? -1L : (1L << (4 * noOfCells)) - 1;
+        evenPairs = pairMask(0);
+        oddPairs = pairMask(1);
+        this.emptyWeight = emptyWeight;
+        this.mergeWeight = mergeWeight;
+        this.inversionWeight = inversionWeight;
+        this.swar = swar;
+    }
+    //a byte set to 1 for each pair of cells (n, n + 1) with n of the parity, both in the same column
+    private long pairMask(int parity)
+    {
+        long mask = 0;
+        for (int cell = parity; cell + 1 < noOfCells; cell += 2)
+            if ((cell + 1) % noOfRows != 0)
+                mask |= 1L << (8 * (cell / 2));
+        return mask;
+    }
+
+    //**  public methods  **//
+    //
+    public float evaluate(GridEngine field)
+    {
+        long board = Tablebase.keyOf(field);
+        return swar ? evaluate(board) : evaluateByCells(board);
+    }
+    /**
+     * Evaluates boards[0 .. count - 1] into values[0 .. count - 1].
+     */
+    public void evaluate(long[] boards, int count, float[] values)
+    {
+        if (!swar)
+        {
+            for (int i = 0; i < count; i++)
+                values[i] = evaluateByCells(boards[i]);
+            return;
+        }
+        for (int i = 0; i < count; i++)
+            values[i] = evaluate(boards[i]);
+    }
+    public float evaluate(long board)
+    {
+        long even = board & LOW_NIBBLES;            //cells 0, 2, 4.. in bytes 0, 1, 2..
+        long odd = (board >>> 4) & LOW_NIBBLES;     //cells 1, 3, 5..
+        //each pair as (the lower cell, the upper cell) in one byte lane
+        long lowerEven = even, upperEven = odd;                     //pairs (0,1), (2,3)..
+        long lowerOdd = odd, upperOdd = even >>> 8;                 //pairs (1,2), (3,4)..
+        int merges = Long.bitCount((equalBytes(lowerEven, upperEven) & nonZeroBytes(upperEven) & evenPairs)
+                                   | ((equalBytes(lowerOdd, upperOdd) & nonZeroBytes(upperOdd) & oddPairs) << 1));
+        int inversions = Long.bitCount((greaterBytes(upperEven, lowerEven) & evenPairs)
+                                       | ((greaterBytes(upperOdd, lowerOdd) & oddPairs) << 1));
+        int empty = noOfCells - Long.bitCount(nonZeroNibbles(board) & cellsMask);
+        return emptyWeight * empty + mergeWeight * merges + inversionWeight * inversions;
+    }
+    //the same as evaluate(long board), counted cell by cell
+    public float evaluateByCells(long board)
+    {
+        int empty = 0, merges = 0, inversions = 0;
+        for (int col = 0; col < noOfCols; col++)
+            for (int row = 0; row < noOfRows; row++)
+            {
+                int cell = (int) (board >>> (4 * (col * noOfRows + row))) & 0xF;
+                if (cell == 0)
+                    empty++;
+                if (row == 0 || cell == 0)
+                    continue;
+                int below = (int) (board >>> (4 * (col * noOfRows + row - 1))) & 0xF;
+                if (cell == below)
+                    merges++;
+                else if (cell > below)
+                    inversions++;
+            }
+        return emptyWeight * empty + mergeWeight * merges + inversionWeight * inversions;
+    }
+    //
+    //**  END of public methods  **//
+
+    //**  byte lanes, holding values of 0-15  **//
+    //
+    //bit 0 of each byte set if the bytes are equal
+    private static long equalBytes(long a, long b)
+    {
+        return nonZeroBytes(a ^ b) ^ LOW_BITS;
+    }
+    //bit 0 of each byte set if the byte of a is greater than the one of b
+    private static long greaterBytes(long a, long b)
+    {
+        //b - a borrows, i.e. clears the guard bit, only where a > b. no borrow crosses a byte, thanks to the guard
+        return ~((b | HIGH_BITS) - a) >>> 7 & LOW_BITS;
+    }
+    //bit 0 of each byte set if the byte is not 0
+    private static long nonZeroBytes(long a)
+    {
+        return ((a + 0x7F7F7F7F7F7F7F7FL) >>> 7) & LOW_BITS;
+    }
+    //bit 0 of each nibble set if the nibble is not 0
+    private static long nonZeroNibbles(long board)
+    {
+        return (board | board >>> 1 | board >>> 2 | board >>> 3) & 0x1111111111111111L;
+    }
+    //
+    //**  END of byte lanes  **//
+}
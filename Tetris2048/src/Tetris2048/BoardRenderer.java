@@ -0,0 +1,172 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package Tetris2048;
+
+import static Tetris2048.GameFieldData.*;
+import game.v2.Console;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+
+/**
+ * Draws snapshots on a DrawSurface, i.e. game.v2.Console (the Swing path) or a BufferStrategy canvas.
+ *
+ * @author ILoveIdunna
+ */
+class BoardRenderer implements SnapshotRenderer
+{
+    //"tilesImgMap" as a container of the images of tiles.
+    //running Console.loadImage(String imagePath) consumes a lot of resource, which may slow down fps.
+    //hence, build a map and reuse loaded Image obj
+    private final HashMap<Integer, Image> tilesImgMap;
+    private final DrawSurface surface;
+    private final Image background;
+    private final boolean showFps;
+    private int frameCount;         //frames drawn since frameCountStartTime
+    private long frameCountStartTime_ms;
+    private float fpsActual;
+    private final FrameProfiler profiler;
+
+    BoardRenderer(DrawSurface surface, Image background, boolean showFps)
+    {
+        this.surface = surface;
+        this.background = (background == null) ? null : surface.prepareImage(background);
+        this.showFps = showFps;
+        tilesImgMap = new HashMap<Integer, Image>(11);
+        //initialize the images of tiles of various values
+        for (int i = 2; i <= 2048; i*=2)
+        {
+            String imgPath = TILE_IMG_DIR_RELATIVE_PATH + i + TILE_IMG_FILE_EXTENSION;
+            Image img = Console.loadImage(imgPath);
+            if (GRID_SIZE != DEFAULT_GRID_SIZE)
+                img = scaleToGrid(img);
+            img = surface.prepareImage(img);
+            tilesImgMap.put(i, img);
+        }
+        frameCountStartTime_ms = System.currentTimeMillis();
+        profiler = new FrameProfiler();
+    }
+
+    @Override
+    public void render(BoardSnapshot snapshot)
+    {
+        //the HUD is drawn in between the tiles, as it used to be.
+        //hence, times are taken at each switch between the two. see FrameProfiler
+        long renderStartTime_ns = System.nanoTime(), hudStartTime_ns, hudTime_ns;
+        if (background == null)
+            surface.clear();
+        else
+            surface.drawImage(0, 0, background);
+
+        hudStartTime_ns = System.nanoTime();
+        if (showFps)
+            surface.drawText(5, 15, "FPS: " + String.format("%.2f", fpsActual));
+        if (snapshot.isAiOn())
+            surface.drawText((int)(LEFT_BOUNDARY + GRID_SIZE * 1.6), NEW_TILE_TOP + 22,
+                            "AI on", new Font(null,2,26), Color.yellow);
+        hudTime_ns = System.nanoTime() - hudStartTime_ns;
+
+        displayTiles(snapshot);
+
+        hudStartTime_ns = System.nanoTime();
+        displayNextValueAndMode(snapshot.getNextValue(), snapshot.getMode());
+        displayScores(snapshot.getCurrScore(), snapshot.getBestScore());
+        displayGameDuration(snapshot.getGameDuration());
+        if (snapshot.isProfilerOn())
+            profiler.draw(surface, LEFT_BOUNDARY + 5, NEW_TILE_TOP + 40);
+        hudTime_ns += System.nanoTime() - hudStartTime_ns;
+
+        surface.update();
+        profiler.record(snapshot.getAiTime(), snapshot.getSimulationTime(),
+                        System.nanoTime() - renderStartTime_ns - hudTime_ns, hudTime_ns);
+        countFrame();
+    }
+
+    //the images of tiles are drawn for the default grid, with a margin of 10px.
+    //they are scaled once here, rather than by every drawImage(..)
+    private static Image scaleToGrid(Image img)
+    {
+        int width = img.getWidth(null) * GRID_SIZE / DEFAULT_GRID_SIZE,
+            height = img.getHeight(null) * GRID_SIZE / DEFAULT_GRID_SIZE;
+        if (width <= 0 || height <= 0)
+            return img;
+        BufferedImage scaledImg = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = scaledImg.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(img, 0, 0, width, height, null);
+        g.dispose();
+        return scaledImg;
+    }
+
+    private void displayTiles(BoardSnapshot snapshot)
+    {
+        int noOfTiles = snapshot.getNoOfTiles();
+        //the latest tile is the last one in the snapshot.
+        //the next value & mode never overlap the tiles, so all tiles are drawn in one go
+        for (int i = 0; i < noOfTiles; i++)
+            surface.drawImage(snapshot.getTileLeft(i), snapshot.getTileTop(i),
+                                tilesImgMap.get(snapshot.getTileValue(i)));
+    }
+    private void displayNextValueAndMode(int nextValue, int mode)
+    {
+        //display next tile's value
+        surface.drawText(NEXT_VALUE_LEFT,NEXT_VALUE_BOTTOM,String.valueOf(nextValue), 
+                        new Font(null,3,26), new Color(0x00,0x00,0x00,0xFF));
+        //display mode
+        if (mode == TileList.EASY_MODE) 
+            surface.drawText(MODE_LEFT,MODE_BOTTOM,"Easy", 
+                            new Font(null,2,26), new Color(0x00,0x88,0x88,0xFF));
+        else if (mode == TileList.HARD_MODE)
+            surface.drawText(MODE_LEFT,MODE_BOTTOM,"HARD", 
+                            new Font(null,3,28), new Color(0xFF,0x00,0x00,0xFF));
+        else if (mode == TileList.HYPER_MODE)
+            surface.drawText(MODE_LEFT,MODE_BOTTOM,"HYPER", 
+                            new Font(null,3,28), new Color(0xAA,0x00,0xFF,0xFF));
+    }
+    private void displayScores(int currScore, int bestScore)
+    {
+        int noOfDigitOfCurrScore = 0, noOfDigitOfBestScore = 0, //used to adjust the position
+                                                            //of scores according to their numbers of digits
+            fontSize;
+        for (int i = 1; i < currScore; i *= 10)
+            noOfDigitOfCurrScore++;
+        for (int i = 1; i < bestScore; i *= 10)
+            noOfDigitOfBestScore++;
+        fontSize = 24;
+        surface.drawText(CURR_SCORE_LEFT - noOfDigitOfCurrScore*(fontSize/4),
+                        CURR_SCORE_BOTTOM,String.valueOf(currScore), 
+                        new Font(null,1,fontSize), new Color(0x00,0x00,0x00,0xFF));
+        surface.drawText(BEST_SCORE_LEFT - noOfDigitOfBestScore*(fontSize/4),
+                        BEST_SCORE_BOTTOM,String.valueOf(bestScore), 
+                        new Font(null,3,fontSize), new Color(0xBB,0x00,0x00,0xFF));
+    }
+    private void displayGameDuration(long gameDuration_ms)
+    {
+        String mm, ss;
+        long min, sec;
+        min = gameDuration_ms / 60000;
+        sec = gameDuration_ms / 1000 % 60;
+        mm = (min >= 10) ? "" + min : "0" + min; 
+        ss = (sec >= 10) ? "" + sec : "0" + sec; 
+        surface.drawText((int)(LEFT_BOUNDARY + GRID_SIZE * 1.6), NEW_TILE_TOP - 22,
+                            mm + ":" + ss, new Font(null,2,26), Color.BLACK);
+    }
+    private void countFrame()
+    {
+        long now_ms = System.currentTimeMillis();
+        frameCount++;
+        if (now_ms - frameCountStartTime_ms >= 1000)
+        {
+            fpsActual = frameCount * 1000f / (now_ms - frameCountStartTime_ms);
+            frameCount = 0;
+            frameCountStartTime_ms = now_ms;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ *
+ *
+ * As a data container.
+ *
+ * A compact copy of everything a renderer needs to draw one frame:
+ * the position & value of every tile, & the numbers shown on the HUD.
+ *
+ * Snapshots are preallocated by SnapshotRing & filled by the game loop at the end of each tick.
+ * Once published, a snapshot is never modified until the renderer has moved on to a newer one,
+ * hence, it can be read by the renderer without any lock.
+ *
+ */
+package Tetris2048;
+
+import static Tetris2048.GameFieldData.*;
+
+/**
+ *
+ * @author ILoveIdunna
+ */
+class BoardSnapshot
+{
+    //**tiles. tiles are stored in drawing order, the latest tile is always the last one
+    private final int[] tileLefts, tileTops, tileValues;
+    private int noOfTiles;
+
+    //**HUD
+    private int nextValue, mode, currScore, bestScore;
+    private long gameDuration_ms;
+    private boolean aiOn, paused, profilerOn;
+
+    private long tickNo; //the tick of the game loop which made this snapshot
+    private long lastAcceptedInputTime_ns; //arrival time of the latest key which moved a tile. see InputLatencyTracker
+    private long aiTime_ns, simulationTime_ns; //costs of the tick which made this snapshot. see FrameProfiler
+
+    BoardSnapshot()
+    {
+        tileLefts = new int[MAX_NO_TILES];
+        tileTops = new int[MAX_NO_TILES];
+        tileValues = new int[MAX_NO_TILES];
+    }
+
+    //**  functions for the game loop to fill this snapshot  **//
+    //
+    void clearTiles() { noOfTiles = 0; }
+    void addTile(int left, int top, int value)
+    {
+        if (noOfTiles >= MAX_NO_TILES)
+            return;
+        tileLefts[noOfTiles] = left;
+        tileTops[noOfTiles] = top;
+        tileValues[noOfTiles] = value;
+        noOfTiles++;
+    }
+    void setNextValue(int nextValue) { this.nextValue = nextValue; }
+    void setMode(int mode) { this.mode = mode; }
+    void setScores(int currScore, int bestScore)
+    {
+        this.currScore = currScore;
+        this.bestScore = bestScore;
+    }
+    void setGameDuration(long gameDuration_ms) { this.gameDuration_ms = gameDuration_ms; }
+    void setAiOn(boolean aiOn) { this.aiOn = aiOn; }
+    void setPaused(boolean paused) { this.paused = paused; }
+    void setProfilerOn(boolean profilerOn) { this.profilerOn = profilerOn; }
+    void setTickNo(long tickNo) { this.tickNo = tickNo; }
+    void setLastAcceptedInputTime(long lastAcceptedInputTime_ns) { this.lastAcceptedInputTime_ns = lastAcceptedInputTime_ns; }
+    void setTickCosts(long aiTime_ns, long simulationTime_ns)
+    {
+        this.aiTime_ns = aiTime_ns;
+        this.simulationTime_ns = simulationTime_ns;
+    }
+    //
+    //**  END of functions for the game loop to fill this snapshot  **//
+
+
+    public int getNoOfTiles() { return noOfTiles; }
+    public int getTileLeft(int i) { return tileLefts[i]; }
+    public int getTileTop(int i) { return tileTops[i]; }
+    public int getTileValue(int i) { return tileValues[i]; }
+    public int getNextValue() { return nextValue; }
+    public int getMode() { return mode; }
+    public int getCurrScore() { return currScore; }
+    public int getBestScore() { return bestScore; }
+    public long getGameDuration() { return gameDuration_ms; }
+    public boolean isAiOn() { return aiOn; }
+    public boolean isPaused() { return paused; }
+    public boolean isProfilerOn() { return profilerOn; }
+    public long getTickNo() { return tickNo; }
+    public long getLastAcceptedInputTime() { return lastAcceptedInputTime_ns; }
+    public long getAiTime() { return aiTime_ns; }
+    public long getSimulationTime() { return simulationTime_ns; }
+}
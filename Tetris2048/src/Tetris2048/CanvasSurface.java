@@ -0,0 +1,181 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package Tetris2048;
+
+import java.awt.AWTException;
+import java.awt.BufferCapabilities;
+import java.awt.Canvas;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.Image;
+import java.awt.ImageCapabilities;
+import java.awt.Toolkit;
+import java.awt.Transparency;
+import java.awt.event.KeyListener;
+import java.awt.image.BufferStrategy;
+import java.awt.image.BufferedImage;
+import java.lang.reflect.InvocationTargetException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.swing.JFrame;
+import javax.swing.SwingUtilities;
+
+/**
+ * Draws on a Canvas through a BufferStrategy, i.e. active rendering.
+ * The render thread draws into the back buffer & flips it onto the screen itself,
+ * instead of waiting for the Swing repaint cycle as game.v2.Console does.
+ *
+ * Page flipping is asked for, & blitting of an accelerated back buffer is used where flipping is not supported.
+ * Images are copied into images compatible with the screen, which Java2D caches in video memory.
+ *
+ * @author ILoveIdunna
+ */
+class CanvasSurface implements DrawSurface
+{
+    private static final int NO_BUFFERS = 2;
+    private static final Font DEFAULT_FONT = new Font(null, Font.PLAIN, 12);
+
+    private final JFrame window;
+    private final Canvas canvas;
+    private final int width, height;
+    private final Color background;
+    private BufferStrategy strategy;
+    private Graphics2D g;   //of the back buffer, for the frame being drawn. null between frames
+
+    CanvasSurface(String title, int width, int height, Color background)
+    {
+        this.width = width;
+        this.height = height;
+        this.background = background;
+        window = new JFrame(title);
+        canvas = new Canvas();
+        canvas.setPreferredSize(new Dimension(width, height));
+        canvas.setIgnoreRepaint(true); //all painting is done by the render thread
+        canvas.setFocusable(true);
+        window.setIgnoreRepaint(true);
+        window.setResizable(false);
+        window.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        window.add(canvas);
+    }
+
+    @Override
+    public void show()
+    {
+        try
+        {
+            SwingUtilities.invokeAndWait(new Runnable() {
+                @Override
+                public void run()
+                {
+                    window.pack();
+                    window.setLocationRelativeTo(null);
+                    window.setVisible(true);
+                    canvas.requestFocus();
+                    createBufferStrategy();
+                }
+            });
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+        catch (InvocationTargetException ex)
+        {
+            Logger.getLogger(CanvasSurface.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+    private void createBufferStrategy()
+    {
+        try
+        {
+            canvas.createBufferStrategy(NO_BUFFERS, new BufferCapabilities(new ImageCapabilities(true),
+                                    new ImageCapabilities(true), BufferCapabilities.FlipContents.UNDEFINED));
+        }
+        catch (AWTException ex) //page flipping is not supported here
+        {
+            canvas.createBufferStrategy(NO_BUFFERS);
+        }
+        strategy = canvas.getBufferStrategy();
+    }
+    @Override
+    public void addKeyListener(KeyListener listener)
+    {
+        canvas.addKeyListener(listener);
+        window.addKeyListener(listener);
+    }
+
+    @Override
+    public Image prepareImage(Image image)
+    {
+        int imgWidth = image.getWidth(null), imgHeight = image.getHeight(null);
+        if (imgWidth <= 0 || imgHeight <= 0)
+            return image;
+        GraphicsConfiguration config = canvas.getGraphicsConfiguration();
+        if (config == null) //not yet shown
+            config = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
+        BufferedImage compatibleImg = config.createCompatibleImage(imgWidth, imgHeight, Transparency.TRANSLUCENT);
+        Graphics2D imgG = compatibleImg.createGraphics();
+        imgG.drawImage(image, 0, 0, null);
+        imgG.dispose();
+        return compatibleImg;
+    }
+
+    //the Graphics of the back buffer, got at the first draw call of a frame
+    private Graphics2D graphics()
+    {
+        if (g == null)
+            g = (Graphics2D) strategy.getDrawGraphics();
+        return g;
+    }
+    @Override
+    public void clear()
+    {
+        Graphics2D g = graphics();
+        g.setColor(background);
+        g.fillRect(0, 0, width, height);
+    }
+    @Override
+    public void drawImage(int x, int y, Image image)
+    {
+        graphics().drawImage(image, x, y, null);
+    }
+    @Override
+    public void drawText(int x, int y, String text)
+    {
+        drawText(x, y, text, DEFAULT_FONT, Color.BLACK);
+    }
+    @Override
+    public void drawText(int x, int y, String text, Font font, Color color)
+    {
+        Graphics2D g = graphics();
+        g.setFont(font);
+        g.setColor(color);
+        g.drawString(text, x, y);
+    }
+    @Override
+    public void drawRectangle(int x, int y, int width, int height, Color color)
+    {
+        Graphics2D g = graphics();
+        g.setColor(color);
+        g.fillRect(x, y, width, height);
+    }
+    @Override
+    public void update()
+    {
+        if (g == null || strategy == null)
+            return;
+        g.dispose();
+        g = null;
+        //a lost back buffer gives a frame to be dropped only, as every frame is drawn from scratch
+        if (!strategy.contentsLost())
+            strategy.show();
+        Toolkit.getDefaultToolkit().sync();
+    }
+}
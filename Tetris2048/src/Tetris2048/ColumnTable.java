@@ -0,0 +1,152 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package Tetris2048;
+
+/**
+ * The result of dropping a tile into a column, looked up instead of played out frame by frame.
+ *
+ * A column is packed into an int, 4 bits per cell from the lowest one up. A cell holds the exponent
+ * of the value of its tile, e.g. 3 for 8, or 0 if empty. Tiles always lie on top of one another,
+ * so a column is fully told by its cells. The highest cell is the row where new tiles are created:
+ * a tile settling there has exceeded the upper boundary, i.e. the column overflows.
+ *
+ * As in TileList, a tile dropped onto another of the same value absorbs it, & the tile made
+ * goes on absorbing the one below as long as that has the same value, e.g. dropping 2 onto 8, 4, 2
+ * makes a single 16, in 3 merges scoring 4 + 8 + 16.
+ *
+ * The results of dropping 2, 4 & 8 are computed for every column once, i.e. 3 tables of
+ * 2^20 entries for the default 5 rows, so that AI search & batch runs resolve a placement by one array read.
+ * Columns of more cells than MAX_NO_TABLED_CELLS are computed at each drop instead.
+ *
+ * A result packs:
+ *   bits 0-27   the column after the drop
+ *   bits 28-30  the number of merges
+ *   bit 31      set if the column overflows
+ * The score gained is told by the value dropped & the merges, see scoreOf(..).
+ *
+ * @author ILoveIdunna
+ */
+final class ColumnTable
+{
+    static final int BITS_PER_CELL = 4;
+    static final int CELL_MASK = (1 << BITS_PER_CELL) - 1;
+    static final int MAX_EXPONENT = CELL_MASK;  //i.e. 32768. a merge making a greater value is not made
+    static final int MAX_NO_CELLS = 7;          //as many as fit in the 28 bits of a result
+    static final int MAX_NO_TABLED_CELLS = 5;   //2^20 entries per table
+    static final int MAX_DROP_EXPONENT = 3;     //values of new tiles are 2, 4 or 8. see TileList
+    static final int INVALID = -1;              //for a column whose tiles do not lie on one another, or which overflowed
+
+    private static final int COLUMN_MASK = (1 << (MAX_NO_CELLS * BITS_PER_CELL)) - 1;
+    private static final int MERGES_SHIFT = 28;
+    private static final int OVERFLOW_BIT = 1 << 31;
+    private static final ColumnTable[] tablesByNoOfCells = new ColumnTable[MAX_NO_CELLS + 1];
+
+    private final int noOfCells;
+    private final int[][] results; //[drop exponent - 1][column]. null if the columns are too long to be tabled
+
+    private ColumnTable(int noOfCells)
+    {
+        this.noOfCells = noOfCells;
+        if (noOfCells > MAX_NO_TABLED_CELLS)
+        {
+            results = null;
+            return;
+        }
+        results = new int[MAX_DROP_EXPONENT][1 << (noOfCells * BITS_PER_CELL)];
+        for (int exponent = 1; exponent <= MAX_DROP_EXPONENT; exponent++)
+        {
+            int[] table = results[exponent - 1];
+            for (int column = 0; column < table.length; column++)
+                table[column] = compute(column, exponent, noOfCells);
+        }
+    }
+    /**
+     * The table is built at the 1st call for each number of cells, & shared afterwards.
+     * @param noOfCells   rows of the game field, including the row where new tiles are created
+     */
+    static synchronized ColumnTable of(int noOfCells)
+    {
+        if (noOfCells < 1 || noOfCells > MAX_NO_CELLS)
+            throw new IllegalArgumentException("a column of " + noOfCells + " cells does not fit in an int");
+        if (tablesByNoOfCells[noOfCells] == null)
+            tablesByNoOfCells[noOfCells] = new ColumnTable(noOfCells);
+        return tablesByNoOfCells[noOfCells];
+    }
+
+    //**  public methods  **//
+    //
+    public int getNoOfCells() { return noOfCells; }
+    /**
+     * @param exponent   of the value dropped, e.g. 1 for 2
+     * @return           the result packed as described above, or INVALID
+     */
+    public int drop(int column, int exponent)
+    {
+        if (results != null && exponent >= 1 && exponent <= MAX_DROP_EXPONENT)
+        {
+            int[] table = results[exponent - 1];
+            if (column >= 0 && column < table.length)
+                return table[column];
+            return INVALID;
+        }
+        return compute(column, exponent, noOfCells);
+    }
+    //
+    //**  END of public methods  **//
+
+    //**  decoding of columns & results  **//
+    //
+    static int columnOf(int result)        { return result & COLUMN_MASK; }
+    static int mergesOf(int result)        { return (result >>> MERGES_SHIFT) & 7; }
+    static boolean overflows(int result)   { return (result & OVERFLOW_BIT) != 0; }
+    //the sum of the values made by the merges, as added by TileList, e.g. 4 + 8 + 16 for 3 merges of a dropped 2
+    static int scoreOf(int result, int exponent)
+    {
+        return (2 << exponent) * ((1 << mergesOf(result)) - 1);
+    }
+    //@param cell   counted from the lowest, from 0
+    static int cellOf(int column, int cell) { return (column >>> (cell * BITS_PER_CELL)) & CELL_MASK; }
+    static int withCell(int column, int cell, int exponent)
+    {
+        int shift = cell * BITS_PER_CELL;
+        return (column & ~(CELL_MASK << shift)) | (exponent << shift);
+    }
+    //@return   the number of tiles, or -1 if they do not lie on one another
+    static int heightOf(int column)
+    {
+        int height = 0;
+        while (height < MAX_NO_CELLS && cellOf(column, height) != 0)
+            height++;
+        return (column >>> (height * BITS_PER_CELL) == 0) ? height : -1;
+    }
+    //
+    //**  END of decoding of columns & results  **//
+
+    //plays a drop out. used to build the tables, & for columns too long to be tabled
+    static int compute(int column, int exponent, int noOfCells)
+    {
+        int height = heightOf(column);
+        if (height < 0 || height >= noOfCells || exponent < 1 || exponent > MAX_EXPONENT)
+            return INVALID;
+        int merges = 0;
+        if (height > 0 && cellOf(column, height - 1) == exponent && exponent < MAX_EXPONENT)
+        {
+            //the dropped tile absorbs the top one, & the tile made keeps on absorbing the one below if equal
+            int top = height - 1;
+            column = withCell(column, top, ++exponent);
+            merges++;
+            while (top > 0 && cellOf(column, top - 1) == exponent && exponent < MAX_EXPONENT)
+            {
+                column = withCell(column, top, 0);
+                column = withCell(column, --top, ++exponent);
+                merges++;
+            }
+        }
+        else
+            column = withCell(column, height, exponent);
+        return column | (merges << MERGES_SHIFT) | ((cellOf(column, noOfCells - 1) != 0) ? OVERFLOW_BIT : 0);
+    }
+}
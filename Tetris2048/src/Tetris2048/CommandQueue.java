@@ -0,0 +1,120 @@
+/**
+ *
+ *
+ * A bounded, lock-free, multi-producer single-consumer queue of commands.
+ *
+ * "command" refers to a key code pressed by a player, or any other int code
+ * which asks the game loop to change the game state, e.g. switching mode, pausing.
+ *
+ * Producers, e.g. the AWT event thread, call offer(..) & never block.
+ * The only consumer, the game loop, calls poll() at the beginning of each tick.
+ * Hence, the game state is modified by one single thread only.
+ *
+ */
+package Tetris2048;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Each slot owns a sequence number telling its state (the idea of D. Vyukov's bounded queue):
+ *   sequence == position         the slot is free for the producer which claimed "position"
+ *   sequence == position + 1     the slot is filled & ready for the consumer
+ *
+ * @author ILoveIdunna
+ */
+class CommandQueue
+{
+    static final int DEFAULT_CAPACITY = 64;
+    static final int EMPTY = -1; //returned by poll() when no command is queued
+
+    private final int capacity, mask;
+    private final AtomicLongArray sequences;
+    private final int[] commands;
+    private final long[] offerTimes_ns; //System.nanoTime() at which each command was offered
+    private final AtomicLong tail;      //the next position to be claimed by producers
+    private long head;                  //the next position to be consumed. touched by the consumer only
+    private long lastPolledOfferTime_ns;
+    private final AtomicLong noOfRejectedOffers; //commands dropped because the queue was full
+
+    /**
+     * @param capacity  rounded up to a power of 2
+     */
+    CommandQueue(int capacity)
+    {
+        int powerOf2Capacity = 1;
+        while (powerOf2Capacity < capacity)
+            powerOf2Capacity <<= 1;
+        this.capacity = powerOf2Capacity;
+        mask = powerOf2Capacity - 1;
+        sequences = new AtomicLongArray(powerOf2Capacity);
+        for (int i = 0; i < powerOf2Capacity; i++)
+            sequences.set(i, i);
+        commands = new int[powerOf2Capacity];
+        offerTimes_ns = new long[powerOf2Capacity];
+        tail = new AtomicLong();
+        noOfRejectedOffers = new AtomicLong();
+    }
+
+    //**  methods for producers  **//
+    //
+    /**
+     * May be called by any thread.
+     * @return  false if the queue is full & the command is dropped
+     */
+    public boolean offer(int command, long offerTime_ns)
+    {
+        while (true)
+        {
+            long position = tail.get();
+            int idx = (int) (position & mask);
+            long diff = sequences.get(idx) - position;
+            if (diff == 0) //true when the slot is free
+            {
+                if (tail.compareAndSet(position, position + 1))
+                {
+                    commands[idx] = command;
+                    offerTimes_ns[idx] = offerTime_ns;
+                    sequences.lazySet(idx, position + 1); //publish the slot to the consumer
+                    return true;
+                }
+            }
+            else if (diff < 0) //true when the consumer has not yet freed the slot, i.e. queue is full
+            {
+                noOfRejectedOffers.incrementAndGet();
+                return false;
+            }
+            //otherwise another producer has just claimed this position. retry with a newer tail
+        }
+    }
+    //
+    //**  END of methods for producers  **//
+
+
+    //**  methods for the consumer  **//
+    //
+    /**
+     * Must be called by the game loop only.
+     * @return  the oldest queued command, or EMPTY if there is none
+     */
+    public int poll()
+    {
+        int idx = (int) (head & mask);
+        if (sequences.get(idx) != head + 1) //true when the slot is not yet filled
+            return EMPTY;
+        int command = commands[idx];
+        lastPolledOfferTime_ns = offerTimes_ns[idx];
+        sequences.lazySet(idx, head + capacity); //hand the slot back to producers for the next round
+        head++;
+        return command;
+    }
+    /**
+     * @return  the time at which the command last returned by poll() was offered
+     */
+    public long getLastPolledOfferTime() { return lastPolledOfferTime_ns; }
+    //
+    //**  END of methods for the consumer  **//
+
+    public int getCapacity() { return capacity; }
+    public long getNoOfRejectedOffers() { return noOfRejectedOffers.get(); }
+}
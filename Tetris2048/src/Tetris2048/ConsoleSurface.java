@@ -0,0 +1,50 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package Tetris2048;
+
+import game.v2.Console;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Image;
+import java.awt.event.KeyListener;
+
+/**
+ * Draws with game.v2.Console, i.e. the Swing path, painted on the Swing repaint cycle.
+ *
+ * @author ILoveIdunna
+ */
+class ConsoleSurface implements DrawSurface
+{
+    private final Console console;
+
+    ConsoleSurface(Console console)
+    {
+        this.console = console;
+    }
+
+    @Override
+    public void show() { console.show(); }
+    @Override
+    public void addKeyListener(KeyListener listener) { console.addKeyListener(listener); }
+    @Override
+    public Image prepareImage(Image image) { return image; }
+
+    @Override
+    public void clear() { console.clear(); }
+    @Override
+    public void drawImage(int x, int y, Image image) { console.drawImage(x, y, image); }
+    @Override
+    public void drawText(int x, int y, String text) { console.drawText(x, y, text); }
+    @Override
+    public void drawText(int x, int y, String text, Font font, Color color) { console.drawText(x, y, text, font, color); }
+    @Override
+    public void drawRectangle(int x, int y, int width, int height, Color color)
+    {
+        console.drawRectangle(x, y, width, height, color);
+    }
+    @Override
+    public void update() { console.update(); }
+}
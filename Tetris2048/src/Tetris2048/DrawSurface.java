@@ -0,0 +1,41 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package Tetris2048;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Image;
+import java.awt.event.KeyListener;
+
+/**
+ * Where a frame is drawn. The draw calls are those of game.v2.Console,
+ * so that BoardRenderer draws the same way on any backend.
+ *
+ * Draw calls build up one frame, which is presented by update().
+ * Except show() & addKeyListener(..), all are called by the render thread only.
+ *
+ * @author ILoveIdunna
+ */
+interface DrawSurface
+{
+    void show();
+    void addKeyListener(KeyListener listener);
+
+    /**
+     * @return  a copy of the image in the format drawn fastest on this surface, or the image itself
+     */
+    Image prepareImage(Image image);
+
+    void clear();
+    void drawImage(int x, int y, Image image);
+    void drawText(int x, int y, String text);
+    void drawText(int x, int y, String text, Font font, Color color);
+    void drawRectangle(int x, int y, int width, int height, Color color);
+    /**
+     * Presents the frame drawn since the last update().
+     */
+    void update();
+}
@@ -0,0 +1,276 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package Tetris2048;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Chooses the placement by expectimax search over the next "depth" placements, on several threads at once.
+ *
+ * The value to place & the next one are known; the values after them are drawn by the chances of the mode,
+ * so each placement after the 2nd one is searched as the mean over its values. A field is worth, at the end of
+ * the search, its value by an NTupleNetwork, or else by a BoardEvaluator, & each placement adds the score it gains.
+ * A BoardEvaluator is handed the fields of the last 2 plies at once, as it evaluates them best in batches.
+ *
+ * The columns of the root are searched by a pool of threads, sharing one TranspositionTable:
+ * a field reached by placements in other orders, by another thread or by an earlier search
+ * is looked up instead of searched again.
+ *
+ * @author ILoveIdunna
+ */
+class ExpectimaxPolicy implements PlacementPolicy
+{
+    static final String DEPTH_PROPERTY = "tetris2048.ai.search.depth";       //placements searched. 4 by default
+    static final String THREADS_PROPERTY = "tetris2048.ai.search.threads";   //the number of processors by default
+    static final int DEFAULT_DEPTH = 4;
+
+    private final NTupleNetwork network;
+    private final BoardEvaluator evaluator; //used instead of the network, if not null
+    private final TranspositionTable table;
+    private final int noOfRows, noOfCols, depth;
+    private final ExecutorService pool;     //null if searched on the calling thread only
+    private final ThreadLocal<Searcher> searchers;
+    private final double[][] chanceOfValueByMode;  //[mode][exponent - 1]
+    private volatile int mode;                      //of the search
+    private volatile double[] chanceOfValue;        //of the mode of the search
+
+    ExpectimaxPolicy(NTupleNetwork network, TranspositionTable table, int noOfRows, int noOfCols, int depth, int noOfThreads)
+    {
+        this(network, null, table, noOfRows, noOfCols, depth, noOfThreads);
+    }
+    ExpectimaxPolicy(BoardEvaluator evaluator, TranspositionTable table, int noOfRows, int noOfCols, int depth, int noOfThreads)
+    {
+        this(null, evaluator, table, noOfRows, noOfCols, depth, noOfThreads);
+    }
+    private ExpectimaxPolicy(NTupleNetwork network, BoardEvaluator evaluator, TranspositionTable table,
+                             int noOfRows, int noOfCols, int depth, int noOfThreads)
+    {
+        this.network = network;
+        this.evaluator = evaluator;
+        this.table = table;
+        this.noOfRows = noOfRows;
+        this.noOfCols = noOfCols;
+        this.depth = Math.max(1, depth);
+        chanceOfValueByMode = new double[TileList.NO_OF_MODES][ColumnTable.MAX_DROP_EXPONENT];
+        for (int mode = 0; mode < TileList.NO_OF_MODES; mode++)
+            for (int i = 0; i < ColumnTable.MAX_DROP_EXPONENT; i++)
+                chanceOfValueByMode[mode][i] = TileList.probabilityOfValue(2 << i, mode);
+        searchers = new ThreadLocal<Searcher>() {
+            @Override
+            protected Searcher initialValue() { return new Searcher(); }
+        };
+        if (noOfThreads <= 1)
+        {
+            pool = null;
+            return;
+        }
+        pool = Executors.newFixedThreadPool(noOfThreads, new ThreadFactory() {
+            private int noOfThreadsMade;
+
+            @Override
+            public synchronized Thread newThread(Runnable task)
+            {
+                Thread thread = new Thread(task, "Tetris2048-search-" + noOfThreadsMade++);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    //**  public methods  **//
+    //
+    @Override
+    public int choosePlacement(final GridEngine field, final int value, final int nextValue, int mode)
+    {
+        this.mode = mode;
+        chanceOfValue = chanceOfValueByMode[mode];
+        table.newSearch();
+        float[] valueByCol = new float[noOfCols];
+        if (pool == null)
+            for (int col = 0; col < noOfCols; col++)
+                valueByCol[col] = searchers.get().searchRoot(field, col, value, nextValue);
+        else
+        {
+            List<Future<Float>> results = new ArrayList<Future<Float>>(noOfCols);
+            for (int col = 0; col < noOfCols; col++)
+            {
+                final int rootCol = col;
+                results.add(pool.submit(new Callable<Float>() {
+                    @Override
+                    public Float call() { return searchers.get().searchRoot(field, rootCol, value, nextValue); }
+                }));
+            }
+            try
+            {
+                for (int col = 0; col < noOfCols; col++)
+                    valueByCol[col] = results.get(col).get();
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+            }
+            catch (ExecutionException ex)
+            {
+                throw new IllegalStateException(ex.getCause());
+            }
+        }
+        int bestCol = 0;
+        for (int col = 1; col < noOfCols; col++)
+            if (valueByCol[col] > valueByCol[bestCol])
+                bestCol = col;
+        return bestCol;
+    }
+    public TranspositionTable getTable() { return table; }
+    public int getDepth() { return depth; }
+    //
+    //**  END of public methods  **//
+
+    /**
+     * The search of one thread: a field per ply, so that nothing is made while searching,
+     * & the counts of the table, added to it once per root column.
+     */
+    private class Searcher
+    {
+        private final GridEngine[] fields;   //[ply], the field after the placement of the ply
+        private final float[][] valueByCol; //[ply][col]
+        private final long[] leaves;         //of the last 2 plies, for the evaluator
+        private final float[] leafValues, bestLeafValues;
+        private final int[] leafGains, leafCols;
+        private long noOfProbes, noOfHits, noOfStores, noOfReplacements, noOfLostStores;
+
+        Searcher()
+        {
+            fields = new GridEngine[depth];
+            for (int ply = 0; ply < depth; ply++)
+                fields[ply] = new GridEngine(noOfRows, noOfCols);
+            valueByCol = new float[depth][noOfCols];
+            leaves = new long[noOfCols * noOfCols];
+            leafValues = new float[leaves.length];
+            bestLeafValues = new float[noOfCols];
+            leafGains = new int[leaves.length];
+            leafCols = new int[leaves.length];
+        }
+
+        float searchRoot(GridEngine field, int col, int value, int nextValue)
+        {
+            float rootValue = placementValue(field, col, value, nextValue, 0, chanceOfValue);
+            table.addCounts(noOfProbes, noOfHits, noOfStores, noOfReplacements, noOfLostStores);
+            noOfProbes = noOfHits = noOfStores = noOfReplacements = noOfLostStores = 0;
+            return rootValue;
+        }
+        //the best of the placements of "value", with the next value known
+        private float bestValue(GridEngine field, int value, int nextValue, int ply, double[] chanceOfValue)
+        {
+            long key = keyOf(field, value, nextValue);
+            int pliesLeft = depth - ply;
+            noOfProbes++;
+            long data = table.probe(key);
+            if (data != TranspositionTable.MISS && TranspositionTable.depthOf(data) >= pliesLeft)
+            {
+                noOfHits++;
+                return TranspositionTable.valueOf(data);
+            }
+            float[] valueByCol = this.valueByCol[ply];
+            if (evaluator != null && pliesLeft == 2)
+                lastPliesValues(field, value, nextValue, ply);
+            else
+                for (int col = 0; col < noOfCols; col++)
+                    valueByCol[col] = placementValue(field, col, value, nextValue, ply, chanceOfValue);
+            float bestValue = NTuplePolicy.LOSS_VALUE;
+            int bestCol = 0;
+            for (int col = 0; col < noOfCols; col++)
+                if (valueByCol[col] > bestValue)
+                {
+                    bestValue = valueByCol[col];
+                    bestCol = col;
+                }
+            noOfStores++;
+            int result = table.store(key, bestValue, pliesLeft, bestCol);
+            if (result == TranspositionTable.REPLACED)
+                noOfReplacements++;
+            else if (result == TranspositionTable.LOST)
+                noOfLostStores++;
+            return bestValue;
+        }
+        //the score gained by the placement plus the worth of the field left
+        private float placementValue(GridEngine field, int col, int value, int nextValue, int ply, double[] chanceOfValue)
+        {
+            GridEngine afterPlacement = fields[ply];
+            afterPlacement.copyFrom(field);
+            if (afterPlacement.place(col, value) == ColumnTable.INVALID || afterPlacement.isLost())
+                return NTuplePolicy.LOSS_VALUE;
+            float placementValue = afterPlacement.getScore() - field.getScore();
+            if (ply + 1 == depth)
+                return placementValue + ((evaluator != null) ? evaluator.evaluate(afterPlacement)
+                                                             : network.evaluate(afterPlacement));
+            float meanValue = 0;
+            for (int i = 0; i < chanceOfValue.length; i++)
+                meanValue += chanceOfValue[i] * bestValue(afterPlacement, nextValue, 2 << i, ply + 1, chanceOfValue);
+            return placementValue + meanValue;
+        }
+        /**
+         * The values of the placements of "value" into valueByCol, as placementValue(..) tells, when 2 plies are left.
+         * The best of the last ply is the same whatever value comes after it, so it is not searched per value,
+         * & its fields are evaluated as one batch.
+         */
+        private void lastPliesValues(GridEngine field, int value, int nextValue, int ply)
+        {
+            GridEngine afterPlacement = fields[ply], leaf = fields[ply + 1];
+            float[] valueByCol = this.valueByCol[ply];
+            int noOfLeaves = 0;
+            for (int col = 0; col < noOfCols; col++)
+            {
+                afterPlacement.copyFrom(field);
+                if (afterPlacement.place(col, value) == ColumnTable.INVALID || afterPlacement.isLost())
+                {
+                    valueByCol[col] = NTuplePolicy.LOSS_VALUE;
+                    continue;
+                }
+                valueByCol[col] = afterPlacement.getScore() - field.getScore();
+                for (int leafCol = 0; leafCol < noOfCols; leafCol++)
+                {
+                    leaf.copyFrom(afterPlacement);
+                    if (leaf.place(leafCol, nextValue) == ColumnTable.INVALID || leaf.isLost())
+                        continue;
+                    leaves[noOfLeaves] = Tablebase.keyOf(leaf);
+                    leafGains[noOfLeaves] = leaf.getScore() - afterPlacement.getScore();
+                    leafCols[noOfLeaves++] = col;
+                }
+            }
+            evaluator.evaluate(leaves, noOfLeaves, leafValues);
+            Arrays.fill(bestLeafValues, NTuplePolicy.LOSS_VALUE);
+            for (int i = 0; i < noOfLeaves; i++)
+                bestLeafValues[leafCols[i]] = Math.max(bestLeafValues[leafCols[i]], leafGains[i] + leafValues[i]);
+            for (int col = 0; col < noOfCols; col++)
+                if (valueByCol[col] != NTuplePolicy.LOSS_VALUE)
+                    valueByCol[col] += bestLeafValues[col];
+        }
+        //of the field, the values to place & the mode, whose chances the worth depends on
+        private long keyOf(GridEngine field, int value, int nextValue)
+        {
+            long key = mix(mode * 64 + Integer.numberOfTrailingZeros(value) * 8 + Integer.numberOfTrailingZeros(nextValue));
+            for (int col = 0; col < noOfCols; col++)
+                key = mix(key ^ field.getColumn(col));
+            return key;
+        }
+    }
+
+    //the finalizer of SplitMix64, so that every bit of the key depends on every bit of the field
+    private static long mix(long key)
+    {
+        key = (key ^ (key >>> 30)) * 0xBF58476D1CE4E5B9L;
+        key = (key ^ (key >>> 27)) * 0x94D049BB133111EBL;
+        return key ^ (key >>> 31);
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package Tetris2048;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Java Flight Recorder event types of the game engine.
+ * 
+ * They cost next to nothing unless a recording is running, e.g. a continuous one started by:
+ *   java -XX:StartFlightRecording=disk=true,maxage=1h,dumponexit=true ...
+ * A stutter report can then be matched against the engine activity, GC & so on at that moment.
+ * Stack traces are off, as the call sites are fixed & known.
+ *
+ * @author ILoveIdunna
+ */
+class FlightEvents
+{
+    private FlightEvents() {}
+
+    @Name("Tetris2048.TileSpawn")
+    @Label("Tile Spawn")
+    @Category({"Tetris2048", "Engine"})
+    @Description("A new tile is created for the player by createNextTile()")
+    @StackTrace(false)
+    static class TileSpawn extends Event
+    {
+        @Label("Value")
+        int value;
+        @Label("Next Value")
+        int nextValue;
+        @Label("Tiles On Board")
+        int noOfTiles;
+        @Label("Mode")
+        int mode;
+    }
+
+    @Name("Tetris2048.AbsorptionStart")
+    @Label("Absorption Start")
+    @Category({"Tetris2048", "Engine"})
+    @Description("A tile starts absorbing another tile of the same value, see Tile.absorbs(..)")
+    @StackTrace(false)
+    static class AbsorptionStart extends Event
+    {
+        @Label("Absorption Id")
+        long absorptionId;
+        @Label("New Value")
+        int newValue;
+        @Label("Top")
+        int top;
+        @Label("Left")
+        int left;
+        @Label("By Tile Being Controlled")
+        boolean byTileBeingCtrled;
+    }
+
+    @Name("Tetris2048.AbsorptionEnd")
+    @Label("Absorption End")
+    @Category({"Tetris2048", "Engine"})
+    @Description("The absorbed tile is removed, see Tile.endAbsorbing()")
+    @StackTrace(false)
+    static class AbsorptionEnd extends Event
+    {
+        @Label("Absorption Id")
+        long absorptionId;
+        @Label("Value")
+        int value;
+        @Label("Top")
+        int top;
+        @Label("Left")
+        int left;
+    }
+
+    @Name("Tetris2048.FallDecision")
+    @Label("Fall Decision")
+    @Category({"Tetris2048", "Engine"})
+    @Description("checkCollAgainstTile() holds on or blocks the free fall of a tile")
+    @StackTrace(false)
+    static class FallDecision extends Event
+    {
+        static final String HELD_ON = "held on";
+        static final String BLOCKED = "blocked";
+
+        @Label("Decision")
+        String decision;
+        @Label("Value")
+        int value;
+        @Label("Top")
+        int top;
+        @Label("Left")
+        int left;
+        @Label("Being Controlled")
+        boolean beingCtrled;
+    }
+
+    @Name("Tetris2048.AIDecision")
+    @Label("AI Decision")
+    @Category({"Tetris2048", "AI"})
+    @Description("The AI player determines a new path for the latest tile")
+    @StackTrace(false)
+    static class AIDecision extends Event
+    {
+        @Label("Tile Value")
+        int value;
+        @Label("Path")
+        String path;
+        @Label("Compute Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long computeTime;
+    }
+
+    @Name("Tetris2048.FrameOverrun")
+    @Label("Frame Overrun")
+    @Category({"Tetris2048", "Loop"})
+    @Description("A frame takes longer than the frame budget, 1/FPS")
+    @StackTrace(false)
+    static class FrameOverrun extends Event
+    {
+        @Label("Loop")
+        String loop;
+        @Label("Frame Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long frameTime;
+        @Label("Budget")
+        @Timespan(Timespan.NANOSECONDS)
+        long budget;
+        @Label("AI Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long aiTime;
+        @Label("Tiles On Board")
+        int noOfTiles;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package Tetris2048;
+
+import static Tetris2048.GameFieldData.*;
+import java.awt.Color;
+import java.awt.Font;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+/**
+ * Keeps the cost of the latest frames, split into AI, simulation, rendering & HUD,
+ * & draws them as stacked bars, one bar per frame, on the top of the game field.
+ *
+ * Recording a frame costs 5 array stores, so it is always on.
+ * The bars are drawn only while the overlay is shown, i.e. toggled by key 'P'.
+ * Must be used by the render thread only, except the GC listener.
+ *
+ * @author ILoveIdunna
+ */
+class FrameProfiler
+{
+    static final int NO_FRAMES = 300; //frames kept, i.e. 1 bar per pixel
+    private static final int HEIGHT = 100;
+    private static final long BUDGET_NS = 1000000000L / FPS;
+    private static final int BUDGET_HEIGHT = HEIGHT / 2; //the budget line is drawn at half height,
+                                                        //so that frames up to 2 budgets long are in scale
+    private static final String GC_NOTIFICATION = "com.sun.management.gc.notification";
+
+    private static final Color BACKGROUND_COLOR = new Color(0x00,0x00,0x00,0x99);
+    private static final Color AI_COLOR = new Color(0xFF,0xCC,0x00,0xFF);
+    private static final Color SIMULATION_COLOR = new Color(0x33,0x99,0xFF,0xFF);
+    private static final Color RENDER_COLOR = new Color(0x33,0xCC,0x33,0xFF);
+    private static final Color HUD_COLOR = new Color(0xCC,0x66,0xFF,0xFF);
+    private static final Color GC_COLOR = Color.RED;
+    private static final Color BUDGET_COLOR = Color.WHITE;
+    private static final Font LEGEND_FONT = new Font(null,1,11);
+
+    //**ring buffers, indexed by frameNo % NO_FRAMES. times are in microseconds
+    private final int[] aiTimes_us, simulationTimes_us, renderTimes_us, hudTimes_us;
+    private final int[] gcTimes_ms; //total pause of GCs finished during each frame
+    private long frameNo;           //frames recorded so far
+
+    private final AtomicInteger gcTimeSinceLastFrame_ms; //added by the GC listener, taken by record(..)
+
+    FrameProfiler()
+    {
+        aiTimes_us = new int[NO_FRAMES];
+        simulationTimes_us = new int[NO_FRAMES];
+        renderTimes_us = new int[NO_FRAMES];
+        hudTimes_us = new int[NO_FRAMES];
+        gcTimes_ms = new int[NO_FRAMES];
+        gcTimeSinceLastFrame_ms = new AtomicInteger();
+        listenToGCs();
+    }
+
+    //GCs are reported by notifications, so nothing is polled per frame
+    private void listenToGCs()
+    {
+        NotificationListener listener = new NotificationListener() {
+            @Override
+            public void handleNotification(Notification notification, Object handback)
+            {
+                if (!GC_NOTIFICATION.equals(notification.getType()))
+                    return;
+                long duration_ms = 0;
+                if (notification.getUserData() instanceof CompositeData)
+                {
+                    CompositeData gcInfo = (CompositeData) ((CompositeData) notification.getUserData()).get("gcInfo");
+                    duration_ms = (Long) gcInfo.get("duration");
+                }
+                gcTimeSinceLastFrame_ms.addAndGet((int) Math.max(1, duration_ms)); //a GC is shown even if < 1ms
+            }
+        };
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+            if (gc instanceof NotificationEmitter)
+                ((NotificationEmitter) gc).addNotificationListener(listener, null, null);
+    }
+
+    public void record(long aiTime_ns, long simulationTime_ns, long renderTime_ns, long hudTime_ns)
+    {
+        int idx = (int) (frameNo % NO_FRAMES);
+        aiTimes_us[idx] = (int) (aiTime_ns / 1000);
+        simulationTimes_us[idx] = (int) (simulationTime_ns / 1000);
+        renderTimes_us[idx] = (int) (renderTime_ns / 1000);
+        hudTimes_us[idx] = (int) (hudTime_ns / 1000);
+        gcTimes_ms[idx] = gcTimeSinceLastFrame_ms.getAndSet(0);
+        frameNo++;
+    }
+
+    /**
+     * Draws the latest frames, the oldest on the left.
+     * A frame whose bar crosses the white line blows the budget of 1 frame at FPS.
+     * A red mark above a bar tells a GC finished during that frame.
+     */
+    public void draw(DrawSurface surface, int left, int top)
+    {
+        surface.drawRectangle(left, top, NO_FRAMES, HEIGHT, BACKGROUND_COLOR);
+        int noOfFrames = (int) Math.min(frameNo, NO_FRAMES);
+        for (int i = 0; i < noOfFrames; i++)
+        {
+            int idx = (int) ((frameNo - noOfFrames + i) % NO_FRAMES), x = left + i,
+                bottom = top + HEIGHT;
+            bottom = drawBar(surface, x, bottom, top, aiTimes_us[idx], AI_COLOR);
+            bottom = drawBar(surface, x, bottom, top, simulationTimes_us[idx], SIMULATION_COLOR);
+            bottom = drawBar(surface, x, bottom, top, renderTimes_us[idx], RENDER_COLOR);
+            drawBar(surface, x, bottom, top, hudTimes_us[idx], HUD_COLOR);
+            if (gcTimes_ms[idx] > 0)
+                surface.drawRectangle(x, top - 6, 1, 5, GC_COLOR);
+        }
+        surface.drawRectangle(left, top + HEIGHT - BUDGET_HEIGHT, NO_FRAMES, 1, BUDGET_COLOR);
+        drawLegend(surface, left, top + HEIGHT + 12);
+    }
+    //@return  the top of the bar drawn, i.e. the bottom of the next bar
+    private int drawBar(DrawSurface surface, int x, int bottom, int top, int time_us, Color color)
+    {
+        int height = (int) (time_us * 1000L * BUDGET_HEIGHT / BUDGET_NS);
+        if (height <= 0 || bottom <= top)
+            return bottom;
+        height = Math.min(height, bottom - top); //clip the bars exceeding the overlay
+        surface.drawRectangle(x, bottom - height, 1, height, color);
+        return bottom - height;
+    }
+    private void drawLegend(DrawSurface surface, int left, int bottom)
+    {
+        surface.drawText(left, bottom, "AI", LEGEND_FONT, AI_COLOR);
+        surface.drawText(left + 25, bottom, "simulation", LEGEND_FONT, SIMULATION_COLOR);
+        surface.drawText(left + 95, bottom, "render", LEGEND_FONT, RENDER_COLOR);
+        surface.drawText(left + 145, bottom, "HUD", LEGEND_FONT, HUD_COLOR);
+        surface.drawText(left + 180, bottom, "GC", LEGEND_FONT, GC_COLOR);
+        surface.drawText(left + 205, bottom, "budget " + (BUDGET_NS / 1000) + "us", LEGEND_FONT, Color.BLACK);
+    }
+}
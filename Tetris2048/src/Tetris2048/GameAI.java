@@ -0,0 +1,25 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package Tetris2048;
+
+/**
+ * A player of the latest tile, asked for a move at every cycle() while AI mode is on.
+ *
+ * @author ILoveIdunna
+ */
+interface GameAI
+{
+    /**
+     * @return  the key code of the next move for the latest tile, i.e. VK_LEFT, VK_RIGHT or VK_DOWN;
+     *          -1 if no move to be taken for now; -2 if the AI fails
+     */
+    int getAINextInput();
+    /**
+     * To be called once the move returned by getAINextInput() is taken by the latest tile,
+     * so that the next one is returned afterwards.
+     */
+    void nextInputTaken();
+}
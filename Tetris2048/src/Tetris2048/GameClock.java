@@ -0,0 +1,44 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package Tetris2048;
+
+/**
+ * The time seen by TileList, e.g. when the tileBeingCtrled should fall next.
+ *
+ * A wall clock follows System.currentTimeMillis(), as the game used to do.
+ * A virtual clock moves on by 1/FPS second at each TileList.update() only,
+ * so that a game can be stepped faster than real time, e.g. by the AI or a batch run,
+ * & still behave exactly as if played at FPS.
+ *
+ * @author ILoveIdunna
+ */
+class GameClock
+{
+    private final boolean virtual;
+    private long virtualTime_ns;
+
+    private GameClock(boolean virtual, long startTime_ms)
+    {
+        this.virtual = virtual;
+        virtualTime_ns = startTime_ms * 1000000;
+    }
+    static GameClock wall() { return new GameClock(false, 0); }
+    static GameClock virtual(long startTime_ms) { return new GameClock(true, startTime_ms); }
+
+    public long now_ms()
+    {
+        return virtual ? virtualTime_ns / 1000000 : System.currentTimeMillis();
+    }
+    /**
+     * No effect on a wall clock.
+     */
+    public void advance(long time_ns)
+    {
+        if (virtual)
+            virtualTime_ns += time_ns;
+    }
+    public boolean isVirtual() { return virtual; }
+}
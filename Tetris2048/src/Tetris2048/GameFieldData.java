@@ -17,9 +17,19 @@ public class GameFieldData {
     static final int FPS = 85;
     
     //**game field
-    static final int GRID_SIZE = 110;
-    static final int NO_ROW = 5;
-    static final int NO_COL = 4;
+    //the size of the board may be chosen at startup, e.g. -Dtetris2048.rows=64 -Dtetris2048.cols=64 for stress tests.
+    //they are read once as the class is initialized, so they are still constants to the JIT
+    static final String ROWS_PROPERTY = "tetris2048.rows";
+    static final String COLS_PROPERTY = "tetris2048.cols";
+    static final String GRID_SIZE_PROPERTY = "tetris2048.gridSize"; //in pixels
+    static final int DEFAULT_GRID_SIZE = 110;
+    static final int DEFAULT_NO_ROW = 5;
+    static final int DEFAULT_NO_COL = 4;
+    static final int MAX_NO_ROW_OR_COL = 64;
+    static final int GRID_SIZE = gridSize(Integer.getInteger(GRID_SIZE_PROPERTY, DEFAULT_GRID_SIZE));
+    static final int NO_ROW = clamp(Integer.getInteger(ROWS_PROPERTY, DEFAULT_NO_ROW), 2, MAX_NO_ROW_OR_COL); //a row to create tiles & at least 1 for them to settle in
+    static final int NO_COL = clamp(Integer.getInteger(COLS_PROPERTY, DEFAULT_NO_COL), 1, MAX_NO_ROW_OR_COL);
+    static final boolean DEFAULT_GEOMETRY = GRID_SIZE == DEFAULT_GRID_SIZE && NO_ROW == DEFAULT_NO_ROW && NO_COL == DEFAULT_NO_COL; //true if board.png fits
     static final int MAX_NO_TILES = 1 + (NO_ROW-1) * NO_COL;
     static final int LEFT_BOUNDARY = 10; //left boundary of the game field
     static final int RIGHT_BOUNDARY = LEFT_BOUNDARY + NO_COL*GRID_SIZE;
@@ -35,6 +45,8 @@ public class GameFieldData {
     static final int BEST_SCORE_LEFT = CURR_SCORE_LEFT +170;
     static final int MODE_BOTTOM = 50;
     static final int MODE_LEFT = 10;
+    static final int WINDOW_WIDTH = Math.max(2*LEFT_BOUNDARY + NO_COL*GRID_SIZE, 450); //450 x 700 as of the default board
+    static final int WINDOW_HEIGHT = LOWER_BOUNDARY;
     
     //**asset
     static final String BOARD_IMG_RELATIVE_PATH = "/assets/board.png"; //img for image
@@ -44,4 +56,15 @@ public class GameFieldData {
     static final String BGM_NAME = "bgm.wav";
     static final String SOUND_EFFECT_NAME = "sound_effect.wav";
     
+    //a tile moves GRID_SIZE / FALL__FRAME_PER_GRID pixels per step.
+    //hence GRID_SIZE is rounded to a multiple of it, so that a tile still stops exactly on a grid
+    private static int gridSize(int gridSize)
+    {
+        int framesPerGrid = TileList.FALL__FRAME_PER_GRID;
+        return clamp(Math.round(gridSize / (float) framesPerGrid), 2, 20) * framesPerGrid;
+    }
+    private static int clamp(int value, int min, int max)
+    {
+        return Math.max(min, Math.min(value, max));
+    }
 }
@@ -0,0 +1,147 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package Tetris2048;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs a tick at a fixed frame rate on the calling thread, replacing game.Ticker & Console.pause(..).
+ *
+ * Each tick has a deadline on System.nanoTime(), one period after the last one,
+ * so that the time taken by a tick does not push the following ticks back.
+ * The wait for a deadline is parked for most of it & spun for the last part only,
+ * as parkNanos(..) may oversleep by a millisecond or more, which is visible at 85 FPS.
+ * The part spun follows the oversleep recently seen.
+ *
+ * A loop more than one period late, e.g. after a dialog, starts afresh
+ * rather than running the missed ticks in a burst.
+ *
+ * An idle loop, e.g. while the game is paused, ticks once every IDLE_PERIOD_NS only,
+ * & ticks at once when woken up by wakeUp(), e.g. on a key pressed.
+ * An unpaced loop ticks again as soon as a tick ends, e.g. for a game stepped by a virtual GameClock.
+ *
+ * @author ILoveIdunna
+ */
+class GameLoop
+{
+    private static final long MIN_SPIN_NS = 50000;    //0.05ms
+    private static final long MAX_SPIN_NS = 2000000;  //2ms
+    static final long IDLE_PERIOD_NS = 1000000000L;   //1s
+
+    private final long period_ns;
+    private final Runnable tick;
+    private final Histogram jitter; //|interval between 2 ticks - period| in ns. may be null
+    private long spin_ns;           //the last part of each wait spent spinning
+    private long noOfMissedDeadlines;
+    private volatile boolean running;
+    private volatile boolean idle;
+    private volatile boolean unpaced;
+    private volatile Thread thread; //the thread running this loop, to be unparked by stop()
+
+    GameLoop(int fps, Runnable tick, Histogram jitter)
+    {
+        period_ns = 1000000000L / fps;
+        this.tick = tick;
+        this.jitter = jitter;
+        spin_ns = MAX_SPIN_NS / 2;
+    }
+
+    /**
+     * Runs until stop() is called.
+     */
+    public void run()
+    {
+        thread = Thread.currentThread();
+        running = true;
+        long deadline_ns = System.nanoTime(), lastTickTime_ns = 0;
+        while (running)
+        {
+            long tickTime_ns = System.nanoTime();
+            if (jitter != null && lastTickTime_ns != 0)
+                jitter.record(Math.abs(tickTime_ns - lastTickTime_ns - period_ns));
+            lastTickTime_ns = tickTime_ns;
+
+            tick.run();
+
+            if (idle)
+            {
+                LockSupport.parkNanos(this, IDLE_PERIOD_NS); //returns at once if woken up during the tick
+                deadline_ns = System.nanoTime(); //the pace starts afresh, & the idle gap is no jitter
+                lastTickTime_ns = 0;
+                continue;
+            }
+            if (unpaced)
+            {
+                deadline_ns = System.nanoTime();
+                lastTickTime_ns = 0;    //no period to keep, so no jitter
+                continue;
+            }
+            deadline_ns += period_ns;
+            long now_ns = System.nanoTime();
+            if (now_ns - deadline_ns > period_ns)
+            {
+                noOfMissedDeadlines++;
+                deadline_ns = now_ns;
+            }
+            waitUntil(deadline_ns);
+        }
+        thread = null;
+    }
+    private void waitUntil(long deadline_ns)
+    {
+        long remaining_ns;
+        while (running && (remaining_ns = deadline_ns - System.nanoTime()) > 0)
+        {
+            if (remaining_ns > spin_ns)
+            {
+                long parkTime_ns = remaining_ns - spin_ns, parkStartTime_ns = System.nanoTime();
+                LockSupport.parkNanos(this, parkTime_ns);
+                adaptSpin(System.nanoTime() - parkStartTime_ns - parkTime_ns);
+            }
+            //otherwise spin, i.e. check the time again
+        }
+    }
+    //spin a bit longer than the worst oversleep seen lately, & shrink slowly when parking gets accurate
+    private void adaptSpin(long oversleep_ns)
+    {
+        if (oversleep_ns + oversleep_ns / 2 > spin_ns)
+            spin_ns = Math.min(MAX_SPIN_NS, oversleep_ns + oversleep_ns / 2);
+        else
+            spin_ns = Math.max(MIN_SPIN_NS, spin_ns - spin_ns / 64);
+    }
+
+    /**
+     * May be called by any thread. the tick running, if any, is finished first.
+     */
+    public void stop()
+    {
+        running = false;
+        Thread loopThread = thread;
+        if (loopThread != null)
+            LockSupport.unpark(loopThread);
+    }
+    /**
+     * May be called by any thread. takes effect after the current tick.
+     */
+    public void setIdle(boolean idle) { this.idle = idle; }
+    public boolean isIdle() { return idle; }
+    /**
+     * May be called by any thread. takes effect after the current tick.
+     */
+    public void setUnpaced(boolean unpaced) { this.unpaced = unpaced; }
+    /**
+     * Ends an idle wait at once. no effect if the loop is not idle.
+     * May be called by any thread.
+     */
+    public void wakeUp()
+    {
+        Thread loopThread = thread;
+        if (idle && loopThread != null)
+            LockSupport.unpark(loopThread);
+    }
+    public long getPeriod() { return period_ns; }
+    public long getNoOfMissedDeadlines() { return noOfMissedDeadlines; }
+}
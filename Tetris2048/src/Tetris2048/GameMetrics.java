@@ -0,0 +1,82 @@
+/**
+ * 
+ * 
+ * As a data container.
+ * 
+ * The metrics of the game, updated by the game loop & the render thread.
+ * 
+ * 
+ */
+package Tetris2048;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.ObjectName;
+
+/**
+ * Exported through the platform MBean server as "Tetris2048:type=Metrics", &,
+ * if the system property "tetris2048.metrics.port" is set, as plain text at
+ * http://host:port/metrics.
+ *
+ * @author ILoveIdunna
+ */
+class GameMetrics
+{
+    static final String OBJECT_NAME = "Tetris2048:type=Metrics";
+    static final String PORT_PROPERTY = "tetris2048.metrics.port";
+
+    static final MetricsRegistry REGISTRY = new MetricsRegistry();
+
+    //**frame time, split by subsystem
+    static final Histogram AI_TIME = REGISTRY.histogram("frame.ai", "ns");
+    static final Histogram SIMULATION_TIME = REGISTRY.histogram("frame.simulation", "ns");
+    static final Histogram RENDER_TIME = REGISTRY.histogram("frame.render", "ns");
+
+    //**frame pacing. |interval between 2 ticks - period|, see GameLoop
+    static final Histogram LOOP_JITTER = REGISTRY.histogram("loop.jitter", "ns");
+    static final Histogram RENDER_JITTER = REGISTRY.histogram("render.jitter", "ns");
+
+    //**game
+    static final AtomicLong TILES_ON_BOARD = REGISTRY.counter("board.tiles"); //set, not counted, by the game loop
+    static final Meter TILES_CREATED = REGISTRY.meter("tiles.created");
+    static final Meter TILES_MERGED = REGISTRY.meter("tiles.merged");
+
+    //**I/O & input
+    static final Histogram SCORER_IO_TIME = REGISTRY.histogram("scorer.io", "ns");
+    static final AtomicLong INPUTS_REJECTED = REGISTRY.counter("input.rejected"); //refused by moveTile(..)
+
+    private static MetricsHttpServer httpServer;
+
+    /**
+     * Register the MBean & start the HTTP endpoint if asked for.
+     * Failure in exporting is logged only. it never stops the game.
+     */
+    static void startExporting()
+    {
+        try
+        {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMBean(REGISTRY),
+                                                                    new ObjectName(OBJECT_NAME));
+        }
+        catch (Exception ex)
+        {
+            Logger.getLogger(GameMetrics.class.getName()).log(Level.WARNING, null, ex);
+        }
+
+        Integer port = Integer.getInteger(PORT_PROPERTY);
+        if (port == null)
+            return;
+        try
+        {
+            httpServer = new MetricsHttpServer(REGISTRY);
+            httpServer.start(port);
+        }
+        catch (IOException ex)
+        {
+            Logger.getLogger(GameMetrics.class.getName()).log(Level.WARNING, null, ex);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package Tetris2048;
+
+import java.util.Arrays;
+
+/**
+ * Follows a game on the game loop & turns it into TelemetryRecord objs for a TelemetryWriter:
+ * one record per finished game, &, if asked for, one record per placement.
+ *
+ * "placement" refers to a tile losing the player's control power, i.e. when the next tile is created.
+ * Merges & score gained are counted from the last placement, so merges
+ * caused by settled tiles falling afterwards go to the next placement.
+ *
+ * Must be used by the game loop only.
+ *
+ * @author ILoveIdunna
+ */
+class GameRecorder
+{
+    private final TelemetryWriter writer;
+    private final boolean recordsPlacements;
+
+    private long seed;
+    private int gameNo, startMode;
+    private long gameStartTime_ns, lastPlacementTime_ns;
+    private long noOfAbsorptionsAtStart, noOfAbsorptionsAtLastPlacement;
+    private int scoreAtLastPlacement;
+    private int[] values, columns;  //grown when needed, as a game seldom has more than a few hundred tiles
+    private int noOfValues, noOfColumns;
+
+    GameRecorder(TelemetryWriter writer, boolean recordsPlacements)
+    {
+        this.writer = writer;
+        this.recordsPlacements = recordsPlacements;
+        values = new int[256];
+        columns = new int[256];
+    }
+
+    /**
+     * @return  a recorder as asked by the system properties, or null if telemetry is off
+     */
+    static GameRecorder fromSystemProperties()
+    {
+        TelemetryWriter writer = TelemetryWriter.fromSystemProperties();
+        if (writer == null)
+            return null;
+        return new GameRecorder(writer, Boolean.getBoolean(TelemetryWriter.PLACEMENTS_PROPERTY));
+    }
+
+    public void gameStarted(long seed, int mode, long noOfAbsorptions)
+    {
+        this.seed = seed;
+        gameNo++;
+        startMode = mode;
+        gameStartTime_ns = lastPlacementTime_ns = System.nanoTime();
+        noOfAbsorptionsAtStart = noOfAbsorptionsAtLastPlacement = noOfAbsorptions;
+        scoreAtLastPlacement = 0;
+        noOfValues = noOfColumns = 0;
+    }
+
+    public void tileSpawned(int value)
+    {
+        if (noOfValues == values.length)
+            values = Arrays.copyOf(values, values.length * 2);
+        values[noOfValues++] = value;
+    }
+
+    /**
+     * @param noOfAbsorptions  absorptions made so far, counted by TileList
+     */
+    public void tilePlaced(int value, int column, int mode, int nextValue, long noOfAbsorptions, int currScore)
+    {
+        if (noOfColumns == columns.length)
+            columns = Arrays.copyOf(columns, columns.length * 2);
+        columns[noOfColumns++] = column;
+
+        long now_ns = System.nanoTime();
+        if (recordsPlacements)
+        {
+            TelemetryRecord record = new TelemetryRecord(TelemetryRecord.PLACEMENT);
+            record.seed = seed;
+            record.gameNo = gameNo;
+            record.placementNo = noOfColumns;
+            record.mode = mode;
+            record.value = value;
+            record.nextValue = nextValue;
+            record.column = column;
+            record.merges = (int) (noOfAbsorptions - noOfAbsorptionsAtLastPlacement);
+            record.scoreDelta = currScore - scoreAtLastPlacement;
+            record.duration_ms = (now_ns - lastPlacementTime_ns) / 1000000;
+            writer.offer(record);
+        }
+        lastPlacementTime_ns = now_ns;
+        noOfAbsorptionsAtLastPlacement = noOfAbsorptions;
+        scoreAtLastPlacement = currScore;
+    }
+
+    public void gameEnded(boolean won, int score, long noOfAbsorptions)
+    {
+        TelemetryRecord record = new TelemetryRecord(TelemetryRecord.GAME);
+        record.seed = seed;
+        record.gameNo = gameNo;
+        record.mode = startMode;
+        record.won = won;
+        record.score = score;
+        record.merges = (int) (noOfAbsorptions - noOfAbsorptionsAtStart);
+        record.duration_ms = (System.nanoTime() - gameStartTime_ns) / 1000000;
+        record.values = Arrays.copyOf(values, noOfValues); //the arrays are reused by the next game
+        record.noOfValues = noOfValues;
+        record.columns = Arrays.copyOf(columns, noOfColumns);
+        record.noOfColumns = noOfColumns;
+        writer.offer(record);
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package Tetris2048;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The states of many games played by placements at once, in one direct buffer, off the heap.
+ *
+ * A state is a fixed-size record, so the states are stepped in order through contiguous memory,
+ * & a million of them take 40MB outside the heap, instead of a million GridEngine objs, let alone TileLists.
+ * Record layout, at idx * RECORD_SIZE:
+ *   long   the field, packed as by Tablebase.keyOf(..)
+ *   long   the state of the random generator
+ *   long   the seed the game was started with
+ *   int    score
+ *   int    placements
+ *   byte   the value to place, as exponent
+ *   byte   the next value, as exponent
+ *   byte   mode
+ *   byte   status: FREE, PLAYING or LOST
+ *
+ * The new values are drawn by the generator of java.util.Random, kept in the record, & by the ratios of
+ * TileList.randomValue(..), so a game started with a seed draws exactly the values that
+ * TileList.randomValue(new Random(seed), mode) would: any game of the pool can be replayed on its own.
+ *
+ * A pool is not synchronized: threads stepping it are to step disjoint ranges of it.
+ *
+ * @author ILoveIdunna
+ */
+class GameStatePool
+{
+    static final int RECORD_SIZE = 40;
+    static final byte FREE = 0, PLAYING = 1, LOST = 2;
+    private static final int FIELD = 0, RANDOM = 8, SEED = 16, SCORE = 24, PLACEMENTS = 28,
+                             VALUE = 32, NEXT_VALUE = 33, MODE = 34, STATUS = 35;
+    //of java.util.Random
+    private static final long MULTIPLIER = 0x5DEECE66DL, ADDEND = 0xBL, MASK = (1L << 48) - 1;
+
+    /**
+     * Told of each game lost while stepping.
+     */
+    interface GameOverListener
+    {
+        void gameOver(GameStatePool pool, int idx);
+    }
+
+    private final ByteBuffer records;
+    private final int capacity, noOfRows, noOfCols;
+    private final int[][] value248Ratio;    //[mode], as of TileList
+
+    /**
+     * @param noOfRows   including the row where new tiles are created, as of GridEngine
+     */
+    GameStatePool(int capacity, int noOfRows, int noOfCols)
+    {
+        if (!Tablebase.fits(noOfRows, noOfCols))
+            throw new IllegalArgumentException("a board of " + noOfRows + "x" + noOfCols + " does not fit in a long");
+        if ((long) capacity * RECORD_SIZE > Integer.MAX_VALUE)
+            throw new IllegalArgumentException(capacity + " states do not fit in a buffer");
+        this.capacity = capacity;
+        this.noOfRows = noOfRows;
+        this.noOfCols = noOfCols;
+        value248Ratio = new int[TileList.NO_OF_MODES][];
+        for (int mode = 0; mode < TileList.NO_OF_MODES; mode++)
+            value248Ratio[mode] = TileList.valueRatios(mode);
+        records = ByteBuffer.allocateDirect(capacity * RECORD_SIZE).order(ByteOrder.nativeOrder()); //all FREE
+    }
+
+    //**  public methods  **//
+    //
+    //a new game in the record, as a GridEngine reset & TileList.randomValue(new Random(seed), mode) would play
+    public void start(int idx, long seed, int mode)
+    {
+        int offset = idx * RECORD_SIZE;
+        records.putLong(offset + FIELD, 0);
+        records.putLong(offset + RANDOM, (seed ^ MULTIPLIER) & MASK);   //as scrambled by new Random(seed)
+        records.putLong(offset + SEED, seed);
+        records.putInt(offset + SCORE, 0);
+        records.putInt(offset + PLACEMENTS, 0);
+        records.put(offset + MODE, (byte) mode);
+        records.put(offset + VALUE, (byte) nextExponent(offset, mode));
+        records.put(offset + NEXT_VALUE, (byte) nextExponent(offset, mode));
+        records.put(offset + STATUS, PLAYING);
+    }
+    public void free(int idx)
+    {
+        records.put(idx * RECORD_SIZE + STATUS, FREE);
+    }
+    /**
+     * One placement in each game playing in [from, to), chosen by the policy.
+     * @param field      to be reused for every game, of the size of the pool
+     * @param listener   told of each game lost, e.g. to start another in its record. may be null
+     * @return           the number of games stepped
+     */
+    public int step(int from, int to, PlacementPolicy policy, GridEngine field, GameOverListener listener)
+    {
+        int noOfGamesStepped = 0;
+        for (int idx = from, offset = from * RECORD_SIZE; idx < to; idx++, offset += RECORD_SIZE)
+        {
+            if (records.get(offset + STATUS) != PLAYING)
+                continue;
+            Tablebase.setField(field, records.getLong(offset + FIELD));
+            field.setScore(records.getInt(offset + SCORE));
+            int value = 1 << records.get(offset + VALUE), nextValue = 1 << records.get(offset + NEXT_VALUE);
+            field.place(policy.choosePlacement(field, value, nextValue, records.get(offset + MODE)), value);
+            records.putInt(offset + SCORE, field.getScore());
+            records.putInt(offset + PLACEMENTS, records.getInt(offset + PLACEMENTS) + 1);
+            noOfGamesStepped++;
+            if (field.isLost())
+            {
+                records.put(offset + STATUS, LOST);
+                if (listener != null)
+                    listener.gameOver(this, idx);
+                continue;
+            }
+            records.putLong(offset + FIELD, Tablebase.keyOf(field));
+            records.put(offset + VALUE, (byte) Integer.numberOfTrailingZeros(nextValue));
+            records.put(offset + NEXT_VALUE, (byte) nextExponent(offset, records.get(offset + MODE)));
+        }
+        return noOfGamesStepped;
+    }
+    public int getCapacity() { return capacity; }
+    public int getNoOfRows() { return noOfRows; }
+    public int getNoOfCols() { return noOfCols; }
+    public long getMemory_bytes() { return records.capacity(); }
+    public byte getStatus(int idx) { return records.get(idx * RECORD_SIZE + STATUS); }
+    public long getField(int idx) { return records.getLong(idx * RECORD_SIZE + FIELD); }
+    public long getSeed(int idx) { return records.getLong(idx * RECORD_SIZE + SEED); }
+    public int getScore(int idx) { return records.getInt(idx * RECORD_SIZE + SCORE); }
+    public int getNoOfPlacements(int idx) { return records.getInt(idx * RECORD_SIZE + PLACEMENTS); }
+    public int getMode(int idx) { return records.get(idx * RECORD_SIZE + MODE); }
+    public int getValue(int idx) { return 1 << records.get(idx * RECORD_SIZE + VALUE); }
+    public int getNextValue(int idx) { return 1 << records.get(idx * RECORD_SIZE + NEXT_VALUE); }
+    //of the field when lost, i.e. before the placement losing it, which never makes a higher value
+    public int getHighestValue(int idx)
+    {
+        long field = getField(idx);
+        int highestExponent = 0;
+        for (int cell = 0; cell < 16; cell++)
+            highestExponent = Math.max(highestExponent, (int) (field >>> (4 * cell)) & ColumnTable.CELL_MASK);
+        return (highestExponent == 0) ? 0 : 1 << highestExponent;
+    }
+    //
+    //**  END of public methods  **//
+
+    //TileList.randomValue(..), drawn by the generator of the record as java.util.Random.nextInt(bound) does
+    private int nextExponent(int offset, int mode)
+    {
+        int[] ratios = value248Ratio[mode];
+        int randomNum = nextInt(offset, ratios[0] + ratios[1] + ratios[2]);
+        if (randomNum < ratios[0])
+            return 1;
+        else if (randomNum < ratios[0] + ratios[1])
+            return 2;
+        else
+            return 3;
+    }
+    private int nextInt(int offset, int bound)
+    {
+        if ((bound & -bound) == bound)
+            return (int) ((bound * (long) next31(offset)) >> 31);
+        int bits, value;
+        do
+        {
+            bits = next31(offset);
+            value = bits % bound;
+        }
+        while (bits - value + (bound - 1) < 0);
+        return value;
+    }
+    private int next31(int offset)
+    {
+        long state = (records.getLong(offset + RANDOM) * MULTIPLIER + ADDEND) & MASK;
+        records.putLong(offset + RANDOM, state);
+        return (int) (state >>> (48 - 31));
+    }
+}
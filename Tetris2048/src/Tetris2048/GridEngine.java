@@ -0,0 +1,115 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package Tetris2048;
+
+import static Tetris2048.GameFieldData.*;
+import java.util.Arrays;
+
+/**
+ * A game field played by placements instead of frames, for AI search & batch runs.
+ *
+ * A placement is the new tile being moved over a column & dropped straight into it, which TileList
+ * would play out in some dozens of frames. Here it costs one look-up in a ColumnTable.
+ * Moves which TileList allows on top of that, e.g. absorbing sideways at the lower boundary, are not modelled.
+ *
+ * The game is lost once a column overflows, i.e. a tile settles in the row where new tiles are created,
+ * as TileList tells by exceededUpperBoundary().
+ *
+ * @author ILoveIdunna
+ */
+class GridEngine
+{
+    private final int noOfRows, noOfCols;
+    private final ColumnTable table;
+    private final int[] columns;    //packed as described by ColumnTable, from the leftmost one
+    private int score;
+    private int noOfMerges, noOfPlacements;
+    private boolean lost;
+
+    GridEngine() { this(NO_ROW, NO_COL); }
+    /**
+     * @param noOfRows   including the row where new tiles are created. at most ColumnTable.MAX_NO_CELLS
+     */
+    GridEngine(int noOfRows, int noOfCols)
+    {
+        this.noOfRows = noOfRows;
+        this.noOfCols = noOfCols;
+        table = ColumnTable.of(noOfRows);
+        columns = new int[noOfCols];
+    }
+
+    //**  public methods  **//
+    //
+    public void reset()
+    {
+        Arrays.fill(columns, 0);
+        score = 0;
+        noOfMerges = 0;
+        noOfPlacements = 0;
+        lost = false;
+    }
+    //to keep a state while searching, without allocation
+    public void copyFrom(GridEngine another)
+    {
+        System.arraycopy(another.columns, 0, columns, 0, noOfCols);
+        score = another.score;
+        noOfMerges = another.noOfMerges;
+        noOfPlacements = another.noOfPlacements;
+        lost = another.lost;
+    }
+    /**
+     * The result of a placement, without making it.
+     * @param value   of the tile dropped, e.g. 2
+     * @return        as of ColumnTable.drop(..), i.e. ColumnTable.INVALID if the game is already lost
+     */
+    public int tryPlace(int col, int value)
+    {
+        if (lost)
+            return ColumnTable.INVALID;
+        return table.drop(columns[col], Integer.numberOfTrailingZeros(value));
+    }
+    /**
+     * @return   as of tryPlace(..)
+     */
+    public int place(int col, int value)
+    {
+        int result = tryPlace(col, value);
+        if (result == ColumnTable.INVALID)
+            return result;
+        int exponent = Integer.numberOfTrailingZeros(value);
+        columns[col] = ColumnTable.columnOf(result);
+        score += ColumnTable.scoreOf(result, exponent);
+        noOfMerges += ColumnTable.mergesOf(result);
+        noOfPlacements++;
+        lost = ColumnTable.overflows(result);
+        return result;
+    }
+    public int getNoOfRows() { return noOfRows; }
+    public int getNoOfCols() { return noOfCols; }
+    public int getColumn(int col) { return columns[col]; }
+    public void setColumn(int col, int column) { columns[col] = column; }
+    //@param row   counted from the lowest, from 0. @return 0 if empty
+    public int getValue(int col, int row)
+    {
+        int exponent = ColumnTable.cellOf(columns[col], row);
+        return (exponent == 0) ? 0 : 1 << exponent;
+    }
+    public int getHighestValue()
+    {
+        int highestExponent = 0;
+        for (int col = 0; col < noOfCols; col++)
+            for (int row = 0; row < noOfRows; row++)
+                highestExponent = Math.max(highestExponent, ColumnTable.cellOf(columns[col], row));
+        return (highestExponent == 0) ? 0 : 1 << highestExponent;
+    }
+    public int getScore() { return score; }
+    public void setScore(int score) { this.score = score; }
+    public int getNoOfMerges() { return noOfMerges; }
+    public int getNoOfPlacements() { return noOfPlacements; }
+    public boolean isLost() { return lost; }
+    //
+    //**  END of public methods  **//
+}
@@ -0,0 +1,116 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package Tetris2048;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size, log-linear histogram of non-negative long values, e.g. durations in ns.
+ * 
+ * Values below 32 have a bucket of their own.
+ * Above that, each power of 2 is split into 16 buckets, so that a percentile read back
+ * is never more than 1/16 (~6%) away from the recorded value.
+ * 
+ * record(..) may be called by any thread, without lock & without allocation.
+ * Readers may see a histogram which is being recorded into, which is good enough for reporting.
+ *
+ * @author ILoveIdunna
+ */
+class Histogram
+{
+    private static final int NO_OF_EXACT_BUCKETS = 32;
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int NO_OF_SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int NO_OF_BUCKETS = NO_OF_EXACT_BUCKETS + (63 - 5 + 1) * NO_OF_SUB_BUCKETS;
+
+    private final AtomicLongArray counts;
+    private final AtomicLong totalCount, sum, max;
+
+    Histogram()
+    {
+        counts = new AtomicLongArray(NO_OF_BUCKETS);
+        totalCount = new AtomicLong();
+        sum = new AtomicLong();
+        max = new AtomicLong();
+    }
+
+    //**  private methods  **//
+    //
+    private static int bucketOf(long value)
+    {
+        if (value < NO_OF_EXACT_BUCKETS)
+            return (int) value;
+        int magnitude = 63 - Long.numberOfLeadingZeros(value); //>= 5
+        int subBucket = (int) (value >>> (magnitude - SUB_BUCKET_BITS)) & (NO_OF_SUB_BUCKETS - 1);
+        return NO_OF_EXACT_BUCKETS + (magnitude - 5) * NO_OF_SUB_BUCKETS + subBucket;
+    }
+    private static long highestValueOf(int bucket)
+    {
+        if (bucket < NO_OF_EXACT_BUCKETS)
+            return bucket;
+        int magnitude = (bucket - NO_OF_EXACT_BUCKETS) / NO_OF_SUB_BUCKETS + 5;
+        long subBucket = (bucket - NO_OF_EXACT_BUCKETS) % NO_OF_SUB_BUCKETS;
+        long lowest = (NO_OF_SUB_BUCKETS + subBucket) << (magnitude - SUB_BUCKET_BITS);
+        return lowest + (1L << (magnitude - SUB_BUCKET_BITS)) - 1;
+    }
+    //
+    //**  END of private methods  **//
+
+
+    //**  public methods  **//
+    //
+    public void record(long value)
+    {
+        if (value < 0)
+            value = 0;
+        counts.incrementAndGet(bucketOf(value));
+        totalCount.incrementAndGet();
+        sum.addAndGet(value);
+        long currMax = max.get();
+        while (value > currMax && !max.compareAndSet(currMax, value))
+            currMax = max.get();
+    }
+    public long getCount() { return totalCount.get(); }
+    public long getMax() { return max.get(); }
+    public double getMean()
+    {
+        long count = totalCount.get();
+        return (count == 0) ? 0 : (double) sum.get() / count;
+    }
+    /**
+     * @param percentile    e.g. 50 for the median, 99 for p99
+     * @return              the highest value of the bucket holding the percentile, capped by max.
+     *                      0 if nothing has been recorded
+     */
+    public long getValueAtPercentile(double percentile)
+    {
+        long count = totalCount.get();
+        if (count == 0)
+            return 0;
+        long rank = (long) Math.ceil(percentile / 100 * count);
+        if (rank < 1)
+            rank = 1;
+        long countSoFar = 0;
+        for (int i = 0; i < NO_OF_BUCKETS; i++)
+        {
+            countSoFar += counts.get(i);
+            if (countSoFar >= rank)
+                return Math.min(highestValueOf(i), max.get());
+        }
+        return max.get();
+    }
+    public void reset()
+    {
+        for (int i = 0; i < NO_OF_BUCKETS; i++)
+            counts.set(i, 0);
+        totalCount.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+    //
+    //**  END of public methods  **//
+}
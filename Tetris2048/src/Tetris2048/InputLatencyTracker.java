@@ -0,0 +1,145 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package Tetris2048;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures how long a player's movement key takes to show up on screen.
+ * 
+ * Every key is timestamped on arrival, i.e. when it is offered to the CommandQueue.
+ * Then, per mode, 3 latencies are recorded into histograms:
+ *   accepted   arrival -> the game loop takes the key & moveTile(..) accepts it
+ *   ready      arrival -> readyForNewPplMv() first lets a key through after the key was rejected,
+ *              i.e. how long the player would have had to wait for a rejected key to work
+ *   frame      arrival -> the first frame showing the moved tile is handed over to the screen
+ * 
+ * A session is one game. The histograms are reported & reset when a game ends.
+ *
+ * @author ILoveIdunna
+ */
+class InputLatencyTracker
+{
+    private static final int NO_OF_MODES = TileList.NO_OF_MODES;
+    private static final String[] MODE_NAMES = TileList.MODE_NAMES;
+
+    private final Histogram[] arrivalToAccepted, arrivalToReady, arrivalToFrame; //indexed by mode
+    private final AtomicLong[] noOfAccepted, noOfRejected;
+
+    //**touched by the game loop only
+    private long pendingRejectedArrivalTime_ns; //the oldest rejected key not yet let through. 0 if none
+    private int pendingRejectedMode;
+    private long lastAcceptedArrivalTime_ns;    //copied into every snapshot, see BoardSnapshot
+
+    //**touched by the render thread only
+    private long lastFramedArrivalTime_ns;
+
+    InputLatencyTracker()
+    {
+        arrivalToAccepted = new Histogram[NO_OF_MODES];
+        arrivalToReady = new Histogram[NO_OF_MODES];
+        arrivalToFrame = new Histogram[NO_OF_MODES];
+        noOfAccepted = new AtomicLong[NO_OF_MODES];
+        noOfRejected = new AtomicLong[NO_OF_MODES];
+        for (int i = 0; i < NO_OF_MODES; i++)
+        {
+            arrivalToAccepted[i] = new Histogram();
+            arrivalToReady[i] = new Histogram();
+            arrivalToFrame[i] = new Histogram();
+            noOfAccepted[i] = new AtomicLong();
+            noOfRejected[i] = new AtomicLong();
+        }
+    }
+
+    //**  functions for the game loop  **//
+    //
+    public void inputAccepted(long arrivalTime_ns, long now_ns, int mode)
+    {
+        letPendingRejectedThrough(now_ns);
+        arrivalToAccepted[mode].record(now_ns - arrivalTime_ns);
+        noOfAccepted[mode].incrementAndGet();
+        lastAcceptedArrivalTime_ns = arrivalTime_ns;
+    }
+    public void inputRejected(long arrivalTime_ns, int mode)
+    {
+        noOfRejected[mode].incrementAndGet();
+        if (pendingRejectedArrivalTime_ns != 0)
+            return;
+        pendingRejectedArrivalTime_ns = arrivalTime_ns;
+        pendingRejectedMode = mode;
+    }
+    /**
+     * Called once per tick, before the queued keys are handled.
+     */
+    public void checkIfReadyForNewPplMv(boolean readyForNewPplMv, long now_ns)
+    {
+        if (readyForNewPplMv)
+            letPendingRejectedThrough(now_ns);
+    }
+    private void letPendingRejectedThrough(long now_ns)
+    {
+        if (pendingRejectedArrivalTime_ns == 0)
+            return;
+        arrivalToReady[pendingRejectedMode].record(now_ns - pendingRejectedArrivalTime_ns);
+        pendingRejectedArrivalTime_ns = 0;
+    }
+    public long getLastAcceptedArrivalTime() { return lastAcceptedArrivalTime_ns; }
+    //
+    //**  END of functions for the game loop  **//
+
+
+    //**  functions for the render thread  **//
+    //
+    /**
+     * Called right after a snapshot has been drawn & handed over to the screen.
+     */
+    public void framePresented(BoardSnapshot snapshot, long now_ns)
+    {
+        long arrivalTime_ns = snapshot.getLastAcceptedInputTime();
+        if (arrivalTime_ns == 0 || arrivalTime_ns == lastFramedArrivalTime_ns)
+            return;
+        lastFramedArrivalTime_ns = arrivalTime_ns;
+        arrivalToFrame[snapshot.getMode()].record(now_ns - arrivalTime_ns);
+    }
+    //
+    //**  END of functions for the render thread  **//
+
+
+    public String report()
+    {
+        StringBuilder sb = new StringBuilder("Input latency of this game (ms):");
+        for (int mode = 0; mode < NO_OF_MODES; mode++)
+        {
+            if (noOfAccepted[mode].get() + noOfRejected[mode].get() == 0)
+                continue;
+            sb.append("\n  ").append(MODE_NAMES[mode])
+              .append(": ").append(noOfAccepted[mode].get()).append(" accepted, ")
+              .append(noOfRejected[mode].get()).append(" rejected");
+            appendHistogram(sb, "accepted", arrivalToAccepted[mode]);
+            appendHistogram(sb, "ready   ", arrivalToReady[mode]);
+            appendHistogram(sb, "frame   ", arrivalToFrame[mode]);
+        }
+        return sb.toString();
+    }
+    private static void appendHistogram(StringBuilder sb, String name, Histogram histogram)
+    {
+        sb.append(String.format("%n    %s  p50=%.2f  p99=%.2f  max=%.2f  (n=%d)", name,
+                histogram.getValueAtPercentile(50) / 1e6, histogram.getValueAtPercentile(99) / 1e6,
+                histogram.getMax() / 1e6, histogram.getCount()));
+    }
+    public void reset()
+    {
+        for (int i = 0; i < NO_OF_MODES; i++)
+        {
+            arrivalToAccepted[i].reset();
+            arrivalToReady[i].reset();
+            arrivalToFrame[i].reset();
+            noOfAccepted[i].set(0);
+            noOfRejected[i].set(0);
+        }
+        pendingRejectedArrivalTime_ns = 0;
+    }
+}
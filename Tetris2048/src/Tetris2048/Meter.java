@@ -0,0 +1,60 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package Tetris2048;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts events & tells how many of them happened per second recently,
+ * e.g. tiles merged per second.
+ * 
+ * Events are counted into one bucket per second. The rate is the average of
+ * the last RATE_WINDOW_SEC complete seconds, so it is stable enough to be scraped.
+ *
+ * @author ILoveIdunna
+ */
+class Meter
+{
+    private static final int NO_OF_BUCKETS = 16; //must be a power of 2 & > RATE_WINDOW_SEC
+    static final int RATE_WINDOW_SEC = 10;
+
+    private final AtomicLong count;
+    private final AtomicLongArray bucketCounts, bucketSeconds; //bucketSeconds tells which second a bucket is for
+
+    Meter()
+    {
+        count = new AtomicLong();
+        bucketCounts = new AtomicLongArray(NO_OF_BUCKETS);
+        bucketSeconds = new AtomicLongArray(NO_OF_BUCKETS);
+    }
+
+    private static long currSecond() { return System.nanoTime() / 1000000000L; }
+
+    public void mark()
+    {
+        count.incrementAndGet();
+        long second = currSecond();
+        int idx = (int) (second & (NO_OF_BUCKETS - 1));
+        long bucketSecond = bucketSeconds.get(idx);
+        if (bucketSecond != second && bucketSeconds.compareAndSet(idx, bucketSecond, second))
+            bucketCounts.set(idx, 0); //the bucket was for a second long ago. reuse it
+        bucketCounts.incrementAndGet(idx);
+    }
+    public long getCount() { return count.get(); }
+    public double getRatePerSecond()
+    {
+        long second = currSecond();
+        long sum = 0;
+        for (long s = second - RATE_WINDOW_SEC; s < second; s++)
+        {
+            int idx = (int) (s & (NO_OF_BUCKETS - 1));
+            if (bucketSeconds.get(idx) == s)
+                sum += bucketCounts.get(idx);
+        }
+        return (double) sum / RATE_WINDOW_SEC;
+    }
+}
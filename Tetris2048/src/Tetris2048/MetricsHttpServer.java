@@ -0,0 +1,63 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package Tetris2048;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+
+/**
+ * Serves the values of a MetricsRegistry as plain text, one "name value" pair per line,
+ * at http://host:port/metrics, with the HTTP server built in the JDK.
+ *
+ * @author ILoveIdunna
+ */
+class MetricsHttpServer implements HttpHandler
+{
+    static final String PATH = "/metrics";
+
+    private final MetricsRegistry registry;
+    private HttpServer server;
+
+    MetricsHttpServer(MetricsRegistry registry)
+    {
+        this.registry = registry;
+    }
+
+    public void start(int port) throws IOException
+    {
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext(PATH, this);
+        server.setExecutor(null); //requests are few & cheap. serve them on the server's own thread
+        server.start();
+    }
+    public void stop()
+    {
+        if (server != null)
+            server.stop(0);
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException
+    {
+        byte[] body = registry.toText().getBytes(Charset.forName("UTF-8"));
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+        OutputStream out = exchange.getResponseBody();
+        try
+        {
+            out.write(body);
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package Tetris2048;
+
+import java.util.List;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ReflectionException;
+
+/**
+ * Exposes every value of a MetricsRegistry as a read-only JMX attribute,
+ * e.g. "frame.simulation.p99_ns", for jconsole or any JMX based monitoring.
+ *
+ * @author ILoveIdunna
+ */
+class MetricsMBean implements DynamicMBean
+{
+    private final MetricsRegistry registry;
+
+    MetricsMBean(MetricsRegistry registry)
+    {
+        this.registry = registry;
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException
+    {
+        Number value = registry.getValues().get(attribute);
+        if (value == null)
+            throw new AttributeNotFoundException(attribute);
+        return value;
+    }
+    @Override
+    public AttributeList getAttributes(String[] attributes)
+    {
+        AttributeList list = new AttributeList();
+        for (String attribute : attributes)
+        {
+            Number value = registry.getValues().get(attribute);
+            if (value != null)
+                list.add(new Attribute(attribute, value));
+        }
+        return list;
+    }
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException
+    {
+        throw new AttributeNotFoundException(attribute.getName() + " is read-only");
+    }
+    @Override
+    public AttributeList setAttributes(AttributeList attributes)
+    {
+        return new AttributeList();
+    }
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException
+    {
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+    @Override
+    public MBeanInfo getMBeanInfo()
+    {
+        List<String> names = registry.getNames();
+        MBeanAttributeInfo[] attributeInfos = new MBeanAttributeInfo[names.size()];
+        for (int i = 0; i < attributeInfos.length; i++)
+        {
+            String type = (registry.getValues().get(names.get(i)) instanceof Double) ? "double" : "long";
+            attributeInfos[i] = new MBeanAttributeInfo(names.get(i), type, names.get(i), true, false, false);
+        }
+        return new MBeanInfo(getClass().getName(), "Tetris2048 metrics", attributeInfos,
+                            null, new MBeanOperationInfo[0], null);
+    }
+}
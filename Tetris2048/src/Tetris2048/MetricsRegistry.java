@@ -0,0 +1,133 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package Tetris2048;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A named collection of metrics:
+ *   counters (AtomicLong), meters (Meter), histograms (Histogram) & gauges (Gauge).
+ * 
+ * Metrics are created once, at start up, & then updated through the references kept by the callers,
+ * so updating a metric never looks anything up in the registry.
+ * The registry is only walked when the metrics are exported, see MetricsMBean & MetricsHttpServer.
+ *
+ * @author ILoveIdunna
+ */
+class MetricsRegistry
+{
+    /**
+     * A value read when exported, e.g. the number of tiles on the board.
+     */
+    interface Gauge
+    {
+        long getValue();
+    }
+
+    private final Map<String, Object> metrics;
+    private final Map<String, String> units; //for histograms only, e.g. "ns"
+
+    MetricsRegistry()
+    {
+        metrics = new LinkedHashMap<String, Object>();
+        units = new LinkedHashMap<String, String>();
+    }
+
+    //**  functions to create metrics  **//
+    //
+    public synchronized AtomicLong counter(String name)
+    {
+        AtomicLong counter = new AtomicLong();
+        metrics.put(name, counter);
+        return counter;
+    }
+    public synchronized Meter meter(String name)
+    {
+        Meter meter = new Meter();
+        metrics.put(name, meter);
+        return meter;
+    }
+    public synchronized Histogram histogram(String name, String unit)
+    {
+        Histogram histogram = new Histogram();
+        metrics.put(name, histogram);
+        units.put(name, unit);
+        return histogram;
+    }
+    public synchronized void gauge(String name, Gauge gauge)
+    {
+        metrics.put(name, gauge);
+    }
+    //
+    //**  END of functions to create metrics  **//
+
+
+    //**  functions to export metrics  **//
+    //
+    /**
+     * Flatten all metrics into (name, value) pairs.
+     * e.g. a histogram "frame.simulation" gives "frame.simulation.p50", "frame.simulation.p99",
+     * "frame.simulation.max", "frame.simulation.mean" & "frame.simulation.count".
+     */
+    public synchronized Map<String, Number> getValues()
+    {
+        Map<String, Number> values = new LinkedHashMap<String, Number>();
+        for (Map.Entry<String, Object> entry : metrics.entrySet())
+        {
+            String name = entry.getKey();
+            Object metric = entry.getValue();
+            if (metric instanceof AtomicLong)
+                values.put(name, ((AtomicLong) metric).get());
+            else if (metric instanceof Meter)
+            {
+                values.put(name + ".count", ((Meter) metric).getCount());
+                values.put(name + ".perSecond", ((Meter) metric).getRatePerSecond());
+            }
+            else if (metric instanceof Histogram)
+            {
+                Histogram histogram = (Histogram) metric;
+                String unit = units.get(name);
+                values.put(name + ".p50_" + unit, histogram.getValueAtPercentile(50));
+                values.put(name + ".p99_" + unit, histogram.getValueAtPercentile(99));
+                values.put(name + ".max_" + unit, histogram.getMax());
+                values.put(name + ".mean_" + unit, histogram.getMean());
+                values.put(name + ".count", histogram.getCount());
+            }
+            else if (metric instanceof Gauge)
+                values.put(name, ((Gauge) metric).getValue());
+        }
+        return values;
+    }
+    public List<String> getNames()
+    {
+        return new ArrayList<String>(getValues().keySet());
+    }
+    /**
+     * @return  one "name value" pair per line
+     */
+    public String toText()
+    {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Number> entry : getValues().entrySet())
+        {
+            Number value = entry.getValue();
+            sb.append(entry.getKey()).append(' ');
+            if (value instanceof Double)
+                sb.append(String.format(Locale.ROOT, "%.3f", value.doubleValue()));
+            else
+                sb.append(value.longValue());
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+    //
+    //**  END of functions to export metrics  **//
+}
@@ -0,0 +1,231 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package Tetris2048;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Evaluates a GridEngine by an n-tuple network: the sum of weights looked up by patterns of the tile exponents.
+ *
+ * The patterns, i.e. tuples, are:
+ *   every column, as packed by ColumnTable. one table of weights shared by all columns
+ *   every window of ROW_WINDOW adjacent cells in a row. one table per row, shared by the windows of the row
+ * On the default 5x4 board, that is 2^20 + 5 * 2^16 weights, i.e. 5.5MB.
+ *
+ * The weights are floats in a flat file, memory-mapped rather than read, so that opening it costs no more
+ * than a system call, & the pages are shared by every game mapping the same file. Layout, little-endian:
+ *   HEADER_SIZE bytes   int MAGIC, int VERSION, int noOfRows, int noOfCols, int rowWindow, int noOfWeights,
+ *                       long noOfUpdates, zero-padded
+ *   noOfWeights floats  the column table, then the tables of the rows from the lowest
+ *
+ * @author ILoveIdunna
+ */
+class NTupleNetwork
+{
+    static final String WEIGHTS_PROPERTY = "tetris2048.ai.weights"; //path of the weights file
+    static final String DEFAULT_WEIGHTS_PATH = "ntuple.weights";
+    static final int ROW_WINDOW = 4;
+    private static final int MAGIC = 0x544E3254; //"T2NT" when read as little-endian ASCII
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int NO_OF_UPDATES_OFFSET = 24;
+    private static final int EXPORT_CHUNK_SIZE = 4096;    //bytes of weights exported at once, left as a hole if all 0
+
+    private final int noOfRows, noOfCols, rowWindow;
+    private final int columnMask;       //of the cells in a column tuple
+    private final int rowTableSize;
+    private final int noOfTuples;
+    private final ByteBuffer header;    //the whole buffer, as mapped
+    private final boolean mapped;       //false for a network in memory
+    private final FloatBuffer weights;
+
+    private NTupleNetwork(int noOfRows, int noOfCols, ByteBuffer buffer, boolean mapped)
+    {
+        this.mapped = mapped;
+        this.noOfRows = noOfRows;
+        this.noOfCols = noOfCols;
+        rowWindow = Math.min(ROW_WINDOW, noOfCols);
+        columnMask = (1 << (noOfRows * ColumnTable.BITS_PER_CELL)) - 1;
+        rowTableSize = 1 << (rowWindow * ColumnTable.BITS_PER_CELL);
+        noOfTuples = noOfCols + noOfRows * (noOfCols - rowWindow + 1);
+        header = buffer.order(ByteOrder.LITTLE_ENDIAN); //read by absolute index only, so its position is free to move
+        buffer.position(HEADER_SIZE);
+        weights = buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+    }
+    private static int noOfWeights(int noOfRows, int noOfCols)
+    {
+        int rowWindow = Math.min(ROW_WINDOW, noOfCols);
+        return (1 << (noOfRows * ColumnTable.BITS_PER_CELL)) + noOfRows * (1 << (rowWindow * ColumnTable.BITS_PER_CELL));
+    }
+    private static void checkSize(int noOfRows, int noOfCols)
+    {
+        if (noOfRows > ColumnTable.MAX_NO_TABLED_CELLS || noOfCols < 1)
+            throw new IllegalArgumentException("no n-tuple network for a board of " + noOfRows + " rows");
+    }
+
+    /**
+     * Maps the weights file, which is created with all weights 0 if missing & writable.
+     * @param writable   true to let update(..) write the weights through to the file, e.g. by a trainer
+     */
+    static NTupleNetwork map(File file, int noOfRows, int noOfCols, boolean writable) throws IOException
+    {
+        checkSize(noOfRows, noOfCols);
+        long size = HEADER_SIZE + 4L * noOfWeights(noOfRows, noOfCols);
+        boolean created = !file.exists();
+        if (created && !writable)
+            throw new IOException("no weights file " + file);
+        RandomAccessFile raf = new RandomAccessFile(file, writable ? "rw" : "r");
+        try
+        {
+            if (created)
+                raf.setLength(size);
+            else if (raf.length() != size)
+                throw new IOException(file + " is not of the weights of a " + noOfRows + "x" + noOfCols + " board");
+            //a mapping stays valid after its channel is closed
+            MappedByteBuffer buffer = raf.getChannel().map(writable ? FileChannel.MapMode.READ_WRITE
+                                                                    : FileChannel.MapMode.READ_ONLY, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (created)
+                writeHeader(buffer, noOfRows, noOfCols);
+            else if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+                     || buffer.getInt(8) != noOfRows || buffer.getInt(12) != noOfCols)
+                throw new IOException(file + " is not of the weights of a " + noOfRows + "x" + noOfCols + " board");
+            return new NTupleNetwork(noOfRows, noOfCols, buffer, true);
+        }
+        finally
+        {
+            raf.close();
+        }
+    }
+    //all weights 0, i.e. a greedy player. e.g. when there is no weights file
+    static NTupleNetwork inMemory(int noOfRows, int noOfCols)
+    {
+        checkSize(noOfRows, noOfCols);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(HEADER_SIZE + 4 * noOfWeights(noOfRows, noOfCols));
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        writeHeader(buffer, noOfRows, noOfCols);
+        return new NTupleNetwork(noOfRows, noOfCols, buffer, false);
+    }
+    private static void writeHeader(ByteBuffer buffer, int noOfRows, int noOfCols)
+    {
+        buffer.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, noOfRows).putInt(12, noOfCols)
+              .putInt(16, Math.min(ROW_WINDOW, noOfCols)).putInt(20, noOfWeights(noOfRows, noOfCols))
+              .putLong(NO_OF_UPDATES_OFFSET, 0);
+    }
+
+    //**  public methods  **//
+    //
+    public float evaluate(GridEngine field)
+    {
+        float value = 0;
+        for (int col = 0; col < noOfCols; col++)
+            value += weights.get(field.getColumn(col) & columnMask);
+        int offset = columnMask + 1;
+        for (int row = 0; row < noOfRows; row++, offset += rowTableSize)
+            for (int col = 0; col + rowWindow <= noOfCols; col++)
+                value += weights.get(offset + rowIndex(field, row, col));
+        return value;
+    }
+    /**
+     * Adds delta to every weight looked up by evaluate(field).
+     * Not synchronized: concurrent updates may lose one another, which is accepted by lock-free training.
+     */
+    public void update(GridEngine field, float delta)
+    {
+        for (int col = 0; col < noOfCols; col++)
+            add(field.getColumn(col) & columnMask, delta);
+        int offset = columnMask + 1;
+        for (int row = 0; row < noOfRows; row++, offset += rowTableSize)
+            for (int col = 0; col + rowWindow <= noOfCols; col++)
+                add(offset + rowIndex(field, row, col), delta);
+    }
+    public int getNoOfTuples() { return noOfTuples; }
+    public int getNoOfWeights() { return weights.capacity(); }
+    //by the trainer, which keeps count in the header so that a training may be resumed
+    public long getNoOfUpdates() { return header.getLong(NO_OF_UPDATES_OFFSET); }
+    public void setNoOfUpdates(long noOfUpdates) { header.putLong(NO_OF_UPDATES_OFFSET, noOfUpdates); }
+    public float getWeight(int idx) { return weights.get(idx); }
+    public void setWeight(int idx, float weight) { weights.put(idx, weight); }
+    public int getNoOfRows() { return noOfRows; }
+    public int getNoOfCols() { return noOfCols; }
+    //writes the weights changed so far to the file. no effect on a network in memory
+    public void flush()
+    {
+        if (mapped)
+            ((MappedByteBuffer) header).force();
+    }
+    /**
+     * Writes the weights to a new file, which takes the place of "file" once complete,
+     * so that a game mapping "file" never reads a half-written one.
+     * The new file is sparse: only the chunks holding weights other than 0 take space on disk,
+     * as most patterns are never met in play. It is written through a channel rather than mapped, & forced
+     * to disk, so that no mapping of it is left open when it is moved, which some platforms refuse.
+     */
+    public void exportTo(File file) throws IOException
+    {
+        File tempFile = new File(file.getPath() + ".tmp");
+        tempFile.delete();
+        RandomAccessFile raf = new RandomAccessFile(tempFile, "rw");
+        try
+        {
+            FileChannel channel = raf.getChannel();
+            raf.setLength(HEADER_SIZE + 4L * weights.capacity());
+            ByteBuffer chunk = ByteBuffer.allocate(EXPORT_CHUNK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            writeHeader(chunk, noOfRows, noOfCols);
+            chunk.putLong(NO_OF_UPDATES_OFFSET, getNoOfUpdates());
+            chunk.limit(HEADER_SIZE);
+            write(channel, chunk, 0);
+            for (int first = 0; first < weights.capacity(); first += EXPORT_CHUNK_SIZE / 4)
+            {
+                chunk.clear();
+                boolean anyWeight = false;
+                for (int idx = first; idx < Math.min(first + EXPORT_CHUNK_SIZE / 4, weights.capacity()); idx++)
+                {
+                    float weight = weights.get(idx);
+                    chunk.putFloat(weight);
+                    anyWeight |= weight != 0;
+                }
+                chunk.flip();
+                if (anyWeight)
+                    write(channel, chunk, HEADER_SIZE + 4L * first);
+            }
+            channel.force(true);
+        }
+        finally
+        {
+            raf.close();
+        }
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    //
+    //**  END of public methods  **//
+
+    private static void write(FileChannel channel, ByteBuffer buffer, long position) throws IOException
+    {
+        while (buffer.hasRemaining())
+            channel.write(buffer, position + buffer.position());
+    }
+    private int rowIndex(GridEngine field, int row, int firstCol)
+    {
+        int idx = 0;
+        for (int i = 0; i < rowWindow; i++)
+            idx |= ColumnTable.cellOf(field.getColumn(firstCol + i), row) << (i * ColumnTable.BITS_PER_CELL);
+        return idx;
+    }
+    private void add(int idx, float delta)
+    {
+        weights.put(idx, weights.get(idx) + delta);
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package Tetris2048;
+
+/**
+ * Chooses the placement leading to the best score gained plus value of the field left, as evaluated
+ * by an NTupleNetwork.
+ *
+ * As the next value is shown to the player, the placement of the next tile is looked ahead as well:
+ * a placement is worth its score gained plus the best of the placements of the next tile after it.
+ *
+ * @author ILoveIdunna
+ */
+class NTuplePolicy implements PlacementPolicy
+{
+    static final float LOSS_VALUE = -1e6f; //of a field where a column overflows
+
+    private final NTupleNetwork network;
+    private final GridEngine afterPlacement, afterNextPlacement; //reused at each decision
+
+    NTuplePolicy(NTupleNetwork network, int noOfRows, int noOfCols)
+    {
+        this.network = network;
+        afterPlacement = new GridEngine(noOfRows, noOfCols);
+        afterNextPlacement = new GridEngine(noOfRows, noOfCols);
+    }
+
+    @Override
+    public int choosePlacement(GridEngine field, int value, int nextValue, int mode)
+    {
+        int bestCol = 0;
+        float bestValue = Float.NEGATIVE_INFINITY;
+        for (int col = 0; col < field.getNoOfCols(); col++)
+        {
+            afterPlacement.copyFrom(field);
+            if (afterPlacement.place(col, value) == ColumnTable.INVALID)
+                continue;
+            float placementValue = afterPlacement.getScore() - field.getScore();
+            if (afterPlacement.isLost())
+                placementValue += LOSS_VALUE;
+            else
+                placementValue += bestPlacementValue(afterPlacement, nextValue);
+            if (placementValue > bestValue)
+            {
+                bestValue = placementValue;
+                bestCol = col;
+            }
+        }
+        return bestCol;
+    }
+    /**
+     * The value of a field by one placement, as used by the trainer as well.
+     * @return   the best score gained plus value of the field left, over the placements of "value"
+     */
+    float bestPlacementValue(GridEngine field, int value)
+    {
+        float bestValue = LOSS_VALUE;
+        for (int col = 0; col < field.getNoOfCols(); col++)
+        {
+            afterNextPlacement.copyFrom(field);
+            if (afterNextPlacement.place(col, value) == ColumnTable.INVALID || afterNextPlacement.isLost())
+                continue;
+            bestValue = Math.max(bestValue, afterNextPlacement.getScore() - field.getScore()
+                                            + network.evaluate(afterNextPlacement));
+        }
+        return bestValue;
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package Tetris2048;
+
+import static Tetris2048.GameFieldData.*;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Trains the weights of an NTupleNetwork by self-play, headless, on all cores:
+ * java -cp ... Tetris2048.NTupleTrainer, with the system properties below.
+ *
+ * The games are played by placements on GridEngine, with new values drawn as TileList does for the mode.
+ * Each placement is chosen greedily by score gained plus value of the field left, & the value of the field
+ * left by the previous placement is moved towards that, i.e. TD(0) on afterstates. A lost field is worth 0.
+ *
+ * The threads update the shared weights without locking. An update lost to another thread once in a while
+ * costs less than any lock taken at each placement would, as the weights are far more than the threads.
+ *
+ * The weights are trained in "<weights file>.training", mapped read-write & flushed at each checkpoint,
+ * with the number of games they were trained by, so that a training stopped at any time is resumed from its
+ * last checkpoint by running the trainer again: GAMES_PROPERTY counts the games of the runs before,
+ * so only the games left are played, & a training is taken further by raising it.
+ * Once all games are played, the weights are exported to the weights file, as a sparse file.
+ *
+ * @author ILoveIdunna
+ */
+class NTupleTrainer
+{
+    static final String GAMES_PROPERTY = "tetris2048.train.games";            //games to train by, incl. those before. 1000000 by default
+    static final String THREADS_PROPERTY = "tetris2048.train.threads";        //the number of processors by default
+    static final String MODE_PROPERTY = "tetris2048.train.mode";              //"easy", "hard" or "mixed"(default)
+    static final String ALPHA_PROPERTY = "tetris2048.train.alpha";            //learning rate, shared by the tuples. 0.1 by default
+    static final String SEED_PROPERTY = "tetris2048.train.seed";              //the time by default
+    static final String REPORT_SEC_PROPERTY = "tetris2048.train.report.sec";  //10 by default
+    static final String CHECKPOINT_SEC_PROPERTY = "tetris2048.train.checkpoint.sec"; //60 by default
+    static final String CURVE_PROPERTY = "tetris2048.train.curve";            //path of a CSV file of the learning curve, if set
+    static final String TRAINING_SUFFIX = ".training";
+    private static final int MIXED_MODE = -1;
+
+    private final NTupleNetwork network;
+    private final int mode;
+    private final float alpha;          //per weight
+    private final long noOfGamesToPlay;
+    private final AtomicLong noOfGamesStarted, noOfGamesPlayed, noOfPlacements, scoreSum;
+    private final AtomicLongArray noOfGamesByHighestExponent;
+    private volatile boolean stopping;
+
+    NTupleTrainer(NTupleNetwork network, int mode, float alpha, long noOfGamesToPlay)
+    {
+        this.network = network;
+        this.mode = mode;
+        this.alpha = alpha / network.getNoOfTuples();
+        this.noOfGamesToPlay = noOfGamesToPlay;
+        noOfGamesStarted = new AtomicLong();
+        noOfGamesPlayed = new AtomicLong();
+        noOfPlacements = new AtomicLong();
+        scoreSum = new AtomicLong();
+        noOfGamesByHighestExponent = new AtomicLongArray(ColumnTable.MAX_EXPONENT + 1);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException
+    {
+        File weightsFile = new File(System.getProperty(NTupleNetwork.WEIGHTS_PROPERTY, NTupleNetwork.DEFAULT_WEIGHTS_PATH));
+        File trainingFile = new File(weightsFile.getPath() + TRAINING_SUFFIX);
+        if (!trainingFile.exists() && weightsFile.exists())
+            Files.copy(weightsFile.toPath(), trainingFile.toPath()); //to train further the weights exported before
+        final NTupleNetwork network = NTupleNetwork.map(trainingFile, NO_ROW, NO_COL, true);
+
+        String modeName = System.getProperty(MODE_PROPERTY, "mixed");
+        int mode = "easy".equalsIgnoreCase(modeName) ? TileList.EASY_MODE
+                 : "hard".equalsIgnoreCase(modeName) ? TileList.HARD_MODE : MIXED_MODE;
+        float alpha = Float.parseFloat(System.getProperty(ALPHA_PROPERTY, "0.1"));
+        long noOfGames = Math.max(0, Long.parseLong(System.getProperty(GAMES_PROPERTY, "1000000")) - network.getNoOfUpdates());
+        int noOfThreads = Integer.getInteger(THREADS_PROPERTY, Runtime.getRuntime().availableProcessors());
+        long seed = Long.getLong(SEED_PROPERTY, System.currentTimeMillis());
+        final NTupleTrainer trainer = new NTupleTrainer(network, mode, alpha, noOfGames);
+
+        System.out.println("training " + trainingFile + " (" + network.getNoOfUpdates() + " games so far) by "
+                           + noOfGames + " more games of " + modeName + " mode, on " + noOfThreads + " threads");
+        Thread[] workers = new Thread[noOfThreads];
+        for (int i = 0; i < noOfThreads; i++)
+        {
+            final Random randomer = new Random(seed + i);
+            workers[i] = new Thread("Tetris2048-trainer-" + i) {
+                @Override
+                public void run() { trainer.play(randomer); }
+            };
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+        final long noOfGamesBefore = network.getNoOfUpdates();
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override
+            public void run()   //e.g. on Ctrl-C. a no-op after a normal end
+            {
+                trainer.stopping = true;
+                trainer.checkpoint(noOfGamesBefore);
+            }
+        });
+        trainer.report(workers, noOfGamesBefore);
+        trainer.checkpoint(noOfGamesBefore);
+        network.exportTo(weightsFile);
+        System.out.println("exported " + weightsFile + " (" + network.getNoOfUpdates() + " games)");
+    }
+
+    //**  self-play  **//
+    //
+    //played by each thread till enough games are started
+    private void play(Random randomer)
+    {
+        GridEngine field = new GridEngine(), afterPlacement = new GridEngine(), lastAfterstate = new GridEngine();
+        while (!stopping && noOfGamesStarted.getAndIncrement() < noOfGamesToPlay)
+        {
+            int gameMode = (mode == MIXED_MODE) ? randomer.nextInt(2) : mode;
+            field.reset();
+            int value = TileList.randomValue(randomer, gameMode);
+            boolean hasAfterstate = false;
+            while (!field.isLost() && !stopping)
+            {
+                int col = bestPlacement(field, value, afterPlacement);
+                int scoreBefore = field.getScore();
+                field.place(col, value);
+                float target = field.getScore() - scoreBefore + (field.isLost() ? 0 : network.evaluate(field));
+                if (hasAfterstate)
+                    network.update(lastAfterstate, alpha * (target - network.evaluate(lastAfterstate)));
+                lastAfterstate.copyFrom(field);
+                hasAfterstate = true;
+                value = TileList.randomValue(randomer, gameMode);
+            }
+            if (stopping)
+                return;     //a game cut short is not counted
+            noOfPlacements.addAndGet(field.getNoOfPlacements());
+            scoreSum.addAndGet(field.getScore());
+            noOfGamesByHighestExponent.incrementAndGet(Integer.numberOfTrailingZeros(field.getHighestValue()));
+            noOfGamesPlayed.incrementAndGet();
+        }
+    }
+    //a field not lost has a placement at least, in the column which overflows at worst
+    private int bestPlacement(GridEngine field, int value, GridEngine afterPlacement)
+    {
+        int bestCol = 0;
+        float bestValue = Float.NEGATIVE_INFINITY;
+        for (int col = 0; col < field.getNoOfCols(); col++)
+        {
+            afterPlacement.copyFrom(field);
+            if (afterPlacement.place(col, value) == ColumnTable.INVALID)
+                continue;
+            float placementValue = afterPlacement.getScore() - field.getScore()
+                                   + (afterPlacement.isLost() ? NTuplePolicy.LOSS_VALUE : network.evaluate(afterPlacement));
+            if (placementValue > bestValue)
+            {
+                bestValue = placementValue;
+                bestCol = col;
+            }
+        }
+        return bestCol;
+    }
+    //
+    //**  END of self-play  **//
+
+    //**  reporting & checkpoints  **//
+    //
+    //by the main thread till the workers finish, printing one line of the learning curve per report interval
+    private void report(Thread[] workers, long noOfGamesBefore) throws InterruptedException
+    {
+        long reportInterval_ms = 1000L * Integer.getInteger(REPORT_SEC_PROPERTY, 10);
+        long checkpointInterval_ms = 1000L * Integer.getInteger(CHECKPOINT_SEC_PROPERTY, 60);
+        PrintWriter curve = openCurve();
+        System.out.println(curveHeader());
+
+        long startTime_ms = System.currentTimeMillis(), lastReportTime_ms = startTime_ms,
+             lastCheckpointTime_ms = startTime_ms;
+        long lastGames = 0, lastPlacements = 0, lastScoreSum = 0;
+        long[] lastGamesByHighestExponent = new long[noOfGamesByHighestExponent.length()];
+        for (Thread worker : workers)
+        {
+            while (worker.isAlive())
+            {
+                worker.join(Math.max(1, lastReportTime_ms + reportInterval_ms - System.currentTimeMillis()));
+                long time_ms = System.currentTimeMillis();
+                if (time_ms < lastReportTime_ms + reportInterval_ms && worker.isAlive())
+                    continue;
+                //the counts of games in the interval only, so that the curve shows the weights of the time
+                long games = noOfGamesPlayed.get(), placements = noOfPlacements.get(), score = scoreSum.get();
+                long intervalGames = games - lastGames;
+                double interval_sec = (time_ms - lastReportTime_ms) / 1000.0;
+                lastReportTime_ms = time_ms;
+                if (intervalGames > 0)     //none e.g. for the last workers ending right after a report
+                {
+                    StringBuilder line = new StringBuilder();
+                    line.append(noOfGamesBefore + games).append(',')
+                        .append((time_ms - startTime_ms) / 1000).append(',')
+                        .append(String.format("%.1f,%.0f,", intervalGames / interval_sec, (placements - lastPlacements) / interval_sec))
+                        .append(String.format("%.1f,%.1f", (double) (score - lastScoreSum) / Math.max(1, intervalGames),
+                                              (double) (placements - lastPlacements) / Math.max(1, intervalGames)));
+                    //the shares are of the games counted by highest value, which may be ahead of intervalGames
+                    long[] gamesByHighestExponent = new long[lastGamesByHighestExponent.length];
+                    long histogramGames = 0;
+                    for (int exponent = 0; exponent < gamesByHighestExponent.length; exponent++)
+                    {
+                        gamesByHighestExponent[exponent] = noOfGamesByHighestExponent.get(exponent);
+                        histogramGames += gamesByHighestExponent[exponent] - lastGamesByHighestExponent[exponent];
+                    }
+                    for (int value : SelfPlayRunner.REPORTED_VALUES)
+                    {
+                        long reached = 0;
+                        for (int exponent = Integer.numberOfTrailingZeros(value); exponent < gamesByHighestExponent.length; exponent++)
+                            reached += gamesByHighestExponent[exponent] - lastGamesByHighestExponent[exponent];
+                        line.append(String.format(",%.3f", (double) reached / Math.max(1, histogramGames)));
+                    }
+                    System.out.println(line);
+                    if (curve != null)
+                    {
+                        curve.println(line);
+                        curve.flush();
+                    }
+                    lastGames = games;
+                    lastPlacements = placements;
+                    lastScoreSum = score;
+                    lastGamesByHighestExponent = gamesByHighestExponent;
+                }
+                if (time_ms >= lastCheckpointTime_ms + checkpointInterval_ms)
+                {
+                    checkpoint(noOfGamesBefore);
+                    lastCheckpointTime_ms = time_ms;
+                }
+            }
+        }
+        if (curve != null)
+            curve.close();
+    }
+    //"reached<value>" is the share of the games whose highest value is at least <value>
+    private static String curveHeader()
+    {
+        StringBuilder header = new StringBuilder("games,sec,games/s,placements/s,meanScore,meanPlacements");
+        for (int value : SelfPlayRunner.REPORTED_VALUES)
+            header.append(",reached").append(value);
+        return header.toString();
+    }
+    //appended to across runs, as a resumed training goes on with the same curve
+    private PrintWriter openCurve()
+    {
+        String filePath = System.getProperty(CURVE_PROPERTY);
+        if (filePath == null)
+            return null;
+        try
+        {
+            boolean created = !new File(filePath).exists();
+            PrintWriter curve = new PrintWriter(new FileWriter(filePath, true));
+            if (created)
+                curve.println(curveHeader());
+            return curve;
+        }
+        catch (IOException ex)
+        {
+            Logger.getLogger(NTupleTrainer.class.getName()).log(Level.WARNING, "no learning curve written", ex);
+            return null;
+        }
+    }
+    //the games played so far are kept in the file with the weights trained by them
+    private synchronized void checkpoint(long noOfGamesBefore)
+    {
+        network.setNoOfUpdates(noOfGamesBefore + noOfGamesPlayed.get());
+        network.flush();
+    }
+    //
+    //**  END of reporting & checkpoints  **//
+}
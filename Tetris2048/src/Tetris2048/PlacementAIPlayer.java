@@ -0,0 +1,122 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package Tetris2048;
+
+import Tetris2048.TileList.Tile;
+import static Tetris2048.GameFieldData.*;
+import java.awt.event.KeyEvent;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+
+/**
+ * Plays the real game by a PlacementPolicy.
+ *
+ * Once a new tile is created, the settled tiles are read into a GridEngine & the policy chooses a column.
+ * The path to it is then handed to cycle() key by key, as AIPlayer does:
+ * right moves from col0, where new tiles are created, & then a down move.
+ *
+ * @author ILoveIdunna
+ */
+class PlacementAIPlayer implements GameAI
+{
+    private final TileList tileListSource;
+    private final PlacementPolicy policy;
+    private final GridEngine field;
+    private final int[] heights;    //of the columns of "field", while reading it
+    private final LinkedList<Integer> keyCodeInputForGame;
+    private Tile latestTile;
+    private int latestTileSerialNo;
+
+    PlacementAIPlayer(TileList tileListSource, PlacementPolicy policy)
+    {
+        this.tileListSource = tileListSource;
+        this.policy = policy;
+        field = new GridEngine();
+        heights = new int[NO_COL];
+        keyCodeInputForGame = new LinkedList<Integer>();
+    }
+
+    //**  public methods  **//
+    //
+    @Override
+    public int getAINextInput()
+    {
+        try
+        {
+            Tile latestTile = tileListSource.getLatestTile();
+            if (latestTile != this.latestTile || latestTile.getSerialNo() != latestTileSerialNo)
+            {
+                this.latestTile = latestTile;
+                latestTileSerialNo = latestTile.getSerialNo();
+                setPath();
+            }
+            if (!keyCodeInputForGame.isEmpty() && latestTile.readyForNewPplMv())
+                return keyCodeInputForGame.getFirst();
+            return -1;
+        }
+        catch (Exception e)
+        {
+            return -2;
+        }
+    }
+    @Override
+    public void nextInputTaken()
+    {
+        keyCodeInputForGame.removeFirst();
+    }
+    //
+    //**  END of public methods  **//
+
+    //**  private methods  **//
+    //
+    private void setPath()
+    {
+        long startTime_ns = System.nanoTime();
+        keyCodeInputForGame.clear();
+        readField();
+        int col = policy.choosePlacement(field, latestTile.getValue(), tileListSource.getNextValue(), tileListSource.getMode());
+        for (int i = 0; i < col; i++)
+            keyCodeInputForGame.addLast(KeyEvent.VK_RIGHT);
+        keyCodeInputForGame.addLast(KeyEvent.VK_DOWN);
+        recordDecision(System.nanoTime() - startTime_ns);
+    }
+    //some settled tiles may be still falling or absorbing, so each column is read as the tiles will settle in it:
+    //from low to high, leaving out those being absorbed, whose value is already in the tiles absorbing them
+    private void readField()
+    {
+        field.reset();
+        for (int col = 0; col < NO_COL; col++)
+            heights[col] = 0;
+        ArrayList<Tile> tiles = tileListSource.getTileList();
+        Collections.sort(tiles); //lower tiles first
+        for (Tile tile : tiles)
+        {
+            if (tile == latestTile || tile.isBeingAbsorbed())
+                continue;
+            int col = (tile.getCurrPosi().getLeft() - NEW_TILE_LEFT) / GRID_SIZE;
+            if (heights[col] >= NO_ROW)
+                continue;
+            int exponent = Math.min(Integer.numberOfTrailingZeros(tile.getValue()), ColumnTable.MAX_EXPONENT);
+            field.setColumn(col, ColumnTable.withCell(field.getColumn(col), heights[col]++, exponent));
+        }
+    }
+    private void recordDecision(long computeTime_ns)
+    {
+        FlightEvents.AIDecision event = new FlightEvents.AIDecision();
+        if (!event.shouldCommit())
+            return;
+        StringBuilder path = new StringBuilder();
+        for (Integer keyCode : keyCodeInputForGame)
+            path.append(KeyEvent.getKeyText(keyCode)).append(' ');
+        event.value = latestTile.getValue();
+        event.path = path.toString().trim();
+        event.computeTime = computeTime_ns;
+        event.commit();
+    }
+    //
+    //**  END of private methods  **//
+}
@@ -0,0 +1,24 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package Tetris2048;
+
+/**
+ * Chooses the column to drop the new tile into, on a game field played by placements.
+ * Played in the real game by PlacementAIPlayer.
+ *
+ * @author ILoveIdunna
+ */
+interface PlacementPolicy
+{
+    /**
+     * @param field       the settled tiles. not to be changed
+     * @param value       of the tile to be placed
+     * @param nextValue   of the tile to come after it, as shown to the player
+     * @param mode        of the game, which tells the chances of the values after the next one
+     * @return            the column, counted from the leftmost, from 0
+     */
+    int choosePlacement(GridEngine field, int value, int nextValue, int mode);
+}
@@ -0,0 +1,90 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package Tetris2048;
+
+/**
+ * The render thread.
+ * It draws the latest snapshot published in a SnapshotRing at its own frame rate,
+ * so that a slow frame being drawn never delays the game loop, & vice versa.
+ *
+ * @author ILoveIdunna
+ */
+class RenderLoop extends Thread
+{
+    private final SnapshotRing snapshotRing;
+    private final SnapshotRenderer renderer;
+    private final GameLoop loop;
+    private final InputLatencyTracker latencyTracker; //may be null
+    private final Histogram renderTime; //time taken by renderer.render(..) in ns. may be null
+    private final long frameBudget_ns;
+    private long lastRenderedTickNo;
+
+    RenderLoop(SnapshotRing snapshotRing, SnapshotRenderer renderer, int fps,
+                InputLatencyTracker latencyTracker, Histogram renderTime, Histogram jitter)
+    {
+        super("Tetris2048-render");
+        setDaemon(true);
+        this.snapshotRing = snapshotRing;
+        this.renderer = renderer;
+        this.latencyTracker = latencyTracker;
+        this.renderTime = renderTime;
+        loop = new GameLoop(fps, new Runnable() {
+            @Override
+            public void run() { renderLatest(); }
+        }, jitter);
+        frameBudget_ns = 1000000000L / fps;
+    }
+
+    @Override
+    public void run()
+    {
+        loop.run();
+    }
+
+    private void renderLatest()
+    {
+        BoardSnapshot snapshot = snapshotRing.getLatest();
+        if (snapshot == null)
+            return;
+        //a paused game changes nothing worth redrawing.
+        //sleep until the game loop publishes again. see wakeUp()
+        if (snapshot.isPaused() && snapshot.getTickNo() == lastRenderedTickNo)
+        {
+            loop.setIdle(true);
+            return;
+        }
+        loop.setIdle(false);
+        lastRenderedTickNo = snapshot.getTickNo();
+        long renderStartTime_ns = System.nanoTime();
+        renderer.render(snapshot);
+        long renderEndTime_ns = System.nanoTime();
+        if (renderTime != null)
+            renderTime.record(renderEndTime_ns - renderStartTime_ns);
+        if (renderEndTime_ns - renderStartTime_ns > frameBudget_ns)
+            recordOverrun(renderEndTime_ns - renderStartTime_ns, snapshot.getNoOfTiles());
+        if (latencyTracker != null)
+            latencyTracker.framePresented(snapshot, renderEndTime_ns);
+    }
+
+    private void recordOverrun(long frameTime_ns, int noOfTiles)
+    {
+        FlightEvents.FrameOverrun event = new FlightEvents.FrameOverrun();
+        if (event.shouldCommit())
+        {
+            event.loop = getName();
+            event.frameTime = frameTime_ns;
+            event.budget = frameBudget_ns;
+            event.noOfTiles = noOfTiles;
+            event.commit();
+        }
+    }
+
+    /**
+     * Called by the game loop after publishing a snapshot. no effect unless idle.
+     */
+    public void wakeUp() { loop.wakeUp(); }
+    public void stopRendering() { loop.stop(); }
+}
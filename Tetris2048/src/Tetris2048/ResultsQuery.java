@@ -0,0 +1,180 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package Tetris2048;
+
+import static Tetris2048.ResultsWriter.*;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Aggregates a results file by strategy & mode: java -cp ... Tetris2048.ResultsQuery <results file>,
+ * with the system properties below to filter the rows.
+ *
+ * A scan decodes the columns of strategy, mode, score, highest value & duration only, never the seeds,
+ * & skips the blocks holding none of the strategy filtered on, by their strategies alone.
+ * The rows are summed into arrays by (strategy, mode) idx, with nothing made per row.
+ *
+ * @author ILoveIdunna
+ */
+class ResultsQuery
+{
+    static final String STRATEGY_PROPERTY = "tetris2048.results.strategy";  //the rows of this strategy only, if set
+    static final String MODE_PROPERTY = "tetris2048.results.mode";          //"easy", "hard" or "hyper" only, if set
+
+    /**
+     * The sums over the rows of a strategy & a mode.
+     */
+    static class Aggregate
+    {
+        final String strategy;
+        final int mode;
+        long noOfGames, scoreSum, durationSum;
+        int maxScore;
+        final long[] noOfGamesByHighestExponent = new long[ColumnTable.MAX_EXPONENT + 1];
+
+        Aggregate(String strategy, int mode)
+        {
+            this.strategy = strategy;
+            this.mode = mode;
+        }
+
+        double getMeanScore() { return (double) scoreSum / Math.max(1, noOfGames); }
+        double getMeanDuration() { return (double) durationSum / Math.max(1, noOfGames); }
+        //the share of the games whose highest value is at least "value"
+        double getReachedShare(int value)
+        {
+            long reached = 0;
+            for (int exponent = Integer.numberOfTrailingZeros(value); exponent < noOfGamesByHighestExponent.length; exponent++)
+                reached += noOfGamesByHighestExponent[exponent];
+            return (double) reached / Math.max(1, noOfGames);
+        }
+    }
+
+    private final String strategyFilter;    //null for all
+    private final int modeFilter;           //-1 for all
+    private long noOfRowsScanned;
+
+    ResultsQuery(String strategyFilter, int modeFilter)
+    {
+        this.strategyFilter = strategyFilter;
+        this.modeFilter = modeFilter;
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length != 1)
+        {
+            System.err.println("usage: ResultsQuery <results file>");
+            System.exit(2);
+        }
+        String modeName = System.getProperty(MODE_PROPERTY);
+        int modeFilter = -1;
+        for (int mode = 0; mode < TileList.NO_OF_MODES; mode++)
+            if (TileList.MODE_NAMES[mode].equalsIgnoreCase(modeName))
+                modeFilter = mode;
+        if (modeName != null && modeFilter < 0)
+        {
+            System.err.println("unknown mode \"" + modeName + "\" of " + MODE_PROPERTY + ": easy, hard or hyper");
+            System.exit(2);
+        }
+        ResultsQuery query = new ResultsQuery(System.getProperty(STRATEGY_PROPERTY), modeFilter);
+
+        long startTime_ns = System.nanoTime();
+        List<Aggregate> aggregates = query.aggregateByStrategyAndMode(new File(args[0]));
+        double time_s = (System.nanoTime() - startTime_ns) / 1e9;
+        StringBuilder header = new StringBuilder(String.format("%-12s %-6s %12s %10s %8s %10s",
+                "strategy", "mode", "games", "mean score", "max", "mean dur."));
+        for (int value : SelfPlayRunner.REPORTED_VALUES)
+            header.append(String.format(" %7d", value));
+        System.out.println(header);
+        for (Aggregate aggregate : aggregates)
+        {
+            StringBuilder line = new StringBuilder(String.format("%-12s %-6s %12d %10.1f %8d %10.1f",
+                    aggregate.strategy, TileList.MODE_NAMES[aggregate.mode], aggregate.noOfGames,
+                    aggregate.getMeanScore(), aggregate.maxScore, aggregate.getMeanDuration()));
+            for (int value : SelfPlayRunner.REPORTED_VALUES)
+                line.append(String.format(" %7.4f", aggregate.getReachedShare(value)));
+            System.out.println(line);
+        }
+        System.out.println(String.format("%d rows scanned in %.2fs: %.0f rows/s",
+                query.noOfRowsScanned, time_s, query.noOfRowsScanned / time_s));
+    }
+
+    /**
+     * @return   the aggregates of the rows filtered, by strategy, then mode
+     */
+    List<Aggregate> aggregateByStrategyAndMode(File resultsFile) throws IOException
+    {
+        Map<String, Aggregate[]> aggregatesByStrategy = new TreeMap<String, Aggregate[]>();
+        ResultsReader reader = new ResultsReader(resultsFile);
+        try
+        {
+            Aggregate[][] aggregatesByIdx = new Aggregate[0][];
+            while (reader.nextBlock())
+            {
+                //the aggregates of the strategies of the block, by their idx in it
+                String[] strategies = reader.getStrategies();
+                if (aggregatesByIdx.length < strategies.length)
+                    aggregatesByIdx = new Aggregate[strategies.length][];
+                boolean holdsStrategy = false;
+                for (int idx = 0; idx < strategies.length; idx++)
+                {
+                    aggregatesByIdx[idx] = null;
+                    if (strategyFilter != null && !strategyFilter.equals(strategies[idx]))
+                        continue;
+                    Aggregate[] aggregates = aggregatesByStrategy.get(strategies[idx]);
+                    if (aggregates == null)
+                    {
+                        aggregates = new Aggregate[TileList.NO_OF_MODES];
+                        aggregatesByStrategy.put(strategies[idx], aggregates);
+                    }
+                    aggregatesByIdx[idx] = aggregates;
+                    holdsStrategy = true;
+                }
+                if (holdsStrategy)
+                    aggregate(reader, aggregatesByIdx, strategies);
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+
+        List<Aggregate> aggregates = new ArrayList<Aggregate>();
+        for (Aggregate[] aggregatesByMode : aggregatesByStrategy.values())
+            for (Aggregate aggregate : aggregatesByMode)
+                if (aggregate != null)
+                    aggregates.add(aggregate);
+        return aggregates;
+    }
+    private void aggregate(ResultsReader reader, Aggregate[][] aggregatesByIdx, String[] strategies)
+    {
+        int noOfRows = reader.getNoOfRows();
+        long[] strategyIdxs = reader.column(STRATEGY), modes = reader.column(MODE), scores = reader.column(SCORE);
+        long[] highestExponents = reader.column(HIGHEST_EXPONENT), durations = reader.column(DURATION);
+        for (int row = 0; row < noOfRows; row++)
+        {
+            int strategyIdx = (int) strategyIdxs[row], mode = (int) modes[row];
+            Aggregate[] aggregates = aggregatesByIdx[strategyIdx];
+            if (aggregates == null || (modeFilter >= 0 && mode != modeFilter))
+                continue;
+            Aggregate aggregate = aggregates[mode];
+            if (aggregate == null)
+                aggregate = aggregates[mode] = new Aggregate(strategies[strategyIdx], mode);
+            int score = (int) scores[row];
+            aggregate.noOfGames++;
+            aggregate.scoreSum += score;
+            aggregate.maxScore = Math.max(aggregate.maxScore, score);
+            aggregate.durationSum += durations[row];
+            aggregate.noOfGamesByHighestExponent[(int) highestExponents[row]]++;
+        }
+        noOfRowsScanned += noOfRows;
+    }
+}
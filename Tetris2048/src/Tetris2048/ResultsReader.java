@@ -0,0 +1,193 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package Tetris2048;
+
+import static Tetris2048.ResultsWriter.*;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reads a file of ResultsWriter, memory-mapped, block by block.
+ *
+ * The file is mapped in windows of up to WINDOW_SIZE, as a mapping holds 2GB at most, each window starting
+ * at a block, so that no block is split. The columns of a block are decoded only when asked for, into arrays
+ * reused from block to block, so a scan reads the bytes of the columns it needs & nothing is made per row.
+ * A block cut short, as of a run killed while writing it, ends the file.
+ *
+ * @author ILoveIdunna
+ */
+class ResultsReader
+{
+    static final long WINDOW_SIZE = 1L << 30;
+
+    private final File file;
+    private final FileChannel channel;
+    private final long length;
+    private MappedByteBuffer window;
+    private long windowStart, windowEnd;
+    private long nextBlock;                 //file position of the next block
+    //**the block read
+    private int noOfRows;
+    private String[] strategies;
+    private final int[] encodingByCol, offsetByCol;     //offset within the window
+    private final long[][] valuesByCol;
+    private final boolean[] isDecoded;
+
+    ResultsReader(File file) throws IOException
+    {
+        this.file = file;
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        channel = raf.getChannel();
+        length = channel.size();
+        encodingByCol = new int[NO_OF_COLUMNS];
+        offsetByCol = new int[NO_OF_COLUMNS];
+        valuesByCol = new long[NO_OF_COLUMNS][BLOCK_SIZE];
+        isDecoded = new boolean[NO_OF_COLUMNS];
+    }
+
+    //**  public methods  **//
+    //
+    /**
+     * Moves to the next block.
+     * @return   false at the end of the file
+     */
+    public boolean nextBlock() throws IOException
+    {
+        if (length - nextBlock < 12)
+            return false;
+        if (window == null || nextBlock + 12 > windowEnd)
+            mapWindow(nextBlock, 12);
+        int offset = (int) (nextBlock - windowStart);
+        if (window.getInt(offset) != BLOCK_MAGIC)
+            throw new IOException(file + " holds no block at " + nextBlock);
+        int byteLength = window.getInt(offset + 8);
+        if (nextBlock + 12 + byteLength > length)
+        {
+            Logger.getLogger(ResultsReader.class.getName()).log(Level.WARNING,
+                    "{0} ends with a block cut short, at {1}", new Object[] {file, nextBlock});
+            nextBlock = length;
+            return false;
+        }
+        if (nextBlock + 12 + byteLength > windowEnd)
+            mapWindow(nextBlock, 12 + byteLength);
+        offset = (int) (nextBlock - windowStart);
+        noOfRows = window.getInt(offset + 4);
+        offset += 12;
+        //the strategies, by the format of DataOutputStream.writeUTF(..)
+        ByteBuffer strategyBytes = window.duplicate();
+        strategyBytes.position(offset);
+        DataInputStream strategyIn = new DataInputStream(new ByteBufferInputStream(strategyBytes));
+        strategies = new String[strategyIn.readUnsignedShort()];
+        for (int i = 0; i < strategies.length; i++)
+            strategies[i] = strategyIn.readUTF();
+        offset = strategyBytes.position();
+        for (int col = 0; col < NO_OF_COLUMNS; col++)
+        {
+            encodingByCol[col] = window.get(offset);
+            offsetByCol[col] = offset + 5;
+            offset += 5 + window.getInt(offset + 1);
+            isDecoded[col] = false;
+        }
+        nextBlock += 12 + byteLength;
+        return true;
+    }
+    public int getNoOfRows() { return noOfRows; }
+    public String[] getStrategies() { return strategies; }
+    /**
+     * The values of a column of the block read, decoded at the 1st call.
+     * @return   the values of the rows in [0, getNoOfRows()), to be read only, & reused by the next block
+     */
+    public long[] column(int col)
+    {
+        if (!isDecoded[col])
+        {
+            decode(encodingByCol[col], offsetByCol[col], WIDTHS[col], valuesByCol[col]);
+            isDecoded[col] = true;
+        }
+        return valuesByCol[col];
+    }
+    //the encoding of a column of the block read, e.g. to aggregate RUN_LENGTH runs without decoding them
+    public int encodingOf(int col) { return encodingByCol[col]; }
+    public void close() throws IOException
+    {
+        window = null;
+        channel.close();
+    }
+    //
+    //**  END of public methods  **//
+
+    private void mapWindow(long start, long minLength) throws IOException
+    {
+        long windowLength = Math.min(length - start, Math.max(WINDOW_SIZE, minLength));
+        if (windowLength > Integer.MAX_VALUE)
+            throw new IOException("a block of " + minLength + " bytes does not fit in a mapping");
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, windowLength);
+        windowStart = start;
+        windowEnd = start + windowLength;
+    }
+    private void decode(int encoding, int offset, int width, long[] values)
+    {
+        switch (encoding)
+        {
+            case PLAIN:
+                for (int i = 0; i < noOfRows; i++, offset += width)
+                    values[i] = getValue(offset, width);
+                break;
+            case RUN_LENGTH:
+            {
+                int noOfRuns = window.getInt(offset);
+                offset += 4;
+                for (int run = 0, i = 0; run < noOfRuns; run++, offset += width + 4)
+                {
+                    long value = getValue(offset, width);
+                    for (int end = i + window.getInt(offset + width); i < end; i++)
+                        values[i] = value;
+                }
+                break;
+            }
+            case DELTA:
+            {
+                long value = window.getLong(offset);
+                int noOfRuns = window.getInt(offset + 8);
+                offset += 12;
+                values[0] = value;
+                for (int run = 0, i = 1; run < noOfRuns; run++, offset += 12)
+                {
+                    long delta = window.getLong(offset);
+                    for (int end = i + window.getInt(offset + 8); i < end; i++)
+                        values[i] = value += delta;
+                }
+                break;
+            }
+            default:
+                throw new IllegalStateException("unknown encoding " + encoding + " in " + file);
+        }
+    }
+    private long getValue(int offset, int width)
+    {
+        return (width == 8) ? window.getLong(offset) : (width == 4) ? window.getInt(offset) : window.get(offset);
+    }
+
+    /**
+     * Reads a ByteBuffer from its position on, moving it.
+     */
+    private static class ByteBufferInputStream extends java.io.InputStream
+    {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) { this.buffer = buffer; }
+
+        @Override
+        public int read() { return buffer.hasRemaining() ? buffer.get() & 0xFF : -1; }
+    }
+}
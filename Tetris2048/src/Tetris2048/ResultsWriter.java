@@ -0,0 +1,243 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package Tetris2048;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Writes the results of games, one row per game, to a columnar file, read by ResultsReader.
+ *
+ * Rows are kept in columns of primitives & written in blocks of BLOCK_SIZE rows. Within a block, each column
+ * is written by whichever is the shortest of:
+ *   PLAIN        the values
+ *   RUN_LENGTH   runs of (value, length), e.g. the strategy & the mode of a batch are one run
+ *   DELTA        the 1st value & the runs of the differences, e.g. the seeds of a batch are 1 run of +1
+ * so that a query reads the columns it needs only, skipping the others by their length.
+ *
+ * Layout of a block, big-endian:
+ *   int BLOCK_MAGIC, int noOfRows, int byteLength of the rest of the block
+ *   short noOfStrategies, the names of the strategies as modified UTF-8: the strategy column holds their idx
+ *   for each column: byte encoding, int byteLength, the encoded values
+ * The file is appended to, block by block, so that a run stopped midway keeps the blocks written:
+ * a block cut short by such a stop is cut off before appending, so that the blocks after it can be read.
+ *
+ * @author ILoveIdunna
+ */
+class ResultsWriter
+{
+    static final String FILE_PROPERTY = "tetris2048.results.file";   //results are written if set, e.g. by SelfPlayRunner
+    static final int BLOCK_SIZE = 65536;
+    static final int BLOCK_MAGIC = 0x53523254;  //"T2RS" when read as little-endian ASCII
+    //**columns
+    static final int SEED = 0, STRATEGY = 1, MODE = 2, SCORE = 3, HIGHEST_EXPONENT = 4, DURATION = 5;
+    static final String[] COLUMN_NAMES = {"seed", "strategy", "mode", "score", "highestExponent", "duration"};
+    static final int NO_OF_COLUMNS = COLUMN_NAMES.length;
+    static final int[] WIDTHS = {8, 1, 1, 4, 1, 4};    //bytes per value
+    //**encodings
+    static final byte PLAIN = 0, RUN_LENGTH = 1, DELTA = 2;
+
+    private final DataOutputStream out;
+    private final long[][] columns;
+    private final List<String> strategies;  //of the block
+    private int noOfRows;
+    private long noOfRowsWritten;
+
+    ResultsWriter(File file) throws IOException
+    {
+        cutToWholeBlocks(file);
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true), 1 << 16));
+        columns = new long[NO_OF_COLUMNS][BLOCK_SIZE];
+        strategies = new ArrayList<String>();
+    }
+
+    //**  public methods  **//
+    //
+    /**
+     * @param duration   the length of the game, in placements when played by placements
+     */
+    public synchronized void add(long seed, String strategy, int mode, int score, int highestValue, int duration)
+            throws IOException
+    {
+        int strategyIdx = strategies.indexOf(strategy);
+        if (strategyIdx < 0)
+        {
+            strategyIdx = strategies.size();
+            strategies.add(strategy);
+        }
+        columns[SEED][noOfRows] = seed;
+        columns[STRATEGY][noOfRows] = strategyIdx;
+        columns[MODE][noOfRows] = mode;
+        columns[SCORE][noOfRows] = score;
+        columns[HIGHEST_EXPONENT][noOfRows] = Integer.numberOfTrailingZeros(highestValue);
+        columns[DURATION][noOfRows] = duration;
+        if (++noOfRows == BLOCK_SIZE)
+            writeBlock();
+    }
+    //writes the rows added so far, as a block shorter than BLOCK_SIZE if need be
+    public synchronized void flush() throws IOException
+    {
+        if (noOfRows > 0)
+            writeBlock();
+        out.flush();
+    }
+    public synchronized void close() throws IOException
+    {
+        flush();
+        out.close();
+    }
+    public synchronized long getNoOfRowsWritten() { return noOfRowsWritten; }
+    //
+    //**  END of public methods  **//
+
+    //cuts the file after its last whole block, as of a run stopped while writing the next one
+    static void cutToWholeBlocks(File file) throws IOException
+    {
+        if (!file.exists())
+            return;
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try
+        {
+            long length = raf.length(), end = 0;
+            while (length - end >= 12)
+            {
+                raf.seek(end);
+                if (raf.readInt() != BLOCK_MAGIC)
+                    throw new IOException(file + " holds no block at " + end);  //not a block cut short: kept as it is
+                raf.readInt();
+                long byteLength = raf.readInt() & 0xFFFFFFFFL;
+                if (end + 12 + byteLength > length)
+                    break;
+                end += 12 + byteLength;
+            }
+            if (end < length)
+            {
+                Logger.getLogger(ResultsWriter.class.getName()).log(Level.WARNING,
+                        "{0} ends with a block cut short: {1,number,#} bytes cut off at {2,number,#}",
+                        new Object[] {file, length - end, end});
+                raf.setLength(end);
+            }
+        }
+        finally
+        {
+            raf.close();
+        }
+    }
+
+    private void writeBlock() throws IOException
+    {
+        ByteArrayOutputStream strategyBytes = new ByteArrayOutputStream();
+        DataOutputStream strategyOut = new DataOutputStream(strategyBytes);
+        strategyOut.writeShort(strategies.size());
+        for (String strategy : strategies)
+            strategyOut.writeUTF(strategy);
+        int byteLength = strategyBytes.size();
+        ByteBuffer[] encodedColumns = new ByteBuffer[NO_OF_COLUMNS];
+        for (int col = 0; col < NO_OF_COLUMNS; col++)
+        {
+            encodedColumns[col] = encode(columns[col], noOfRows, WIDTHS[col]);
+            byteLength += 4 + encodedColumns[col].remaining();  //the length, the encoding byte & the values
+        }
+
+        out.writeInt(BLOCK_MAGIC);
+        out.writeInt(noOfRows);
+        out.writeInt(byteLength);
+        strategyBytes.writeTo(out);
+        for (int col = 0; col < NO_OF_COLUMNS; col++)
+        {
+            out.writeByte(encodedColumns[col].get());
+            out.writeInt(encodedColumns[col].remaining());
+            out.write(encodedColumns[col].array(), encodedColumns[col].position(), encodedColumns[col].remaining());
+        }
+        noOfRowsWritten += noOfRows;
+        noOfRows = 0;
+        strategies.clear();
+    }
+
+    //**  encoding of a column  **//
+    //
+    //@return   the encoding byte, then the encoded values, from the position
+    static ByteBuffer encode(long[] values, int noOfValues, int width)
+    {
+        int noOfRuns = noOfRuns(values, 0, noOfValues), noOfDeltaRuns = noOfDeltaRuns(values, noOfValues);
+        int plainLength = noOfValues * width;
+        int runLength = 4 + noOfRuns * (width + 4);
+        int deltaLength = (noOfValues == 0) ? Integer.MAX_VALUE : 8 + 4 + noOfDeltaRuns * (8 + 4);
+        ByteBuffer buffer;
+        if (plainLength <= runLength && plainLength <= deltaLength)
+        {
+            buffer = ByteBuffer.allocate(1 + plainLength);
+            buffer.put(PLAIN);
+            for (int i = 0; i < noOfValues; i++)
+                putValue(buffer, values[i], width);
+        }
+        else if (runLength <= deltaLength)
+        {
+            buffer = ByteBuffer.allocate(1 + runLength);
+            buffer.put(RUN_LENGTH).putInt(noOfRuns);
+            for (int i = 0; i < noOfValues; )
+            {
+                int start = i;
+                while (i < noOfValues && values[i] == values[start])
+                    i++;
+                putValue(buffer, values[start], width);
+                buffer.putInt(i - start);
+            }
+        }
+        else
+        {
+            buffer = ByteBuffer.allocate(1 + deltaLength);
+            buffer.put(DELTA).putLong(values[0]).putInt(noOfDeltaRuns);
+            for (int i = 1; i < noOfValues; )
+            {
+                int start = i;
+                long delta = values[i] - values[i - 1];
+                while (i < noOfValues && values[i] - values[i - 1] == delta)
+                    i++;
+                buffer.putLong(delta).putInt(i - start);
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+    private static int noOfRuns(long[] values, int from, int to)
+    {
+        int noOfRuns = 0;
+        for (int i = from; i < to; i++)
+            if (i == from || values[i] != values[i - 1])
+                noOfRuns++;
+        return noOfRuns;
+    }
+    private static int noOfDeltaRuns(long[] values, int noOfValues)
+    {
+        int noOfRuns = 0;
+        for (int i = 1; i < noOfValues; i++)
+            if (i == 1 || values[i] - values[i - 1] != values[i - 1] - values[i - 2])
+                noOfRuns++;
+        return noOfRuns;
+    }
+    private static void putValue(ByteBuffer buffer, long value, int width)
+    {
+        if (width == 8)
+            buffer.putLong(value);
+        else if (width == 4)
+            buffer.putInt((int) value);
+        else
+            buffer.put((byte) value);
+    }
+    //
+    //**  END of encoding of a column  **//
+}
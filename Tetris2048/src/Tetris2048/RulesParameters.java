@@ -0,0 +1,214 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package Tetris2048;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The parameters of the rules AIPlayer plays by, see chooseCol(..):
+ *   colVisitOrder    the columns tried for the new tile, in order
+ *   uppermostSlack   a column of 2 tiles or more takes the new tile if its uppermost one is at least
+ *                    2^uppermostSlack times the new value. 0 for "the uppermost one >= the new one"
+ *   fallbackCol      the column taken when no column visited takes it, the "unused column"
+ * A tile AIPlayer sends to merge with the lowest tile of a column falls down LANE_COL, then moves sideways,
+ * so LANE_COL is neither visited nor the fallback column, & is left out of the parameters which fit.
+ * The defaults are the rules AIPlayer was written with. A set tuned by RulesTuner is saved as a properties file,
+ * TUNED_CONFIG_PATH unless CONFIG_PROPERTY is set, & played only once CONFIG_PROPERTY names it, so that
+ * a game is never played by rules tuned before without asking for them.
+ *
+ * @author ILoveIdunna
+ */
+final class RulesParameters
+{
+    static final String CONFIG_PROPERTY = "tetris2048.ai.rules.config";   //the rules played, the defaults if not set
+    static final String TUNED_CONFIG_PATH = "rules.tuned";                //saved to by RulesTuner if CONFIG_PROPERTY is not set
+    static final int BOTTOM = 1 << 8;       //set by chooseCol(..) on a column chosen to merge with its lowest tile
+    static final int LANE_COL = 1;          //kept empty on 3 columns or more: AIPlayer sends a BOTTOM tile down it
+    static final int COL_MASK = BOTTOM - 1;
+    static final int MIN_SLACK = -3, MAX_SLACK = 4;
+    private static final int NONE = -1;
+
+    private final int[] colVisitOrder;
+    private final int uppermostSlack;
+    private final int fallbackCol;
+
+    RulesParameters(int[] colVisitOrder, int uppermostSlack, int fallbackCol)
+    {
+        this.colVisitOrder = colVisitOrder.clone();
+        this.uppermostSlack = uppermostSlack;
+        this.fallbackCol = fallbackCol;
+    }
+
+    //col1 is left out, as it used to be, & the last column is the "unused column"
+    static RulesParameters defaults(int noOfCols)
+    {
+        if (noOfCols < 3)
+        {
+            int[] order = new int[noOfCols];
+            for (int i = 0; i < noOfCols; i++)
+                order[i] = i;
+            return new RulesParameters(order, 0, noOfCols - 1);
+        }
+        int[] order = new int[noOfCols - 1];    //{0,2,3} on the default 4 columns
+        for (int i = 1; i < order.length; i++)
+            order[i] = i + 1;
+        return new RulesParameters(order, 0, noOfCols - 1);
+    }
+    //from the file of CONFIG_PROPERTY, or the defaults if not set or if it cannot be loaded
+    static RulesParameters fromSystemProperties(int noOfCols)
+    {
+        Logger logger = Logger.getLogger(RulesParameters.class.getName());
+        String configPath = System.getProperty(CONFIG_PROPERTY);
+        if (configPath == null)
+        {
+            logger.log(Level.INFO, "the default rules are played: {0}", defaults(noOfCols));
+            return defaults(noOfCols);
+        }
+        try
+        {
+            RulesParameters parameters = load(new File(configPath), noOfCols);
+            logger.log(Level.INFO, "the rules of {0} are played: {1}", new Object[] {configPath, parameters});
+            return parameters;
+        }
+        catch (IOException | IllegalArgumentException ex)
+        {
+            logger.log(Level.WARNING, "the default rules are played", ex);
+            return defaults(noOfCols);
+        }
+    }
+    static RulesParameters load(File configFile, int noOfCols) throws IOException
+    {
+        Properties properties = new Properties();
+        InputStream in = new FileInputStream(configFile);
+        try
+        {
+            properties.load(in);
+        }
+        finally
+        {
+            in.close();
+        }
+        String[] cols = properties.getProperty("colVisitOrder", "").trim().split("\\s*,\\s*");
+        int[] colVisitOrder = new int[cols[0].isEmpty() ? 0 : cols.length];
+        for (int i = 0; i < colVisitOrder.length; i++)
+            colVisitOrder[i] = Integer.parseInt(cols[i]);
+        RulesParameters parameters = new RulesParameters(colVisitOrder,
+                Integer.parseInt(properties.getProperty("uppermostSlack", "0").trim()),
+                Integer.parseInt(properties.getProperty("fallbackCol", Integer.toString(noOfCols - 1)).trim()));
+        if (!parameters.fits(noOfCols))
+            throw new IllegalArgumentException(configFile + " holds rules which do not fit " + noOfCols
+                                               + " columns, or take the lane column: " + parameters);
+        return parameters;
+    }
+
+    //**  public methods  **//
+    //
+    public void save(File configFile, String comment) throws IOException
+    {
+        Properties properties = new Properties();
+        StringBuilder cols = new StringBuilder();
+        for (int col : colVisitOrder)
+            cols.append((cols.length() == 0) ? "" : ",").append(col);
+        properties.setProperty("colVisitOrder", cols.toString());
+        properties.setProperty("uppermostSlack", Integer.toString(uppermostSlack));
+        properties.setProperty("fallbackCol", Integer.toString(fallbackCol));
+        OutputStream out = new FileOutputStream(configFile);
+        try
+        {
+            properties.store(out, comment);
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+    /**
+     * The column for the new tile: the 1st column visited which takes it, or else the fallback column.
+     * A column takes it if it is empty, if its lowest tile is of the new value (then BOTTOM is set),
+     * if it holds 1 tile, or if its uppermost tile is high enough by uppermostSlack,
+     * unless the column is full & its uppermost tile would not merge.
+     * @param valuesByCol   the values of the settled tiles of each column, from the lowest
+     * @param lengthByCol   the number of settled tiles of each column
+     * @param noOfRows      including the row where new tiles are created
+     * @return              the column, with BOTTOM set if chosen to merge with its lowest tile
+     */
+    public int chooseCol(int[][] valuesByCol, int[] lengthByCol, int noOfRows, int value)
+    {
+        for (int col : colVisitOrder)
+        {
+            int choice = visitCol(valuesByCol[col], lengthByCol[col], noOfRows, value);
+            if (choice != NONE)
+                return col | choice;
+        }
+        return fallbackCol;
+    }
+    public int[] getColVisitOrder() { return colVisitOrder.clone(); }
+    public int getUppermostSlack() { return uppermostSlack; }
+    public int getFallbackCol() { return fallbackCol; }
+    public boolean fits(int noOfCols)
+    {
+        boolean[] visited = new boolean[noOfCols];
+        for (int col : colVisitOrder)
+        {
+            if (col < 0 || col >= noOfCols || visited[col] || isLaneCol(col, noOfCols))
+                return false;
+            visited[col] = true;
+        }
+        return fallbackCol >= 0 && fallbackCol < noOfCols && !isLaneCol(fallbackCol, noOfCols)
+               && uppermostSlack >= MIN_SLACK && uppermostSlack <= MAX_SLACK;
+    }
+    public static boolean isLaneCol(int col, int noOfCols) { return col == LANE_COL && noOfCols >= 3; }
+    @Override
+    public boolean equals(Object another)
+    {
+        if (!(another instanceof RulesParameters))
+            return false;
+        RulesParameters parameters = (RulesParameters) another;
+        return Arrays.equals(colVisitOrder, parameters.colVisitOrder) && uppermostSlack == parameters.uppermostSlack
+               && fallbackCol == parameters.fallbackCol;
+    }
+    @Override
+    public int hashCode()
+    {
+        return (Arrays.hashCode(colVisitOrder) * 31 + uppermostSlack) * 31 + fallbackCol;
+    }
+    @Override
+    public String toString()
+    {
+        return "colVisitOrder=" + Arrays.toString(colVisitOrder) + " uppermostSlack=" + uppermostSlack
+               + " fallbackCol=" + fallbackCol;
+    }
+    //
+    //**  END of public methods  **//
+
+    //@return   0 or BOTTOM if the column takes the new tile, else NONE
+    private int visitCol(int[] values, int length, int noOfRows, int value)
+    {
+        if (length == 0)                //when it is an empty column
+            return 0;
+        if (values[0] == value)         //when the lowest one has a value equal to the new one's
+            return BOTTOM;
+        if (length == 1)
+            return 0;
+        int uppermost = values[length - 1];
+        if (Integer.numberOfTrailingZeros(uppermost) - Integer.numberOfTrailingZeros(value) >= uppermostSlack)
+        {
+            if (length == noOfRows - 1 && uppermost != value)   //when reaching upper boundary
+                return NONE;
+            return 0;
+        }
+        return NONE;
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package Tetris2048;
+
+/**
+ * Chooses the column by the rules of AIPlayer, on a game field played by placements, for batch runs & tuning.
+ *
+ * A tile AIPlayer sends to merge with the lowest tile of a column falls down RulesParameters.LANE_COL &
+ * absorbs it sideways at the lower boundary, which GridEngine does not model: here it is dropped into the column.
+ * The rules never take the lane column, so that this move stays open as in the real game.
+ *
+ * @author ILoveIdunna
+ */
+class RulesPolicy implements PlacementPolicy
+{
+    private final RulesParameters parameters;
+    private final int[][] valuesByCol;  //reused at each decision
+    private final int[] lengthByCol;
+
+    RulesPolicy(RulesParameters parameters, int noOfRows, int noOfCols)
+    {
+        this.parameters = parameters;
+        valuesByCol = new int[noOfCols][noOfRows];
+        lengthByCol = new int[noOfCols];
+    }
+
+    @Override
+    public int choosePlacement(GridEngine field, int value, int nextValue, int mode)
+    {
+        for (int col = 0; col < field.getNoOfCols(); col++)
+        {
+            int length = 0;
+            while (length < field.getNoOfRows() && field.getValue(col, length) != 0)
+            {
+                valuesByCol[col][length] = field.getValue(col, length);
+                length++;
+            }
+            lengthByCol[col] = length;
+        }
+        return parameters.chooseCol(valuesByCol, lengthByCol, field.getNoOfRows(), value) & RulesParameters.COL_MASK;
+    }
+}
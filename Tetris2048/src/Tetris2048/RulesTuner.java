@@ -0,0 +1,281 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package Tetris2048;
+
+import static Tetris2048.GameFieldData.*;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Tunes the RulesParameters of AIPlayer by a genetic search, headless: java -cp ... Tetris2048.RulesTuner,
+ * with the system properties below. The best parameters are saved to the file of RulesParameters.CONFIG_PROPERTY,
+ * or to RulesParameters.TUNED_CONFIG_PATH, which AIPlayer plays once CONFIG_PROPERTY names it.
+ *
+ * Every candidate is scored by the mean score of the games of the same seeds (common random numbers),
+ * so candidates are told apart by their play rather than by their luck, & a candidate seen before
+ * is not played again. The candidates of a generation are played in parallel, one per thread,
+ * each by a SelfPlayRunner. The best one & the defaults are then played on as many other seeds,
+ * to tell how much of the gain holds beyond the seeds tuned on.
+ *
+ * A generation is made of the ELITES best of the one before, then children of parents drawn by tournaments:
+ * the visit order of one parent up to a cut, followed by the columns of the other, the other parameters
+ * of either, & then mutated by swapping, adding or dropping visited columns, nudging the slack or
+ * moving the fallback column. RulesParameters.LANE_COL is left out of the search, as AIPlayer keeps it empty.
+ *
+ * @author ILoveIdunna
+ */
+class RulesTuner
+{
+    static final String POPULATION_PROPERTY = "tetris2048.tune.population";     //24 by default
+    static final String GENERATIONS_PROPERTY = "tetris2048.tune.generations";   //20 by default
+    static final String GAMES_PROPERTY = "tetris2048.tune.games";               //per candidate. 2000 by default
+    static final String SEED_PROPERTY = "tetris2048.tune.seed";                 //of the 1st game. 0 by default
+    static final String THREADS_PROPERTY = "tetris2048.tune.threads";           //the number of processors by default
+    static final String MODE_PROPERTY = "tetris2048.tune.mode";                 //"easy", "hard" or "mixed"(default)
+    static final int ELITES = 2, TOURNAMENT_SIZE = 3;
+    static final double MUTATION_RATE = 0.3;    //per kind of mutation
+
+    private final long firstSeed;
+    private final int noOfGames, mode, noOfCols;
+    private final ExecutorService pool;
+    private final Random random;
+    private final Map<RulesParameters, Double> scores = new HashMap<RulesParameters, Double>();  //mean score by candidate
+
+    RulesTuner(long firstSeed, int noOfGames, int mode, int noOfCols, int noOfThreads, long searchSeed)
+    {
+        this.firstSeed = firstSeed;
+        this.noOfGames = noOfGames;
+        this.mode = mode;
+        this.noOfCols = noOfCols;
+        pool = Executors.newFixedThreadPool(Math.max(1, noOfThreads));
+        random = new Random(searchSeed);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException
+    {
+        int populationSize = Math.max(ELITES + 1, Integer.getInteger(POPULATION_PROPERTY, 24));
+        int noOfGenerations = Integer.getInteger(GENERATIONS_PROPERTY, 20);
+        int noOfGames = Integer.getInteger(GAMES_PROPERTY, 2000);
+        long firstSeed = Long.getLong(SEED_PROPERTY, 0);
+        int noOfThreads = Integer.getInteger(THREADS_PROPERTY, Runtime.getRuntime().availableProcessors());
+        String modeName = System.getProperty(MODE_PROPERTY, "mixed");
+        File configFile = new File(System.getProperty(RulesParameters.CONFIG_PROPERTY, RulesParameters.TUNED_CONFIG_PATH));
+        RulesTuner tuner = new RulesTuner(firstSeed, noOfGames, SelfPlayRunner.modeOf(modeName), NO_COL, noOfThreads, 1);
+
+        System.out.println("tuning " + populationSize + " candidates over " + noOfGenerations + " generations, "
+                           + noOfGames + " " + modeName + " games each, on " + noOfThreads + " threads");
+        long startTime_ns = System.nanoTime();
+        RulesParameters defaults = RulesParameters.defaults(NO_COL);
+        List<RulesParameters> population = new ArrayList<RulesParameters>();
+        population.add(defaults);
+        while (population.size() < populationSize)
+            population.add(tuner.randomParameters());
+        for (int generation = 0; ; generation++)
+        {
+            tuner.score(population);
+            double meanScore = 0;
+            for (RulesParameters parameters : population)
+                meanScore += tuner.scores.get(parameters) / population.size();
+            System.out.println(String.format("generation %d: best %.1f, mean %.1f, %d candidates played, %.0fs: %s",
+                    generation, tuner.scores.get(population.get(0)), meanScore, tuner.scores.size(),
+                    (System.nanoTime() - startTime_ns) / 1e9, population.get(0)));
+            if (generation + 1 >= noOfGenerations)
+                break;
+            population = tuner.nextGeneration(population);
+        }
+
+        RulesParameters best = population.get(0);
+        double[] validation = tuner.validate(best, defaults);
+        System.out.println(String.format("on %d other seeds: best %.1f, defaults %.1f", noOfGames, validation[0], validation[1]));
+        best.save(configFile, String.format("tuned by RulesTuner: mean score %.1f on seeds %d.., %.1f on %d..",
+                tuner.scores.get(best), firstSeed, validation[0], firstSeed + noOfGames));
+        System.out.println("saved to " + configFile + ", played once -D" + RulesParameters.CONFIG_PROPERTY + "=" + configFile);
+        tuner.pool.shutdown();
+    }
+
+    //**  public methods  **//
+    //
+    /**
+     * Plays the candidates not played before, in parallel, & sorts the population from the best.
+     */
+    public void score(List<RulesParameters> population) throws InterruptedException
+    {
+        Map<RulesParameters, Future<Double>> results = new HashMap<RulesParameters, Future<Double>>();
+        for (RulesParameters parameters : population)
+            if (!scores.containsKey(parameters) && !results.containsKey(parameters))
+                results.put(parameters, pool.submit(meanScoreOn(parameters, firstSeed)));
+        try
+        {
+            for (Map.Entry<RulesParameters, Future<Double>> result : results.entrySet())
+                scores.put(result.getKey(), result.getValue().get());
+        }
+        catch (ExecutionException ex)
+        {
+            throw new IllegalStateException(ex.getCause());
+        }
+        Collections.sort(population, new Comparator<RulesParameters>() {
+            @Override
+            public int compare(RulesParameters a, RulesParameters b) { return Double.compare(scores.get(b), scores.get(a)); }
+        });
+    }
+    //@return   the mean scores of the candidates on the seeds after those tuned on
+    public double[] validate(RulesParameters... candidates) throws InterruptedException
+    {
+        List<Future<Double>> results = new ArrayList<Future<Double>>();
+        for (RulesParameters parameters : candidates)
+            results.add(pool.submit(meanScoreOn(parameters, firstSeed + noOfGames)));
+        double[] meanScores = new double[candidates.length];
+        try
+        {
+            for (int i = 0; i < candidates.length; i++)
+                meanScores[i] = results.get(i).get();
+        }
+        catch (ExecutionException ex)
+        {
+            throw new IllegalStateException(ex.getCause());
+        }
+        return meanScores;
+    }
+    //@param population   sorted from the best
+    public List<RulesParameters> nextGeneration(List<RulesParameters> population)
+    {
+        List<RulesParameters> nextPopulation = new ArrayList<RulesParameters>(population.subList(0, ELITES));
+        while (nextPopulation.size() < population.size())
+        {
+            RulesParameters child = mutate(crossOver(tournament(population), tournament(population)));
+            if (child.fits(noOfCols))
+                nextPopulation.add(child);
+        }
+        return nextPopulation;
+    }
+    public RulesParameters randomParameters()
+    {
+        int[] cols = shuffledCols();
+        return new RulesParameters(Arrays.copyOf(cols, 1 + random.nextInt(cols.length)),
+                RulesParameters.MIN_SLACK + random.nextInt(RulesParameters.MAX_SLACK - RulesParameters.MIN_SLACK + 1),
+                shuffledCols()[0]);
+    }
+    //
+    //**  END of public methods  **//
+
+    private Callable<Double> meanScoreOn(final RulesParameters parameters, final long firstSeed)
+    {
+        return new Callable<Double>() {
+            @Override
+            public Double call() throws InterruptedException
+            {
+                SelfPlayRunner runner = new SelfPlayRunner(Math.min(noOfGames, 4096), 1, SelfPlayRunner.policyFactory(parameters));
+                return runner.run(firstSeed, noOfGames, mode, null).getMeanScore();
+            }
+        };
+    }
+    private RulesParameters tournament(List<RulesParameters> population)
+    {
+        RulesParameters winner = null;
+        for (int i = 0; i < TOURNAMENT_SIZE; i++)
+        {
+            RulesParameters parameters = population.get(random.nextInt(population.size()));
+            if (winner == null || scores.get(parameters) > scores.get(winner))
+                winner = parameters;
+        }
+        return winner;
+    }
+    private RulesParameters crossOver(RulesParameters a, RulesParameters b)
+    {
+        int[] orderA = a.getColVisitOrder(), orderB = b.getColVisitOrder();
+        int length = random.nextBoolean() ? orderA.length : orderB.length;
+        int cut = random.nextInt(orderA.length + 1);
+        int[] order = new int[length];
+        boolean[] visited = new boolean[noOfCols];
+        int noOfVisited = 0;
+        for (int i = 0; i < cut && noOfVisited < length; i++)
+            visited[order[noOfVisited++] = orderA[i]] = true;
+        for (int[] from : new int[][] {orderB, orderA})
+            for (int col : from)
+                if (noOfVisited < length && !visited[col])
+                    visited[order[noOfVisited++] = col] = true;
+        return new RulesParameters(order,
+                random.nextBoolean() ? a.getUppermostSlack() : b.getUppermostSlack(),
+                random.nextBoolean() ? a.getFallbackCol() : b.getFallbackCol());
+    }
+    private RulesParameters mutate(RulesParameters parameters)
+    {
+        int[] order = parameters.getColVisitOrder();
+        int slack = parameters.getUppermostSlack(), fallbackCol = parameters.getFallbackCol();
+        if (random.nextDouble() < MUTATION_RATE && order.length >= 2)
+        {
+            int i = random.nextInt(order.length), j = random.nextInt(order.length), col = order[i];
+            order[i] = order[j];
+            order[j] = col;
+        }
+        if (random.nextDouble() < MUTATION_RATE)
+        {
+            int[] cols = shuffledCols();
+            if (random.nextBoolean() && order.length < cols.length)
+            {
+                //a column not visited, inserted anywhere
+                int col = 0;
+                for (int candidate : cols)
+                    if (indexOf(order, candidate) < 0)
+                        col = candidate;
+                int at = random.nextInt(order.length + 1);
+                int[] longer = new int[order.length + 1];
+                System.arraycopy(order, 0, longer, 0, at);
+                longer[at] = col;
+                System.arraycopy(order, at, longer, at + 1, order.length - at);
+                order = longer;
+            }
+            else if (order.length >= 2)
+            {
+                int at = random.nextInt(order.length);
+                int[] shorter = new int[order.length - 1];
+                System.arraycopy(order, 0, shorter, 0, at);
+                System.arraycopy(order, at + 1, shorter, at, shorter.length - at);
+                order = shorter;
+            }
+        }
+        if (random.nextDouble() < MUTATION_RATE)
+            slack = Math.max(RulesParameters.MIN_SLACK, Math.min(RulesParameters.MAX_SLACK, slack + (random.nextBoolean() ? 1 : -1)));
+        if (random.nextDouble() < MUTATION_RATE)
+            fallbackCol = shuffledCols()[0];
+        return new RulesParameters(order, slack, fallbackCol);
+    }
+    //the columns the rules may take, i.e. all but the lane column, shuffled
+    private int[] shuffledCols()
+    {
+        int[] cols = new int[noOfCols];
+        int noOfOpenCols = 0;
+        for (int col = 0; col < noOfCols; col++)
+        {
+            if (RulesParameters.isLaneCol(col, noOfCols))
+                continue;
+            int j = random.nextInt(noOfOpenCols + 1);
+            cols[noOfOpenCols++] = cols[j];
+            cols[j] = col;
+        }
+        return Arrays.copyOf(cols, noOfOpenCols);
+    }
+    private static int indexOf(int[] values, int value)
+    {
+        for (int i = 0; i < values.length; i++)
+            if (values[i] == value)
+                return i;
+        return -1;
+    }
+}
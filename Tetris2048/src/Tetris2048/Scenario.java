@@ -0,0 +1,321 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package Tetris2048;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A named game set up to tell how well AI players play it: a starting board, the tiles to come,
+ * as forced by TileList.nextValueListOn(..) in the real game, & the outcomes expected.
+ *
+ * Scenarios are read from a text file, one line per item, '#' starting a comment:
+ *   scenario <name>
+ *     mode easy|hard|hyper                      easy by default
+ *     board <col0> | <col1> | ..                the values of each column from the lowest, e.g. "8 4 2 | | 4 |"
+ *     tiles <value> <value> ..                  the tiles to place, in order
+ *     seed <n>                                  of the tiles after those listed, drawn as TileList does. 0 by default
+ *     placements <n>                            to play, unless lost before. the number of tiles listed by default
+ *     expect first-col <col>,<col>.. [for <player>,<player>..]
+ *     expect score|highest|placements >=|<=|== <n> [for ..]
+ *     expect survives [for ..]                  i.e. not lost after the placements
+ *   end
+ * An expectation holds for every player, or for those listed after "for" only.
+ * The scenarios are played on GridEngine, by placements: see ScenarioSuite.
+ *
+ * @author ILoveIdunna
+ */
+final class Scenario
+{
+    static final String FILE_PROPERTY = "tetris2048.scenario.file";     //the bundled DEFAULT_RESOURCE by default
+    static final String NAME_PROPERTY = "tetris2048.scenario";          //the scenario whose tiles the game is played with
+    static final String DEFAULT_RESOURCE = "/assets/scenarios.txt";
+
+    /**
+     * An outcome expected of a scenario.
+     */
+    static final class Expectation
+    {
+        final String what, op;      //op is null for "survives" & "first-col"
+        final int[] values;         //the columns of "first-col", else the bound
+        final List<String> players; //empty for all
+
+        Expectation(String what, String op, int[] values, List<String> players)
+        {
+            this.what = what;
+            this.op = op;
+            this.values = values;
+            this.players = players;
+        }
+
+        boolean appliesTo(String player) { return players.isEmpty() || players.contains(player); }
+        boolean isMetBy(Outcome outcome)
+        {
+            if ("survives".equals(what))
+                return !outcome.lost;
+            if ("first-col".equals(what))
+                return outcome.firstCol >= 0 && Arrays.binarySearch(values, outcome.firstCol) >= 0;
+            int actual = "score".equals(what) ? outcome.score
+                       : "highest".equals(what) ? outcome.highestValue : outcome.noOfPlacements;
+            return ">=".equals(op) ? actual >= values[0] : "<=".equals(op) ? actual <= values[0] : actual == values[0];
+        }
+        @Override
+        public String toString()
+        {
+            if ("survives".equals(what))
+                return what;
+            if ("first-col".equals(what))
+                return what + " " + Arrays.toString(values);
+            return what + " " + op + " " + values[0];
+        }
+    }
+
+    /**
+     * How a player played a scenario.
+     */
+    static final class Outcome
+    {
+        int score, highestValue, noOfPlacements, firstCol = -1;
+        boolean lost;
+        long decisionTime_ns, maxDecisionTime_ns;   //spent choosing placements
+    }
+
+    private final String name;
+    private int mode = TileList.EASY_MODE;
+    private int[][] board = new int[0][];   //[col][row from the lowest]
+    private int[] tiles = new int[0];
+    private long seed;
+    private int noOfPlacements = -1;        //the number of tiles if not set
+    private final List<Expectation> expectations = new ArrayList<Expectation>();
+
+    private Scenario(String name)
+    {
+        this.name = name;
+    }
+
+    /**
+     * @param source   named in the errors
+     */
+    static List<Scenario> parse(Reader reader, String source) throws IOException
+    {
+        List<Scenario> scenarios = new ArrayList<Scenario>();
+        BufferedReader in = new BufferedReader(reader);
+        Scenario scenario = null;
+        String line;
+        for (int lineNo = 1; (line = in.readLine()) != null; lineNo++)
+        {
+            int commentStart = line.indexOf('#');
+            line = ((commentStart < 0) ? line : line.substring(0, commentStart)).trim();
+            if (line.isEmpty())
+                continue;
+            String[] words = line.split("\\s+", 2);
+            String rest = (words.length > 1) ? words[1].trim() : "";
+            try
+            {
+                if ("scenario".equals(words[0]))
+                {
+                    if (scenario != null || rest.isEmpty())
+                        throw new IllegalArgumentException("a scenario is to be named, after the \"end\" of the one before");
+                    scenario = new Scenario(rest);
+                    continue;
+                }
+                if (scenario == null)
+                    throw new IllegalArgumentException("\"" + words[0] + "\" outside a scenario");
+                if ("end".equals(words[0]))
+                {
+                    scenarios.add(scenario);
+                    scenario = null;
+                }
+                else if ("mode".equals(words[0]))
+                    scenario.mode = modeOf(rest);
+                else if ("board".equals(words[0]))
+                {
+                    String[] cols = rest.split("\\|", -1);
+                    scenario.board = new int[cols.length][];
+                    for (int col = 0; col < cols.length; col++)
+                        scenario.board[col] = valuesOf(cols[col]);
+                }
+                else if ("tiles".equals(words[0]))
+                    scenario.tiles = valuesOf(rest);
+                else if ("seed".equals(words[0]))
+                    scenario.seed = Long.parseLong(rest);
+                else if ("placements".equals(words[0]))
+                    scenario.noOfPlacements = Integer.parseInt(rest);
+                else if ("expect".equals(words[0]))
+                    scenario.expectations.add(expectationOf(rest));
+                else
+                    throw new IllegalArgumentException("unknown item \"" + words[0] + "\"");
+            }
+            catch (IllegalArgumentException ex)   //NumberFormatException as well
+            {
+                throw new IOException(source + ":" + lineNo + ": " + ex.getMessage(), ex);
+            }
+        }
+        if (scenario != null)
+            throw new IOException(source + ": scenario " + scenario.name + " has no \"end\"");
+        return scenarios;
+    }
+    //from the file of FILE_PROPERTY, or else the bundled one
+    static List<Scenario> load() throws IOException
+    {
+        String path = System.getProperty(FILE_PROPERTY);
+        InputStream resource = (path != null) ? null : Scenario.class.getResourceAsStream(DEFAULT_RESOURCE);
+        if (path == null && resource == null)
+            throw new IOException("no " + DEFAULT_RESOURCE + " on the class path, & no " + FILE_PROPERTY + " set");
+        Reader reader = (path != null) ? new FileReader(new File(path)) : new InputStreamReader(resource, "UTF-8");
+        try
+        {
+            return parse(reader, (path != null) ? path : DEFAULT_RESOURCE);
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+    //the scenario of NAME_PROPERTY, or null if not set or not found
+    static Scenario fromSystemProperties()
+    {
+        String name = System.getProperty(NAME_PROPERTY);
+        if (name == null)
+            return null;
+        try
+        {
+            for (Scenario scenario : load())
+                if (scenario.name.equals(name))
+                    return scenario;
+            Logger.getLogger(Scenario.class.getName()).log(Level.WARNING, "no scenario {0}", name);
+        }
+        catch (IOException ex)
+        {
+            Logger.getLogger(Scenario.class.getName()).log(Level.WARNING, "no scenarios", ex);
+        }
+        return null;
+    }
+
+    //**  public methods  **//
+    //
+    /**
+     * Plays the scenario by the policy, timing each decision.
+     */
+    public Outcome play(PlacementPolicy policy, int noOfRows, int noOfCols)
+    {
+        if (board.length > noOfCols)
+            throw new IllegalArgumentException("scenario " + name + " has " + board.length + " columns, the board " + noOfCols);
+        GridEngine field = new GridEngine(noOfRows, noOfCols);
+        for (int col = 0; col < board.length; col++)
+        {
+            if (board[col].length > noOfRows - 1)
+                throw new IllegalArgumentException("scenario " + name + " has " + board[col].length + " tiles in column "
+                                                   + col + ", the board " + (noOfRows - 1) + " rows to settle in");
+            int column = 0;
+            for (int row = 0; row < board[col].length; row++)
+                column = ColumnTable.withCell(column, row, Integer.numberOfTrailingZeros(board[col][row]));
+            field.setColumn(col, column);
+        }
+        if (policy instanceof ExpectimaxPolicy)
+            ((ExpectimaxPolicy) policy).getTable().clear();     //so that the search is the same whatever was searched before
+
+        //the tiles listed, then those drawn, as TileList plays them once nextValueListOn(tiles)
+        Random randomer = new Random(seed);
+        int noOfPlacementsToPlay = getNoOfPlacements();
+        int[] values = Arrays.copyOf(tiles, noOfPlacementsToPlay + 1);
+        for (int i = tiles.length; i < values.length; i++)
+            values[i] = TileList.randomValue(randomer, mode);
+        Outcome outcome = new Outcome();
+        for (int i = 0; i < noOfPlacementsToPlay && !field.isLost(); i++)
+        {
+            long startTime_ns = System.nanoTime();
+            int col = policy.choosePlacement(field, values[i], values[i + 1], mode);
+            long decisionTime_ns = System.nanoTime() - startTime_ns;
+            outcome.decisionTime_ns += decisionTime_ns;
+            outcome.maxDecisionTime_ns = Math.max(outcome.maxDecisionTime_ns, decisionTime_ns);
+            if (i == 0)
+                outcome.firstCol = col;
+            field.place(col, values[i]);
+            outcome.noOfPlacements++;
+        }
+        outcome.score = field.getScore();
+        outcome.highestValue = field.getHighestValue();
+        outcome.lost = field.isLost();
+        return outcome;
+    }
+    public String getName() { return name; }
+    public int getMode() { return mode; }
+    public int[] getTiles() { return tiles.clone(); }
+    public boolean hasBoard()
+    {
+        for (int[] col : board)
+            if (col.length > 0)
+                return true;
+        return false;
+    }
+    public int getNoOfPlacements() { return (noOfPlacements < 0) ? tiles.length : noOfPlacements; }
+    public List<Expectation> getExpectations() { return expectations; }
+    //
+    //**  END of public methods  **//
+
+    private static int modeOf(String modeName)
+    {
+        for (int mode = 0; mode < TileList.NO_OF_MODES; mode++)
+            if (TileList.MODE_NAMES[mode].equalsIgnoreCase(modeName))
+                return mode;
+        throw new IllegalArgumentException("unknown mode \"" + modeName + "\"");
+    }
+    //values separated by spaces or commas, each a power of 2
+    private static int[] valuesOf(String text)
+    {
+        text = text.trim();
+        if (text.isEmpty())
+            return new int[0];
+        String[] words = text.split("[\\s,]+");
+        int[] values = new int[words.length];
+        for (int i = 0; i < words.length; i++)
+        {
+            values[i] = Integer.parseInt(words[i]);
+            if (values[i] < 2 || Integer.bitCount(values[i]) != 1 || Integer.numberOfTrailingZeros(values[i]) > ColumnTable.MAX_EXPONENT)
+                throw new IllegalArgumentException(values[i] + " is no value of a tile");
+        }
+        return values;
+    }
+    private static Expectation expectationOf(String text)
+    {
+        List<String> players = new ArrayList<String>();
+        int forStart = text.indexOf(" for ");
+        if (forStart >= 0)
+        {
+            for (String player : text.substring(forStart + 5).trim().split("\\s*,\\s*"))
+                players.add(player.toLowerCase());
+            text = text.substring(0, forStart).trim();
+        }
+        String[] words = text.split("\\s+");
+        if ("survives".equals(words[0]) && words.length == 1)
+            return new Expectation("survives", null, new int[0], players);
+        if ("first-col".equals(words[0]) && words.length == 2)
+        {
+            String[] cols = words[1].split(",");
+            int[] values = new int[cols.length];
+            for (int i = 0; i < cols.length; i++)
+                values[i] = Integer.parseInt(cols[i]);
+            Arrays.sort(values);
+            return new Expectation("first-col", null, values, players);
+        }
+        if (Arrays.asList("score", "highest", "placements").contains(words[0]) && words.length == 3
+            && Arrays.asList(">=", "<=", "==").contains(words[1]))
+            return new Expectation(words[0], words[1], new int[] {Integer.parseInt(words[2])}, players);
+        throw new IllegalArgumentException("unknown expectation \"" + text + "\"");
+    }
+}
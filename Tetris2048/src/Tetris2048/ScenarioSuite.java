@@ -0,0 +1,101 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package Tetris2048;
+
+import static Tetris2048.GameFieldData.*;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Plays every Scenario by every AI player, headless, & reports how each one met the outcomes expected
+ * & how long it took per placement: java -cp ... Tetris2048.ScenarioSuite, with the system properties below
+ * & Scenario.FILE_PROPERTY. Exits with 1 if any outcome expected is not met, as a regression gate.
+ *
+ * The scenarios are played WARMUPS_PROPERTY times unmeasured first, so that the times are of compiled code.
+ * A scenario is played the same way every time: the tiles after those listed are drawn from its seed,
+ * & the transposition table of a search is cleared before each scenario.
+ * The "rules" player is RulesPolicy, which follows the rules of AIPlayer on placements: AIPlayer itself,
+ * which plays tiles falling on TileList, is not played here. The "ntuple" player is SKIPPED without
+ * a weights file of NTupleNetwork, rather than played greedily as "greedy" is.
+ *
+ * @author ILoveIdunna
+ */
+class ScenarioSuite
+{
+    static final String PLAYERS_PROPERTY = "tetris2048.scenario.players";   //"rules,greedy,ntuple,expectimax" by default
+    static final String WARMUPS_PROPERTY = "tetris2048.scenario.warmups";   //3 by default
+
+    public static void main(String[] args) throws IOException
+    {
+        List<Scenario> scenarios = Scenario.load();
+        String[] players = System.getProperty(PLAYERS_PROPERTY, "rules,greedy,ntuple,expectimax").split("\\s*,\\s*");
+        int noOfWarmups = Integer.getInteger(WARMUPS_PROPERTY, 3);
+        System.out.println(scenarios.size() + " scenarios on " + (NO_ROW - 1) + "x" + NO_COL + " by " + players.length + " players");
+
+        int noOfFailures = 0;
+        List<String> skipped = new ArrayList<String>();
+        for (String player : players)
+        {
+            player = player.toLowerCase();
+            PlacementPolicy policy;
+            if ("ntuple".equals(player))
+            {
+                File weightsFile = new File(System.getProperty(NTupleNetwork.WEIGHTS_PROPERTY, NTupleNetwork.DEFAULT_WEIGHTS_PATH));
+                try
+                {
+                    policy = new NTuplePolicy(NTupleNetwork.map(weightsFile, NO_ROW, NO_COL, false), NO_ROW, NO_COL);
+                }
+                catch (IOException ex)
+                {
+                    System.out.println();
+                    System.out.println(player + ": SKIPPED, the weights are not mapped: " + ex.getMessage());
+                    skipped.add(player);
+                    continue;
+                }
+            }
+            else
+                policy = SelfPlayRunner.policyFactory(player).newPolicy();
+            for (int i = 0; i < noOfWarmups; i++)
+                for (Scenario scenario : scenarios)
+                    scenario.play(policy, NO_ROW, NO_COL);
+
+            System.out.println();
+            System.out.println(String.format("%-24s %-6s %7s %7s %10s %12s %10s", player, "result", "score", "highest",
+                                             "placements", "us/placement", "max us"));
+            int noOfPassed = 0, noOfPlacements = 0;
+            long decisionTime_ns = 0, maxDecisionTime_ns = 0;
+            for (Scenario scenario : scenarios)
+            {
+                Scenario.Outcome outcome = scenario.play(policy, NO_ROW, NO_COL);
+                List<Scenario.Expectation> failed = new ArrayList<Scenario.Expectation>();
+                for (Scenario.Expectation expectation : scenario.getExpectations())
+                    if (expectation.appliesTo(player) && !expectation.isMetBy(outcome))
+                        failed.add(expectation);
+                System.out.println(String.format("%-24s %-6s %7d %7d %10s %12.1f %10.1f", scenario.getName(),
+                        failed.isEmpty() ? "pass" : "FAIL", outcome.score, outcome.highestValue,
+                        outcome.noOfPlacements + (outcome.lost ? " lost" : ""),
+                        outcome.decisionTime_ns / 1e3 / Math.max(1, outcome.noOfPlacements), outcome.maxDecisionTime_ns / 1e3));
+                for (Scenario.Expectation expectation : failed)
+                    System.out.println("    expected " + expectation
+                                       + ("first-col".equals(expectation.what) ? ", col " + outcome.firstCol + " taken" : ""));
+                noOfPassed += failed.isEmpty() ? 1 : 0;
+                noOfFailures += failed.size();
+                noOfPlacements += outcome.noOfPlacements;
+                decisionTime_ns += outcome.decisionTime_ns;
+                maxDecisionTime_ns = Math.max(maxDecisionTime_ns, outcome.maxDecisionTime_ns);
+            }
+            System.out.println(String.format("%s: %d/%d scenarios passed, %d placements, %.1fus per placement, %.1fus at most",
+                    player, noOfPassed, scenarios.size(), noOfPlacements, decisionTime_ns / 1e3 / Math.max(1, noOfPlacements),
+                    maxDecisionTime_ns / 1e3));
+        }
+        System.out.println();
+        System.out.println(((noOfFailures == 0) ? "every outcome expected is met" : noOfFailures + " outcomes expected are not met")
+                           + (skipped.isEmpty() ? "" : ", " + skipped + " SKIPPED"));
+        System.exit((noOfFailures == 0) ? 0 : 1);
+    }
+}
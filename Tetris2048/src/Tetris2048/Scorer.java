@@ -6,9 +6,6 @@
 package Tetris2048;
 
 import static Tetris2048.GameFieldData.*;
-import game.v2.Console;
-import java.awt.Color;
-import java.awt.Font;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -23,13 +20,11 @@ class Scorer
     private int currScore, bestScore; //curr for current
     private String bestScoreFileAbsolutePath;
     private RandomAccessFile bestScoreRAF;
-    private Console console;
     private Sound soundEffect;
     
     Scorer(Sound soundEffect) throws FileNotFoundException, IOException
     { 
         this.soundEffect = soundEffect;
-        console = Console.getInstance();
         this.bestScoreFileAbsolutePath = new File("").getAbsolutePath() + BEST_SCORE_FILE_RELATIVE_PATH;
         try
         {
@@ -47,6 +42,7 @@ class Scorer
     private int getBestScoreFromFile() throws IOException
     {   
         int bestScoreFromFile = 0;
+        long ioStartTime_ns = System.nanoTime();
         try
         {
             bestScoreRAF.seek(0);
@@ -58,6 +54,7 @@ class Scorer
         }
         finally
         {
+            GameMetrics.SCORER_IO_TIME.record(System.nanoTime() - ioStartTime_ns);
             return bestScoreFromFile;
         }
     }
@@ -84,8 +81,10 @@ class Scorer
             bestScoreFromFile = getBestScoreFromFile();
             if (bestScore > bestScoreFromFile)
             {
+                long ioStartTime_ns = System.nanoTime();
                 bestScoreRAF.seek(0);
                 bestScoreRAF.writeInt(bestScore);
+                GameMetrics.SCORER_IO_TIME.record(System.nanoTime() - ioStartTime_ns);
             }
         }
         catch (Exception e)
@@ -93,23 +92,6 @@ class Scorer
             e.printStackTrace();
         }
     }
-    public void displayScores()
-    {
-        int noOfDigitOfCurrScore = 0, noOfDigitOfBestScore = 0, //used to adjust the position
-                                                            //of scores according to their numbers of digits
-            fontSize;
-        for (int i = 1; i < currScore; i *= 10)
-            noOfDigitOfCurrScore++;
-        for (int i = 1; i < bestScore; i *= 10)
-            noOfDigitOfBestScore++;
-        fontSize = 24;
-        console.drawText(CURR_SCORE_LEFT - noOfDigitOfCurrScore*(fontSize/4),
-                        CURR_SCORE_BOTTOM,String.valueOf(currScore), 
-                        new Font(null,1,fontSize), new Color(0x00,0x00,0x00,0xFF));
-        console.drawText(BEST_SCORE_LEFT - noOfDigitOfBestScore*(fontSize/4),
-                        BEST_SCORE_BOTTOM,String.valueOf(bestScore), 
-                        new Font(null,3,fontSize), new Color(0xBB,0x00,0x00,0xFF));
-    }
     public void cleanToReuse()
     {
         currScore = 0;
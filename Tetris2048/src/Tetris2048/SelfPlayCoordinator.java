@@ -0,0 +1,605 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package Tetris2048;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Plays a batch of games across worker processes: java -cp ... Tetris2048.SelfPlayCoordinator,
+ * with the system properties below & those of SelfPlayRunner, which are handed down to the workers.
+ *
+ * The seeds are split into batches of BATCH_PROPERTY seeds. The coordinator starts WORKERS_PROPERTY
+ * SelfPlayWorker JVMs, & takes any other worker connecting, e.g. of another box, then hands each worker
+ * a batch whenever it is idle, so that faster workers play more batches. Once no batch is left to hand out,
+ * an idle worker steals a batch still played by another, the first result of a batch being kept: as a game
+ * is told by its seed alone, both play the same games, & a slow or stuck worker no longer holds up the end.
+ * A worker not heard of for HEARTBEAT_TIMEOUTS heartbeats, or whose connection is lost, gives its batch back.
+ *
+ * The batches played & their sums are checkpointed after each batch, so a run stopped at any time is resumed
+ * by running the coordinator again with the same properties. The results of the games are appended to the
+ * file of ResultsWriter.FILE_PROPERTY, if set, which is cut back to its checkpointed length when resumed.
+ *
+ * Messages, by DataOutputStream:
+ *   worker: HELLO name noOfThreads, HEARTBEAT noOfGamesPlayed, RESULT batchIdx summary noOfRows rows
+ *   coordinator: ASSIGN batchIdx firstSeed noOfGames mode sendsResults, STOP, which a worker playing a batch
+ *                takes as well, once no batch is left to play
+ *
+ * @author ILoveIdunna
+ */
+class SelfPlayCoordinator
+{
+    static final String WORKERS_PROPERTY = "tetris2048.cluster.workers";        //JVMs started. the number of processors by default
+    static final String BIND_PROPERTY = "tetris2048.cluster.bind";              //address listened on. 127.0.0.1 by default
+    static final String PORT_PROPERTY = "tetris2048.cluster.port";              //0, any free port, by default
+    static final String BATCH_PROPERTY = "tetris2048.cluster.batch";            //seeds per batch. 100000 by default
+    static final String CHECKPOINT_PROPERTY = "tetris2048.cluster.checkpoint";  //"selfplay.checkpoint" by default
+    static final String HEARTBEAT_PROPERTY = "tetris2048.cluster.heartbeat.ms"; //1000 by default
+    static final String JVM_OPTIONS_PROPERTY = "tetris2048.cluster.jvm";        //options of the JVMs started, e.g. "-Xmx512m"
+    static final long DEFAULT_HEARTBEAT_MS = 1000;
+    static final int HEARTBEAT_TIMEOUTS = 10;
+    static final int REPORT_SEC = 10;
+    //**messages
+    static final byte HELLO = 1, HEARTBEAT = 2, RESULT = 3, ASSIGN = 4, STOP = 5;
+    private static final int CHECKPOINT_MAGIC = 0x54325350;   //"T2SP"
+    private static final int UNASSIGNED = -1, FINISHED = -1;
+
+    private final long firstSeed, noOfGames;
+    private final int batchSize, mode, noOfBatches;
+    private final String player;
+    private final long heartbeat_ms;
+    private final File checkpointFile, resultsFile;     //resultsFile may be null
+    private ResultsWriter resultsWriter;
+    //**guarded by this
+    private final BitSet batchesPlayed;
+    private final ArrayDeque<Integer> batchesToPlay;
+    private final int[] noOfWorkersByBatch;
+    private final SelfPlayRunner.Summary summary;
+    private long previousTime_ns;           //of the runs checkpointed before
+    private final long startTime_ns;        //of this run
+    private final List<Worker> workers = new ArrayList<Worker>();
+
+    SelfPlayCoordinator(long firstSeed, long noOfGames, int batchSize, int mode, String player,
+                        File checkpointFile, File resultsFile) throws IOException
+    {
+        if ((noOfGames + batchSize - 1) / batchSize > Integer.MAX_VALUE)
+            throw new IllegalArgumentException(noOfGames + " games are too many batches of " + batchSize);
+        this.firstSeed = firstSeed;
+        this.noOfGames = noOfGames;
+        this.batchSize = batchSize;
+        this.mode = mode;
+        this.player = player.toLowerCase();
+        this.checkpointFile = checkpointFile;
+        this.resultsFile = resultsFile;
+        heartbeat_ms = Long.getLong(HEARTBEAT_PROPERTY, DEFAULT_HEARTBEAT_MS);
+        noOfBatches = (int) ((noOfGames + batchSize - 1) / batchSize);
+        batchesPlayed = new BitSet(noOfBatches);
+        noOfWorkersByBatch = new int[noOfBatches];
+        summary = new SelfPlayRunner.Summary();
+        startTime_ns = System.nanoTime();
+        long resultsLength = (resultsFile == null) ? 0 : resultsFile.length();  //appended to, if not resumed
+        if (checkpointFile.exists())
+            resultsLength = readCheckpoint();
+        if (resultsFile != null)
+        {
+            RandomAccessFile raf = new RandomAccessFile(resultsFile, "rw");
+            try
+            {
+                raf.setLength(resultsLength);   //the results of the batches played after the checkpoint are played again
+            }
+            finally
+            {
+                raf.close();
+            }
+            resultsWriter = new ResultsWriter(resultsFile);
+        }
+        batchesToPlay = new ArrayDeque<Integer>();
+        for (int batchIdx = batchesPlayed.nextClearBit(0); batchIdx < noOfBatches; batchIdx = batchesPlayed.nextClearBit(batchIdx + 1))
+            batchesToPlay.add(batchIdx);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException
+    {
+        long noOfGames = Long.parseLong(System.getProperty(SelfPlayRunner.GAMES_PROPERTY, "1000000"));
+        long firstSeed = Long.getLong(SelfPlayRunner.FIRST_SEED_PROPERTY, 0);
+        int batchSize = Integer.getInteger(BATCH_PROPERTY, 100000);
+        int noOfWorkers = Integer.getInteger(WORKERS_PROPERTY, Runtime.getRuntime().availableProcessors());
+        String player = System.getProperty(SelfPlayRunner.PLAYER_PROPERTY, "ntuple");
+        int mode = SelfPlayRunner.modeOf(System.getProperty(SelfPlayRunner.MODE_PROPERTY));
+        String resultsPath = System.getProperty(ResultsWriter.FILE_PROPERTY);
+        SelfPlayCoordinator coordinator = new SelfPlayCoordinator(firstSeed, noOfGames, batchSize, mode, player,
+                new File(System.getProperty(CHECKPOINT_PROPERTY, "selfplay.checkpoint")),
+                (resultsPath == null) ? null : new File(resultsPath));
+
+        ServerSocket serverSocket = new ServerSocket(Integer.getInteger(PORT_PROPERTY, 0), 50,
+                InetAddress.getByName(System.getProperty(BIND_PROPERTY, "127.0.0.1")));
+        System.out.println("playing " + noOfGames + " games by " + player + " in " + coordinator.noOfBatches
+                           + " batches, " + coordinator.getNoOfBatchesPlayed() + " played before, listening on "
+                           + serverSocket.getLocalSocketAddress());
+        coordinator.accept(serverSocket);
+        List<Process> processes = startWorkers(noOfWorkers, serverSocket);
+        SelfPlayRunner.Summary summary = coordinator.awaitBatches(processes);
+        serverSocket.close();
+        for (Process process : processes)
+            if (!process.waitFor(HEARTBEAT_TIMEOUTS * coordinator.heartbeat_ms, TimeUnit.MILLISECONDS))
+                process.destroy();
+
+        SelfPlayRunner.printSummary(summary);
+        coordinator.printWorkers();
+        if (coordinator.resultsWriter != null)
+            System.out.println(summary.noOfGames.get() + " results in " + resultsPath);
+    }
+
+    //**  public methods  **//
+    //
+    //takes the workers connecting, on a thread of its own
+    public void accept(final ServerSocket serverSocket)
+    {
+        Thread acceptor = new Thread("Tetris2048-coordinator") {
+            @Override
+            public void run()
+            {
+                while (!serverSocket.isClosed())
+                {
+                    try
+                    {
+                        Socket socket = serverSocket.accept();
+                        socket.setTcpNoDelay(true);
+                        Worker worker = new Worker(socket);
+                        synchronized (SelfPlayCoordinator.this)
+                        {
+                            workers.add(worker);
+                        }
+                        worker.start();
+                    }
+                    catch (IOException ex)
+                    {
+                        if (!serverSocket.isClosed())
+                            Logger.getLogger(SelfPlayCoordinator.class.getName()).log(Level.WARNING, null, ex);
+                    }
+                }
+            }
+        };
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+    /**
+     * Waits till every batch is played, dropping the workers not heard of in time, & reporting the progress.
+     * @param processes   of the workers started here: when all have ended, with no other worker connected,
+     *                    the batches left cannot be played
+     * @return            the sums over the games of all batches, including those of the runs checkpointed before
+     */
+    public SelfPlayRunner.Summary awaitBatches(List<Process> processes) throws InterruptedException, IOException
+    {
+        //told out of the monitor, as writing to a worker not reading may block
+        for (Worker worker : awaitAllBatches(processes))
+            worker.stopPlaying();   //a batch played by another
+        return summary;
+    }
+    public synchronized int getNoOfBatchesPlayed() { return batchesPlayed.cardinality(); }
+    public synchronized int getNoOfWorkersConnected()
+    {
+        int noOfWorkersConnected = 0;
+        for (Worker worker : workers)
+            if (!worker.socket.isClosed())
+                noOfWorkersConnected++;
+        return noOfWorkersConnected;
+    }
+    public synchronized void printWorkers()
+    {
+        System.out.println(String.format("%-24s %7s %8s %7s %12s %10s", "worker", "threads", "batches", "stolen", "games", "games/s"));
+        for (Worker worker : workers)
+            System.out.println(String.format("%-24s %7d %8d %7d %12d %10.0f", worker.name, worker.noOfThreads,
+                    worker.noOfBatchesPlayed, worker.noOfBatchesStolen, worker.noOfGamesPlayed,
+                    worker.noOfGamesPlayed / Math.max(1e-9, worker.time_ns / 1e9)));
+    }
+    //
+    //**  END of public methods  **//
+
+    //the JVMs of the workers of this box, with the class path & the "tetris2048." properties of this one.
+    //they connect to the address listened on, or to the loopback one if every address is
+    private static List<Process> startWorkers(int noOfWorkers, ServerSocket serverSocket) throws IOException
+    {
+        InetAddress address = serverSocket.getInetAddress();
+        if (address.isAnyLocalAddress())
+            address = InetAddress.getLoopbackAddress();
+        List<String> command = new ArrayList<String>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        String jvmOptions = System.getProperty(JVM_OPTIONS_PROPERTY, "").trim();
+        if (!jvmOptions.isEmpty())
+            for (String option : jvmOptions.split("\\s+"))
+                command.add(option);
+        if (System.getProperty(SelfPlayRunner.THREADS_PROPERTY) == null)
+            command.add("-D" + SelfPlayRunner.THREADS_PROPERTY + "="
+                        + Math.max(1, Runtime.getRuntime().availableProcessors() / Math.max(1, noOfWorkers)));
+        for (Map.Entry<Object, Object> property : System.getProperties().entrySet())
+            if (property.getKey().toString().startsWith("tetris2048."))
+                command.add("-D" + property.getKey() + "=" + property.getValue());
+        command.add("-Djava.awt.headless=true");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(SelfPlayWorker.class.getName());
+        command.add(address.getHostAddress());
+        command.add(Integer.toString(serverSocket.getLocalPort()));
+
+        List<Process> processes = new ArrayList<Process>(noOfWorkers);
+        for (int i = 0; i < noOfWorkers; i++)
+            processes.add(new ProcessBuilder(command).inheritIO().start());
+        return processes;
+    }
+    private static boolean isAlive(Process process)
+    {
+        try
+        {
+            process.exitValue();
+            return false;
+        }
+        catch (IllegalThreadStateException ex)
+        {
+            return true;
+        }
+    }
+
+    //**  batches  **//
+    //
+    //@return   the workers still playing a batch, played by another
+    private synchronized List<Worker> awaitAllBatches(List<Process> processes) throws InterruptedException, IOException
+    {
+        long nextReportTime_ns = System.nanoTime() + REPORT_SEC * 1000000000L;
+        long gamesAtStart = summary.noOfGames.get();
+        while (getNoOfBatchesPlayed() < noOfBatches)
+        {
+            wait(heartbeat_ms);
+            long now_ms = System.currentTimeMillis();
+            boolean anyWorkerAlive = false;
+            for (Worker worker : workers)
+            {
+                if (worker.batchIdx != UNASSIGNED && now_ms - worker.lastHeard_ms > HEARTBEAT_TIMEOUTS * heartbeat_ms)
+                {
+                    Logger.getLogger(SelfPlayCoordinator.class.getName()).log(Level.WARNING,
+                            "{0} not heard of for {1}ms, dropped", new Object[] {worker.name, now_ms - worker.lastHeard_ms});
+                    worker.close();     //its thread gives its batch back
+                }
+                anyWorkerAlive |= !worker.socket.isClosed();
+            }
+            for (Process process : processes)
+                anyWorkerAlive |= isAlive(process);
+            if (!anyWorkerAlive && !processes.isEmpty() && getNoOfBatchesPlayed() < noOfBatches)
+                throw new IOException("every worker is gone, with " + (noOfBatches - getNoOfBatchesPlayed())
+                                      + " batches left: run again to resume");
+            if (System.nanoTime() >= nextReportTime_ns)
+            {
+                double time_s = (System.nanoTime() - startTime_ns) / 1e9;
+                System.out.println(String.format("%d/%d batches, %.0f games/s, %d workers",
+                        getNoOfBatchesPlayed(), noOfBatches, (summary.noOfGames.get() - gamesAtStart) / time_s,
+                        getNoOfWorkersConnected()));
+                nextReportTime_ns += REPORT_SEC * 1000000000L;
+            }
+        }
+        summary.time_ns = previousTime_ns + (System.nanoTime() - startTime_ns);
+        notifyAll();    //the idle workers are told to stop
+        if (resultsWriter != null)
+            resultsWriter.close();
+        List<Worker> playingWorkers = new ArrayList<Worker>();
+        for (Worker worker : workers)
+            if (worker.batchIdx != UNASSIGNED)
+                playingWorkers.add(worker);
+        return playingWorkers;
+    }
+    //@return   the next batch for the worker, waiting till there is one, or FINISHED
+    private synchronized int nextBatch(Worker worker) throws InterruptedException
+    {
+        while (getNoOfBatchesPlayed() < noOfBatches)
+        {
+            Integer batchIdx;
+            while ((batchIdx = batchesToPlay.poll()) != null)
+                if (!batchesPlayed.get(batchIdx))
+                {
+                    noOfWorkersByBatch[batchIdx]++;
+                    return batchIdx;
+                }
+            //stolen: the batch played by one worker only, the longest, i.e. the 1st handed out
+            for (int idx = batchesPlayed.nextClearBit(0); idx < noOfBatches; idx = batchesPlayed.nextClearBit(idx + 1))
+                if (noOfWorkersByBatch[idx] == 1)
+                {
+                    noOfWorkersByBatch[idx]++;
+                    worker.noOfBatchesStolen++;
+                    return idx;
+                }
+            wait(heartbeat_ms);
+        }
+        return FINISHED;
+    }
+    private synchronized void batchPlayed(Worker worker, int batchIdx, long[] sums, long[] noOfGamesByHighestExponent,
+                                          long time_ns, ResultRows rows) throws IOException
+    {
+        noOfWorkersByBatch[batchIdx]--;
+        worker.noOfGamesPlayed += sums[0];
+        worker.time_ns += time_ns;
+        if (batchesPlayed.get(batchIdx))
+            return;     //by the worker it was stolen from, or stolen by
+        worker.noOfBatchesPlayed++;
+        summary.add(sums[0], sums[1], sums[2], noOfGamesByHighestExponent);
+        if (resultsWriter != null)
+        {
+            for (int row = 0; row < rows.noOfRows; row++)
+                resultsWriter.add(rows.seeds[row], player, rows.modes[row], rows.scores[row], rows.highestValues[row],
+                                  rows.placements[row]);
+            resultsWriter.flush();
+        }
+        batchesPlayed.set(batchIdx);
+        writeCheckpoint();
+        notifyAll();
+    }
+    private synchronized void batchDropped(int batchIdx)
+    {
+        if (--noOfWorkersByBatch[batchIdx] == 0 && !batchesPlayed.get(batchIdx))
+        {
+            batchesToPlay.addFirst(batchIdx);
+            notifyAll();
+        }
+    }
+    //
+    //**  END of batches  **//
+
+    //**  checkpoint  **//
+    //
+    private void writeCheckpoint() throws IOException
+    {
+        File tempFile = new File(checkpointFile.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+        try
+        {
+            writeRun(out);
+            out.writeLong((resultsFile == null) ? 0 : resultsFile.length());
+            out.writeLong(previousTime_ns + (System.nanoTime() - startTime_ns));
+            writeSums(out, summary);
+            long[] words = batchesPlayed.toLongArray();
+            out.writeInt(words.length);
+            for (long word : words)
+                out.writeLong(word);
+        }
+        finally
+        {
+            out.close();
+        }
+        Files.move(tempFile.toPath(), checkpointFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    //@return   the length of the results file
+    private long readCheckpoint() throws IOException
+    {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(checkpointFile)));
+        try
+        {
+            if (in.readInt() != CHECKPOINT_MAGIC || in.readLong() != firstSeed || in.readLong() != noOfGames
+                || in.readInt() != batchSize || in.readInt() != mode || !in.readUTF().equals(player))
+                throw new IOException(checkpointFile + " is the checkpoint of another run: delete it to start this one");
+            long resultsLength = in.readLong();
+            previousTime_ns = in.readLong();
+            long[] sums = new long[3], noOfGamesByHighestExponent = new long[summary.noOfGamesByHighestExponent.length()];
+            readSums(in, sums, noOfGamesByHighestExponent);
+            summary.add(sums[0], sums[1], sums[2], noOfGamesByHighestExponent);
+            long[] words = new long[in.readInt()];
+            for (int i = 0; i < words.length; i++)
+                words[i] = in.readLong();
+            batchesPlayed.or(BitSet.valueOf(words));
+            return resultsLength;
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+    private void writeRun(DataOutputStream out) throws IOException
+    {
+        out.writeInt(CHECKPOINT_MAGIC);
+        out.writeLong(firstSeed);
+        out.writeLong(noOfGames);
+        out.writeInt(batchSize);
+        out.writeInt(mode);
+        out.writeUTF(player);
+    }
+    //
+    //**  END of checkpoint  **//
+
+    //**  sums of a batch, as sent & checkpointed  **//
+    //
+    static void writeSummary(DataOutputStream out, SelfPlayRunner.Summary summary) throws IOException
+    {
+        writeSums(out, summary);
+        out.writeLong(summary.time_ns);
+    }
+    private static void writeSums(DataOutputStream out, SelfPlayRunner.Summary summary) throws IOException
+    {
+        out.writeLong(summary.noOfGames.get());
+        out.writeLong(summary.noOfPlacements.get());
+        out.writeLong(summary.scoreSum.get());
+        out.writeInt(summary.noOfGamesByHighestExponent.length());
+        for (int exponent = 0; exponent < summary.noOfGamesByHighestExponent.length(); exponent++)
+            out.writeLong(summary.noOfGamesByHighestExponent.get(exponent));
+    }
+    //into sums: noOfGames, noOfPlacements, scoreSum
+    private static void readSums(DataInputStream in, long[] sums, long[] noOfGamesByHighestExponent) throws IOException
+    {
+        for (int i = 0; i < 3; i++)
+            sums[i] = in.readLong();
+        int length = in.readInt();
+        if (length != noOfGamesByHighestExponent.length)
+            throw new IOException("sums of " + length + " exponents instead of " + noOfGamesByHighestExponent.length);
+        for (int exponent = 0; exponent < length; exponent++)
+            noOfGamesByHighestExponent[exponent] = in.readLong();
+    }
+    //
+    //**  END of sums  **//
+
+    /**
+     * The results of the games of a batch, as sent by a worker.
+     */
+    private static class ResultRows
+    {
+        final int noOfRows;
+        final long[] seeds;
+        final int[] modes, scores, highestValues, placements;
+
+        ResultRows(DataInputStream in) throws IOException
+        {
+            noOfRows = in.readInt();
+            seeds = new long[noOfRows];
+            modes = new int[noOfRows];
+            scores = new int[noOfRows];
+            highestValues = new int[noOfRows];
+            placements = new int[noOfRows];
+            for (int row = 0; row < noOfRows; row++)
+            {
+                seeds[row] = in.readLong();
+                modes[row] = in.readByte();
+                scores[row] = in.readInt();
+                highestValues[row] = in.readInt();
+                placements[row] = in.readInt();
+            }
+        }
+    }
+
+    /**
+     * A worker connected, served by a thread of its own: hands it batches & reads what it sends.
+     */
+    private class Worker extends Thread
+    {
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+        private String name = "?";
+        private int noOfThreads;
+        private volatile long lastHeard_ms;
+        private volatile int batchIdx = UNASSIGNED;
+        private volatile boolean stopped;   //told to stop while playing, so its connection is to be closed by it
+        //**guarded by the coordinator
+        private long noOfGamesPlayed, time_ns;
+        private int noOfBatchesPlayed, noOfBatchesStolen;
+
+        Worker(Socket socket) throws IOException
+        {
+            super("Tetris2048-worker-" + socket.getRemoteSocketAddress());
+            setDaemon(true);
+            this.socket = socket;
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                if (in.readByte() != HELLO)
+                    throw new IOException("no HELLO from " + socket.getRemoteSocketAddress());
+                name = in.readUTF();
+                noOfThreads = in.readInt();
+                int nextBatchIdx;
+                while ((nextBatchIdx = nextBatch(this)) != FINISHED)
+                {
+                    lastHeard_ms = System.currentTimeMillis();
+                    batchIdx = nextBatchIdx;
+                    long batchFirstSeed = firstSeed + (long) batchIdx * batchSize;
+                    synchronized (out)
+                    {
+                        out.writeByte(ASSIGN);
+                        out.writeInt(batchIdx);
+                        out.writeLong(batchFirstSeed);
+                        out.writeInt((int) Math.min(batchSize, firstSeed + noOfGames - batchFirstSeed));
+                        out.writeInt(mode);
+                        out.writeBoolean(resultsWriter != null);
+                        out.flush();
+                    }
+                    byte message;
+                    while ((message = in.readByte()) == HEARTBEAT)
+                    {
+                        in.readInt();
+                        lastHeard_ms = System.currentTimeMillis();
+                    }
+                    if (message != RESULT || in.readInt() != batchIdx)
+                        throw new IOException("a result of another batch from " + name);
+                    long[] sums = new long[3], noOfGamesByHighestExponent = new long[ColumnTable.MAX_EXPONENT + 1];
+                    readSums(in, sums, noOfGamesByHighestExponent);
+                    long batchTime_ns = in.readLong();
+                    ResultRows rows = new ResultRows(in);
+                    int playedIdx = batchIdx;
+                    batchIdx = UNASSIGNED;
+                    batchPlayed(this, playedIdx, sums, noOfGamesByHighestExponent, batchTime_ns, rows);
+                }
+                synchronized (out)
+                {
+                    out.writeByte(STOP);
+                    out.flush();
+                }
+            }
+            catch (IOException ex)
+            {
+                if (!socket.isClosed() && !stopped)
+                    Logger.getLogger(SelfPlayCoordinator.class.getName()).log(Level.WARNING, name + " lost", ex);
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+            }
+            finally
+            {
+                if (batchIdx != UNASSIGNED)
+                    batchDropped(batchIdx);
+                close();
+            }
+        }
+        //tells the worker to stop the batch it plays, leaving it to close the connection, so that STOP reaches it
+        void stopPlaying()
+        {
+            stopped = true;
+            try
+            {
+                synchronized (out)
+                {
+                    out.writeByte(STOP);
+                    out.flush();
+                }
+                socket.shutdownOutput();
+            }
+            catch (IOException ex)
+            {
+                close();    //gone anyway
+            }
+        }
+        void close()
+        {
+            try
+            {
+                socket.close();
+            }
+            catch (IOException ex)
+            {
+                //closed anyway
+            }
+        }
+    }
+}
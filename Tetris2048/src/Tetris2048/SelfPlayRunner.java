@@ -0,0 +1,266 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package Tetris2048;
+
+import static Tetris2048.GameFieldData.*;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Plays a batch of games by placements, headless, on all cores: java -cp ... Tetris2048.SelfPlayRunner,
+ * with the system properties below.
+ *
+ * The games in flight are kept in a GameStatePool, off the heap. Each thread steps its own range of the pool,
+ * one placement per game per pass, & starts the game of the next seed in a record once its game is lost,
+ * till every seed of the batch is played. A game is told by its seed alone, whatever the thread
+ * or the pass it is played in, so a batch gives the same results on any number of threads by the players
+ * which keep no state between placements: "rules", "greedy" & "ntuple". Not by "expectimax": its searches
+ * reuse what the threads stored in their shared TranspositionTable, in whatever order they ran.
+ * The result of each game is appended to the file of ResultsWriter.FILE_PROPERTY, if set, its duration
+ * being the number of placements.
+ *
+ * @author ILoveIdunna
+ */
+class SelfPlayRunner
+{
+    static final String GAMES_PROPERTY = "tetris2048.selfplay.games";       //1000000 by default
+    static final String FIRST_SEED_PROPERTY = "tetris2048.selfplay.seed";   //the seeds are first, first + 1, ... 0 by default
+    static final String SLOTS_PROPERTY = "tetris2048.selfplay.slots";       //games in flight. 65536 by default
+    static final String THREADS_PROPERTY = "tetris2048.selfplay.threads";   //the number of processors by default
+    static final String PLAYER_PROPERTY = "tetris2048.selfplay.player";     //see policyFactory(..). "ntuple" by default
+    static final String MODE_PROPERTY = "tetris2048.selfplay.mode";         //"easy"(default), "hard" or "mixed"
+    static final int[] REPORTED_VALUES = {16, 32, 64, 128};   //the shares of games reaching them are reported. 128 is the highest made on the board
+    static final int MIXED_MODE = -1;   //EASY_MODE for even seeds, HARD_MODE for odd ones
+
+    /**
+     * Makes a policy for each thread, as policies keep state while choosing.
+     */
+    interface PolicyFactory
+    {
+        PlacementPolicy newPolicy();
+    }
+
+    /**
+     * Told of each game played, on the thread which played it.
+     */
+    interface ResultListener
+    {
+        void gameOver(long seed, int mode, int score, int highestValue, int noOfPlacements);
+    }
+
+    /**
+     * The sums over the games of a batch.
+     */
+    static class Summary
+    {
+        final AtomicLong noOfGames = new AtomicLong(), noOfPlacements = new AtomicLong(), scoreSum = new AtomicLong();
+        final AtomicLongArray noOfGamesByHighestExponent = new AtomicLongArray(ColumnTable.MAX_EXPONENT + 1);
+        volatile long time_ns;
+
+        //the sums of another batch, e.g. played by another process
+        void add(long noOfGames, long noOfPlacements, long scoreSum, long[] noOfGamesByHighestExponent)
+        {
+            this.noOfPlacements.addAndGet(noOfPlacements);
+            this.scoreSum.addAndGet(scoreSum);
+            for (int exponent = 0; exponent < noOfGamesByHighestExponent.length; exponent++)
+                this.noOfGamesByHighestExponent.addAndGet(exponent, noOfGamesByHighestExponent[exponent]);
+            this.noOfGames.addAndGet(noOfGames);
+        }
+        double getGamesPerSec() { return noOfGames.get() / (time_ns / 1e9); }
+        double getMeanScore() { return (double) scoreSum.get() / Math.max(1, noOfGames.get()); }
+        //the share of the games whose highest value is at least "value"
+        double getReachedShare(int value)
+        {
+            long reached = 0;
+            for (int exponent = Integer.numberOfTrailingZeros(value); exponent < noOfGamesByHighestExponent.length(); exponent++)
+                reached += noOfGamesByHighestExponent.get(exponent);
+            return (double) reached / Math.max(1, noOfGames.get());
+        }
+    }
+
+    private final int noOfSlots, noOfThreads;
+    private final PolicyFactory policyFactory;
+
+    SelfPlayRunner(int noOfSlots, int noOfThreads, PolicyFactory policyFactory)
+    {
+        this.noOfSlots = noOfSlots;
+        this.noOfThreads = Math.max(1, Math.min(noOfThreads, noOfSlots));
+        this.policyFactory = policyFactory;
+    }
+
+    public static void main(String[] args) throws InterruptedException, IOException
+    {
+        long noOfGames = Long.parseLong(System.getProperty(GAMES_PROPERTY, "1000000"));
+        long firstSeed = Long.getLong(FIRST_SEED_PROPERTY, 0);
+        int noOfSlots = (int) Math.min(noOfGames, Integer.getInteger(SLOTS_PROPERTY, 65536));
+        int noOfThreads = Integer.getInteger(THREADS_PROPERTY, Runtime.getRuntime().availableProcessors());
+        String player = System.getProperty(PLAYER_PROPERTY, "ntuple");
+        int mode = modeOf(System.getProperty(MODE_PROPERTY));
+        SelfPlayRunner runner = new SelfPlayRunner(noOfSlots, noOfThreads, policyFactory(player));
+
+        System.out.println("playing " + noOfGames + " games by " + player + ", " + noOfSlots + " in flight on "
+                           + runner.noOfThreads + " threads");
+        String resultsPath = System.getProperty(ResultsWriter.FILE_PROPERTY);
+        final ResultsWriter resultsWriter = (resultsPath == null) ? null : new ResultsWriter(new File(resultsPath));
+        final String strategy = player.toLowerCase();
+        ResultListener listener = (resultsWriter == null) ? null : new ResultListener() {
+            @Override
+            public void gameOver(long seed, int mode, int score, int highestValue, int noOfPlacements)
+            {
+                try
+                {
+                    resultsWriter.add(seed, strategy, mode, score, highestValue, noOfPlacements);
+                }
+                catch (IOException ex)
+                {
+                    throw new IllegalStateException(ex);
+                }
+            }
+        };
+        Summary summary = runner.run(firstSeed, noOfGames, mode, listener);
+        if (resultsWriter != null)
+        {
+            resultsWriter.close();
+            System.out.println(resultsWriter.getNoOfRowsWritten() + " results appended to " + resultsPath);
+        }
+        printSummary(summary);
+        Runtime runtime = Runtime.getRuntime();
+        System.out.println(String.format("heap used %.1fMB, game states off the heap %.1fMB",
+                (runtime.totalMemory() - runtime.freeMemory()) / 1048576.0,
+                (double) noOfSlots * GameStatePool.RECORD_SIZE / 1048576.0));
+    }
+    static void printSummary(Summary summary)
+    {
+        System.out.println(String.format("%d games in %.1fs: %.0f games/s, %.0f placements/s, mean score %.1f",
+                summary.noOfGames.get(), summary.time_ns / 1e9, summary.getGamesPerSec(),
+                summary.noOfPlacements.get() / (summary.time_ns / 1e9), summary.getMeanScore()));
+        StringBuilder reached = new StringBuilder("reached");
+        for (int value : REPORTED_VALUES)
+            reached.append(String.format(" %d: %.3f,", value, summary.getReachedShare(value)));
+        System.out.println(reached.substring(0, reached.length() - 1));
+    }
+    static int modeOf(String modeName)
+    {
+        return "hard".equalsIgnoreCase(modeName) ? TileList.HARD_MODE
+             : "mixed".equalsIgnoreCase(modeName) ? MIXED_MODE : TileList.EASY_MODE;
+    }
+    /**
+     * @param player   "rules" by RulesParameters.fromSystemProperties(..), "greedy", "ntuple" by the weights file,
+     *                 or "expectimax" by BoardEvaluator, sharing one TranspositionTable & searched on the thread
+     *                 stepping the games, so its results depend on how the threads interleave
+     */
+    static PolicyFactory policyFactory(String player)
+    {
+        if ("rules".equalsIgnoreCase(player))
+            return policyFactory(RulesParameters.fromSystemProperties(NO_COL));
+        if ("expectimax".equalsIgnoreCase(player))
+        {
+            final TranspositionTable table = TranspositionTable.fromSystemProperties();
+            final int depth = Integer.getInteger(ExpectimaxPolicy.DEPTH_PROPERTY, ExpectimaxPolicy.DEFAULT_DEPTH);
+            return new PolicyFactory() {
+                @Override
+                public PlacementPolicy newPolicy()
+                {
+                    return new ExpectimaxPolicy(new BoardEvaluator(NO_ROW, NO_COL), table, NO_ROW, NO_COL, depth, 1);
+                }
+            };
+        }
+        NTupleNetwork network = NTupleNetwork.inMemory(NO_ROW, NO_COL);
+        if (!"greedy".equalsIgnoreCase(player))
+        {
+            try
+            {
+                network = NTupleNetwork.map(new File(System.getProperty(NTupleNetwork.WEIGHTS_PROPERTY,
+                                                     NTupleNetwork.DEFAULT_WEIGHTS_PATH)), NO_ROW, NO_COL, false);
+            }
+            catch (IOException ex)
+            {
+                Logger.getLogger(SelfPlayRunner.class.getName()).log(Level.WARNING, "the games are played greedily", ex);
+            }
+        }
+        final NTupleNetwork sharedNetwork = network;    //read only, so shared by the threads
+        return new PolicyFactory() {
+            @Override
+            public PlacementPolicy newPolicy() { return new NTuplePolicy(sharedNetwork, NO_ROW, NO_COL); }
+        };
+    }
+    static PolicyFactory policyFactory(final RulesParameters parameters)
+    {
+        return new PolicyFactory() {
+            @Override
+            public PlacementPolicy newPolicy() { return new RulesPolicy(parameters, NO_ROW, NO_COL); }
+        };
+    }
+
+    /**
+     * Plays the games of the seeds [firstSeed, firstSeed + noOfGames).
+     * @param mode       or MIXED_MODE
+     * @param listener   may be null
+     */
+    Summary run(long firstSeed, long noOfGames, final int mode, final ResultListener listener) throws InterruptedException
+    {
+        final GameStatePool pool = new GameStatePool(noOfSlots, NO_ROW, NO_COL);
+        final Summary summary = new Summary();
+        final long endSeed = firstSeed + noOfGames;
+        final AtomicLong nextSeed = new AtomicLong(firstSeed);
+        //the 1st games, in the order of the records
+        for (int idx = 0; idx < noOfSlots; idx++)
+        {
+            long seed = nextSeed.getAndIncrement();
+            if (seed >= endSeed)
+                break;
+            pool.start(idx, seed, modeOf(seed, mode));
+        }
+        final GameStatePool.GameOverListener gameOverListener = new GameStatePool.GameOverListener() {
+            @Override
+            public void gameOver(GameStatePool pool, int idx)
+            {
+                int score = pool.getScore(idx), highestValue = pool.getHighestValue(idx);
+                summary.noOfPlacements.addAndGet(pool.getNoOfPlacements(idx));
+                summary.scoreSum.addAndGet(score);
+                summary.noOfGamesByHighestExponent.incrementAndGet(Integer.numberOfTrailingZeros(highestValue));
+                summary.noOfGames.incrementAndGet();
+                if (listener != null)
+                    listener.gameOver(pool.getSeed(idx), pool.getMode(idx), score, highestValue, pool.getNoOfPlacements(idx));
+                long seed = nextSeed.getAndIncrement();
+                if (seed < endSeed)
+                    pool.start(idx, seed, modeOf(seed, mode));
+                else
+                    pool.free(idx);
+            }
+        };
+
+        long startTime_ns = System.nanoTime();
+        Thread[] threads = new Thread[noOfThreads];
+        for (int i = 0; i < noOfThreads; i++)
+        {
+            final int from = (int) ((long) noOfSlots * i / noOfThreads), to = (int) ((long) noOfSlots * (i + 1) / noOfThreads);
+            threads[i] = new Thread("Tetris2048-selfplay-" + i) {
+                @Override
+                public void run()
+                {
+                    PlacementPolicy policy = policyFactory.newPolicy();
+                    GridEngine field = new GridEngine(NO_ROW, NO_COL);
+                    while (pool.step(from, to, policy, field, gameOverListener) > 0)
+                        ;
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+        summary.time_ns = System.nanoTime() - startTime_ns;
+        return summary;
+    }
+    private static int modeOf(long seed, int mode)
+    {
+        return (mode == MIXED_MODE) ? (int) (seed & 1) : mode;
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package Tetris2048;
+
+import static Tetris2048.GameFieldData.*;
+import static Tetris2048.SelfPlayCoordinator.*;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Plays the batches of seeds a SelfPlayCoordinator assigns, by a SelfPlayRunner:
+ * java -cp ... Tetris2048.SelfPlayWorker <host> <port>, with the system properties of SelfPlayRunner.
+ *
+ * Started by the coordinator for the workers of its box, or by hand on another box.
+ * Sends a heartbeat every HEARTBEAT_PROPERTY ms while playing, from a thread of its own,
+ * & the sums of each batch, with the result of each game if the coordinator asks for them.
+ * The heartbeat thread also takes a STOP sent while playing, once the batch is played by another worker,
+ * & then ends the worker, as a normal end.
+ *
+ * @author ILoveIdunna
+ */
+class SelfPlayWorker
+{
+    private final Socket socket;
+    private final DataInputStream in;       //synchronized on, as read by the heartbeats while playing
+    private final DataOutputStream out;     //synchronized on, as shared with the heartbeats
+    private final SelfPlayRunner runner;
+    private final AtomicInteger noOfGamesPlayed = new AtomicInteger();  //of the batch playing
+    private final int noOfThreads;
+    private boolean playing;                //guarded by in
+    private volatile boolean stopped;
+
+    SelfPlayWorker(Socket socket, SelfPlayRunner.PolicyFactory policyFactory, int noOfSlots, int noOfThreads)
+            throws IOException
+    {
+        this.socket = socket;
+        in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        this.noOfThreads = noOfThreads;
+        runner = new SelfPlayRunner(noOfSlots, noOfThreads, policyFactory);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException
+    {
+        if (args.length != 2)
+        {
+            System.err.println("usage: SelfPlayWorker <coordinator host> <coordinator port>");
+            System.exit(2);
+        }
+        int noOfSlots = Integer.getInteger(SelfPlayRunner.SLOTS_PROPERTY, 65536);
+        int noOfThreads = Integer.getInteger(SelfPlayRunner.THREADS_PROPERTY, Runtime.getRuntime().availableProcessors());
+        String player = System.getProperty(SelfPlayRunner.PLAYER_PROPERTY, "ntuple");
+        Socket socket = new Socket(args[0], Integer.parseInt(args[1]));
+        socket.setTcpNoDelay(true);
+        try
+        {
+            new SelfPlayWorker(socket, SelfPlayRunner.policyFactory(player), noOfSlots, noOfThreads).work();
+        }
+        catch (IOException ex)
+        {
+            Logger.getLogger(SelfPlayWorker.class.getName()).log(Level.WARNING, "the coordinator is gone", ex);
+        }
+        finally
+        {
+            socket.close();
+        }
+    }
+
+    /**
+     * Plays the batches assigned till told to stop.
+     */
+    void work() throws IOException, InterruptedException
+    {
+        synchronized (out)
+        {
+            out.writeByte(HELLO);
+            out.writeUTF(ManagementFactory.getRuntimeMXBean().getName());   //pid@host
+            out.writeInt(noOfThreads);
+            out.flush();
+        }
+        final long heartbeat_ms = Long.getLong(HEARTBEAT_PROPERTY, DEFAULT_HEARTBEAT_MS);
+        Thread heartbeats = new Thread("Tetris2048-heartbeat") {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    while (!socket.isClosed())
+                    {
+                        Thread.sleep(heartbeat_ms);
+                        if (isStoppedWhilePlaying())
+                        {
+                            stopped = true;
+                            socket.close();
+                            System.exit(0);     //rather than play out a batch no one will take
+                        }
+                        synchronized (out)
+                        {
+                            out.writeByte(HEARTBEAT);
+                            out.writeInt(noOfGamesPlayed.get());
+                            out.flush();
+                        }
+                    }
+                }
+                catch (IOException ex)
+                {
+                    if (!stopped)
+                    {
+                        Logger.getLogger(SelfPlayWorker.class.getName()).log(Level.WARNING, "the coordinator is gone", ex);
+                        System.exit(1);     //rather than play out a batch no one will take
+                    }
+                }
+                catch (InterruptedException ex)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        heartbeats.setDaemon(true);
+        heartbeats.start();
+
+        while (readMessage() == ASSIGN)
+        {
+            int batchIdx, noOfGames, mode;
+            long firstSeed;
+            boolean sendsResults;
+            synchronized (in)
+            {
+                batchIdx = in.readInt();
+                firstSeed = in.readLong();
+                noOfGames = in.readInt();
+                mode = in.readInt();
+                sendsResults = in.readBoolean();
+                playing = true;
+            }
+            //the result of each game, at its idx of completion
+            final long[] seeds = sendsResults ? new long[noOfGames] : null;
+            final int[] modes = sendsResults ? new int[noOfGames] : null, scores = sendsResults ? new int[noOfGames] : null;
+            final int[] highestValues = sendsResults ? new int[noOfGames] : null;
+            final int[] placements = sendsResults ? new int[noOfGames] : null;
+            noOfGamesPlayed.set(0);
+            SelfPlayRunner.Summary summary = runner.run(firstSeed, noOfGames, mode, new SelfPlayRunner.ResultListener() {
+                @Override
+                public void gameOver(long seed, int mode, int score, int highestValue, int noOfPlacements)
+                {
+                    int idx = noOfGamesPlayed.getAndIncrement();
+                    if (seeds == null)
+                        return;
+                    seeds[idx] = seed;
+                    modes[idx] = mode;
+                    scores[idx] = score;
+                    highestValues[idx] = highestValue;
+                    placements[idx] = noOfPlacements;
+                }
+            });
+            synchronized (out)
+            {
+                out.writeByte(RESULT);
+                out.writeInt(batchIdx);
+                writeSummary(out, summary);
+                out.writeInt(sendsResults ? noOfGames : 0);
+                for (int idx = 0; sendsResults && idx < noOfGames; idx++)
+                {
+                    out.writeLong(seeds[idx]);
+                    out.writeByte(modes[idx]);
+                    out.writeInt(scores[idx]);
+                    out.writeInt(highestValues[idx]);
+                    out.writeInt(placements[idx]);
+                }
+                out.flush();
+            }
+        }
+        stopped = true;
+    }
+
+    //the next message, once no batch is played, so that the heartbeats no longer read
+    private byte readMessage() throws IOException
+    {
+        synchronized (in)
+        {
+            playing = false;
+        }
+        return in.readByte();
+    }
+    //true if a STOP came while playing
+    private boolean isStoppedWhilePlaying() throws IOException
+    {
+        synchronized (in)
+        {
+            return playing && in.available() > 0 && in.readByte() == STOP;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package Tetris2048;
+
+/**
+ * The render hook.
+ * A renderer draws a whole frame out of one BoardSnapshot, & never touches TileList,
+ * Tile or Scorer objs, which belong to the game loop.
+ *
+ * @author ILoveIdunna
+ */
+interface SnapshotRenderer
+{
+    /**
+     * Called by the render thread only.
+     * @param snapshot  the latest published snapshot. it must not be kept after returning
+     */
+    void render(BoardSnapshot snapshot);
+}
@@ -0,0 +1,66 @@
+/**
+ *
+ *
+ * A triple buffer of BoardSnapshot objs between the game loop (the only writer)
+ * & a renderer (the only reader).
+ *
+ * At any moment, one snapshot is owned by the writer, one by the reader,
+ * & the third one holds the latest published frame, waiting to be taken by the reader.
+ * Neither side ever waits for the other, & no snapshot is allocated after construction.
+ *
+ */
+package Tetris2048;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *
+ * @author ILoveIdunna
+ */
+class SnapshotRing
+{
+    private static final int INDEX_MASK = 0x3;
+    private static final int FRESH = 0x4; //set in "middle" when the middle snapshot is newer than the reader's
+
+    private final BoardSnapshot[] snapshots;
+    private int writeIdx, readIdx;      //each is touched by its own side only
+    private final AtomicInteger middle; //the index of the spare snapshot, | FRESH if it is a newly published one
+
+    SnapshotRing()
+    {
+        snapshots = new BoardSnapshot[]{new BoardSnapshot(), new BoardSnapshot(), new BoardSnapshot()};
+        writeIdx = 0;
+        middle = new AtomicInteger(1);
+        readIdx = 2;
+    }
+
+    //**  functions for the writer  **//
+    //
+    /**
+     * @return  the snapshot to be filled. it is invisible to the reader until publish()
+     */
+    public BoardSnapshot getWritable() { return snapshots[writeIdx]; }
+    public void publish()
+    {
+        writeIdx = middle.getAndSet(writeIdx | FRESH) & INDEX_MASK;
+    }
+    //
+    //**  END of functions for the writer  **//
+
+
+    //**  functions for the reader  **//
+    //
+    /**
+     * The snapshot returned stays untouched until the next call of this function.
+     * @return  the latest published snapshot, or null if nothing has been published yet
+     */
+    public BoardSnapshot getLatest()
+    {
+        if ((middle.get() & FRESH) != 0)
+            readIdx = middle.getAndSet(readIdx) & INDEX_MASK;
+        BoardSnapshot snapshot = snapshots[readIdx];
+        return (snapshot.getTickNo() > 0) ? snapshot : null;
+    }
+    //
+    //**  END of functions for the reader  **//
+}
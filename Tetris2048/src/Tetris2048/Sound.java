@@ -33,6 +33,7 @@ public class Sound extends Thread {
     public boolean playback;
     private String songPath;
     public static int BGM = 0, SOUND_EFFECT = 1;
+    private static final int PLAYBACK_CHECK_INTERVAL_MS = 50; //how often the end of the BGM is checked
     private int type;
 
     public boolean setSong(String songPath, int type) {
@@ -74,14 +75,19 @@ public class Sound extends Thread {
         playback = true;
         ap.player.start(as);
         try {
-            do {
-            } while (as.available() > 0 && playback);
+            //sleep in between the checks instead of spinning, which used to keep a whole core busy
+            while (as.available() > 0 && playback) {
+                Thread.sleep(PLAYBACK_CHECK_INTERVAL_MS);
+            }
             if (playback) {
                 setSong();
                 startLoopPlayback();
             }
         } catch (IOException ex) {
             Logger.getLogger(Sound.class.getName()).log(Level.SEVERE, null, ex);
+        } catch (InterruptedException ex) {
+            stopPlayback();
+            Thread.currentThread().interrupt(); //kept for the owner of the thread, which asked it to stop
         }
     }
 
@@ -0,0 +1,241 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package Tetris2048;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Endgame tablebase: the exact best placements of near-full fields, solved by TablebaseBuilder.
+ *
+ * A field is near-full when fewer cells than the horizon are empty, not counting the row where new tiles
+ * are created. A field with more empty cells survives the horizon for sure, as a placement fills one cell
+ * at most & never loses while a column has room. For each near-full field & each pair of the value to place
+ * & the next value, the table tells the chance to survive the next "horizon" placements by the best play,
+ * & the columns achieving it.
+ *
+ * The table is a file of fixed-size slots, open-addressed by the packed field, memory-mapped rather than read,
+ * so that a probe costs one hash & as many slot reads as collide, without a single obj on the heap.
+ * A field is packed into a long: the playable cells of each column, 4 bits per cell as in ColumnTable,
+ * from the leftmost column. Layout, little-endian:
+ *   HEADER_SIZE bytes        int MAGIC, int VERSION, int noOfRows, int noOfCols, int horizon, int capacity,
+ *                            int size, 3 ints: the chances of 2, 4 & 8 in 1/1000 by the mode solved for, zero-padded
+ *   capacity * SLOT_SIZE     long packed field (0 if the slot is free), then NO_OF_PAIRS ints:
+ *                            bits 0-15 the chance to survive in 1/65535, bits 16-31 the best columns as a bit mask
+ *
+ * @author ILoveIdunna
+ */
+class Tablebase
+{
+    static final String FILE_PROPERTY = "tetris2048.ai.tablebase";   //path of the tablebase file
+    static final String DEFAULT_PATH = "endgame.tablebase";
+    static final int NO_OF_VALUES = ColumnTable.MAX_DROP_EXPONENT;      //2, 4 & 8
+    static final int NO_OF_PAIRS = NO_OF_VALUES * NO_OF_VALUES;         //of the value to place & the next value
+    static final int MAX_NO_COLS = 16;                                  //as many as fit in the mask of a pair
+    static final int CERTAIN = 0xFFFF;                                  //the chance to survive, when sure
+    private static final int MAGIC = 0x42543254;                        //"T2TB" when read as little-endian ASCII
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int SIZE_OFFSET = 24;
+    private static final int SLOT_SIZE = 8 + 4 * NO_OF_PAIRS;
+    //the most slots a mapping holds, as a ByteBuffer is indexed by int: 2^25 slots, 1.4GB
+    static final int MAX_CAPACITY = Integer.highestOneBit((Integer.MAX_VALUE - HEADER_SIZE) / SLOT_SIZE);
+
+    private final int noOfRows, noOfCols, horizon, capacity;
+    private final int[] valueChances;     //of 2, 4 & 8, in 1/1000
+    private final ByteBuffer buffer;
+    private final boolean mapped;
+
+    private Tablebase(ByteBuffer buffer, boolean mapped)
+    {
+        this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+        this.mapped = mapped;
+        noOfRows = buffer.getInt(8);
+        noOfCols = buffer.getInt(12);
+        horizon = buffer.getInt(16);
+        capacity = buffer.getInt(20);
+        valueChances = new int[] {buffer.getInt(28), buffer.getInt(32), buffer.getInt(36)};
+    }
+    static boolean fits(int noOfRows, int noOfCols)
+    {
+        return noOfRows >= 2 && noOfRows <= ColumnTable.MAX_NO_CELLS && noOfCols >= 1 && noOfCols <= MAX_NO_COLS
+               && (noOfRows - 1) * ColumnTable.BITS_PER_CELL * noOfCols <= 64;
+    }
+
+    /**
+     * Maps a tablebase file, read-only.
+     */
+    static Tablebase map(File file) throws IOException
+    {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try
+        {
+            if (raf.length() > HEADER_SIZE + (long) SLOT_SIZE * MAX_CAPACITY)
+                throw new IOException(file + " is not a tablebase, or one of more than " + MAX_CAPACITY + " slots");
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (raf.length() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+                || raf.length() != HEADER_SIZE + (long) SLOT_SIZE * buffer.getInt(20))
+                throw new IOException(file + " is not a tablebase");
+            return new Tablebase(buffer, true);
+        }
+        finally
+        {
+            raf.close();
+        }
+    }
+    /**
+     * Creates a tablebase file with all slots free, mapped read-write, to be filled by put(..).
+     * @param capacity   rounded up to a power of 2. MAX_CAPACITY at most
+     */
+    static Tablebase create(File file, int noOfRows, int noOfCols, int mode, int horizon, int capacity) throws IOException
+    {
+        if (!fits(noOfRows, noOfCols))
+            throw new IllegalArgumentException("no tablebase for a board of " + noOfRows + "x" + noOfCols);
+        if (capacity < 0 || capacity > MAX_CAPACITY)
+            throw new IllegalArgumentException("no tablebase of " + capacity + " slots: " + MAX_CAPACITY + " at most");
+        capacity = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        long size = HEADER_SIZE + (long) SLOT_SIZE * capacity;
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try
+        {
+            raf.setLength(0);   //all slots free, without writing them
+            raf.setLength(size);
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, noOfRows).putInt(12, noOfCols)
+                  .putInt(16, horizon).putInt(20, capacity).putInt(SIZE_OFFSET, 0);
+            for (int i = 0; i < NO_OF_VALUES; i++)
+                buffer.putInt(28 + 4 * i, (int) Math.round(1000 * TileList.probabilityOfValue(2 << i, mode)));
+            return new Tablebase(buffer, true);
+        }
+        finally
+        {
+            raf.close();
+        }
+    }
+
+    //**  public methods  **//
+    //
+    /**
+     * @return   the slot of the field, or -1 if it is not in the table
+     */
+    public int slotOf(GridEngine field)
+    {
+        if (field.getNoOfRows() != noOfRows || field.getNoOfCols() != noOfCols)
+            return -1;
+        long key = keyOf(field);
+        if (key == 0)
+            return -1;
+        int mask = capacity - 1;
+        for (int slot = hash(key) & mask, i = 0; i < capacity; slot = (slot + 1) & mask, i++)
+        {
+            long slotKey = buffer.getLong(offsetOf(slot));
+            if (slotKey == key)
+                return slot;
+            if (slotKey == 0)
+                return -1;
+        }
+        return -1;
+    }
+    //@return   the chance to survive the horizon by the best play, from 0 to 1
+    public float survivalAt(int slot, int value, int nextValue)
+    {
+        return (pairAt(slot, value, nextValue) & CERTAIN) / (float) CERTAIN;
+    }
+    //@return   the columns achieving survivalAt(..), as a bit mask from the leftmost column at bit 0
+    public int bestColsAt(int slot, int value, int nextValue)
+    {
+        return pairAt(slot, value, nextValue) >>> 16;
+    }
+    /**
+     * Fills the slot of the field, when building.
+     * @param pairs   by (exponent of value - 1) * NO_OF_VALUES + (exponent of nextValue - 1), as described above
+     * @throws IllegalStateException   if the field is not in the table & no slot is free
+     */
+    public void put(long key, int[] pairs)
+    {
+        int mask = capacity - 1;
+        int slot = hash(key) & mask;
+        for (int i = 0; buffer.getLong(offsetOf(slot)) != 0 && buffer.getLong(offsetOf(slot)) != key; i++)
+        {
+            if (i + 1 >= capacity)
+                throw new IllegalStateException("the tablebase is full: " + capacity + " slots");
+            slot = (slot + 1) & mask;
+        }
+        int offset = offsetOf(slot);
+        if (buffer.getLong(offset) == 0)
+            buffer.putInt(SIZE_OFFSET, size() + 1);
+        buffer.putLong(offset, key);
+        for (int i = 0; i < NO_OF_PAIRS; i++)
+            buffer.putInt(offset + 8 + 4 * i, pairs[i]);
+    }
+    //true if the table is solved for the ratio of 2, 4 & 8 of the mode, e.g. HYPER_MODE is the same as HARD_MODE
+    public boolean isSolvedFor(int mode)
+    {
+        for (int i = 0; i < NO_OF_VALUES; i++)
+            if (valueChances[i] != (int) Math.round(1000 * TileList.probabilityOfValue(2 << i, mode)))
+                return false;
+        return true;
+    }
+    public int getNoOfRows() { return noOfRows; }
+    public int getNoOfCols() { return noOfCols; }
+    public int getHorizon() { return horizon; }
+    public int getCapacity() { return capacity; }
+    public int size() { return buffer.getInt(SIZE_OFFSET); }
+    public void flush()
+    {
+        if (mapped)
+            ((MappedByteBuffer) buffer).force();
+    }
+    //
+    //**  END of public methods  **//
+
+    //the field packed as a key, or 0 if it has a tile in the row where new tiles are created
+    static long keyOf(GridEngine field)
+    {
+        int bitsPerCol = (field.getNoOfRows() - 1) * ColumnTable.BITS_PER_CELL;
+        long key = 0;
+        for (int col = 0; col < field.getNoOfCols(); col++)
+        {
+            int column = field.getColumn(col);
+            if (column >>> bitsPerCol != 0)
+                return 0;
+            key |= (long) column << (col * bitsPerCol);
+        }
+        return key;
+    }
+    //the reverse of keyOf(..)
+    static void setField(GridEngine field, long key)
+    {
+        int bitsPerCol = (field.getNoOfRows() - 1) * ColumnTable.BITS_PER_CELL;
+        field.reset();
+        for (int col = 0; col < field.getNoOfCols(); col++)
+            field.setColumn(col, (int) ((key >>> (col * bitsPerCol)) & ((1L << bitsPerCol) - 1)));
+    }
+    static int pairOf(int value, int nextValue)
+    {
+        return (Integer.numberOfTrailingZeros(value) - 1) * NO_OF_VALUES + Integer.numberOfTrailingZeros(nextValue) - 1;
+    }
+    private int pairAt(int slot, int value, int nextValue)
+    {
+        return buffer.getInt(offsetOf(slot) + 8 + 4 * pairOf(value, nextValue));
+    }
+    //fits in an int, as the capacity is MAX_CAPACITY at most
+    private static int offsetOf(int slot)
+    {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+    private static int hash(long key)
+    {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32);
+    }
+}
@@ -0,0 +1,300 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package Tetris2048;
+
+import static Tetris2048.GameFieldData.*;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Builds a Tablebase, headless: java -cp ... Tetris2048.TablebaseBuilder, with the system properties below.
+ *
+ * 1) the near-full fields reached are collected from games played by NTuplePolicy,
+ *    with the weights file if any, e.g. as trained by NTupleTrainer
+ * 2) from those, layer by layer, every near-full field reachable by 1, 2, .. horizon - 1 placements is enumerated.
+ *    layer k holds the fields with fewer empty cells than the placements left after k placements,
+ *    as only they may lose within the horizon
+ * 3) the layers are solved backwards, from the last one, whose fields survive if any placement does not lose,
+ *    to layer 0, whose fields are then written to the table.
+ *    a field of layer k is worth, for each value to place & next value, the best over the columns of the chance
+ *    to survive the field left, i.e. the mean over the values to come of its worth in layer k + 1,
+ *    or 1 for a field left with enough empty cells
+ * The cost grows with the fields collected & steeply with the horizon: at horizon 6 on 5x4, some 4M to 10M fields
+ * are enumerated, built in 5s to 30s.
+ *
+ * @author ILoveIdunna
+ */
+class TablebaseBuilder
+{
+    static final String GAMES_PROPERTY = "tetris2048.tablebase.games";       //games played to collect fields. 2000 by default
+    static final String HORIZON_PROPERTY = "tetris2048.tablebase.horizon";   //placements looked ahead. 6 by default
+    static final String MODE_PROPERTY = "tetris2048.tablebase.mode";         //"easy"(default) or "hard", incl. HYPER_MODE
+    static final String SEED_PROPERTY = "tetris2048.tablebase.seed";         //the time by default
+
+    private final int noOfRows, noOfCols, mode, horizon;
+    private final double[] chanceOfValue;   //by exponent - 1
+    private final Layer[] layers;
+    private final GridEngine field, afterPlacement;
+
+    TablebaseBuilder(int noOfRows, int noOfCols, int mode, int horizon)
+    {
+        this.noOfRows = noOfRows;
+        this.noOfCols = noOfCols;
+        this.mode = mode;
+        this.horizon = horizon;
+        chanceOfValue = new double[Tablebase.NO_OF_VALUES];
+        for (int i = 0; i < chanceOfValue.length; i++)
+            chanceOfValue[i] = TileList.probabilityOfValue(2 << i, mode);
+        layers = new Layer[horizon];
+        for (int k = 0; k < horizon; k++)
+            layers[k] = new Layer();
+        field = new GridEngine(noOfRows, noOfCols);
+        afterPlacement = new GridEngine(noOfRows, noOfCols);
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        if (!Tablebase.fits(NO_ROW, NO_COL) || NO_ROW > ColumnTable.MAX_NO_TABLED_CELLS)
+            throw new IllegalArgumentException("no tablebase for a board of " + NO_ROW + "x" + NO_COL);
+        File file = new File(System.getProperty(Tablebase.FILE_PROPERTY, Tablebase.DEFAULT_PATH));
+        int mode = "hard".equalsIgnoreCase(System.getProperty(MODE_PROPERTY)) ? TileList.HARD_MODE : TileList.EASY_MODE;
+        int horizon = Math.max(1, Math.min(Integer.getInteger(HORIZON_PROPERTY, 6), (NO_ROW - 1) * NO_COL));
+        int noOfGames = Integer.getInteger(GAMES_PROPERTY, 2000);
+        Random randomer = new Random(Long.getLong(SEED_PROPERTY, System.currentTimeMillis()));
+        TablebaseBuilder builder = new TablebaseBuilder(NO_ROW, NO_COL, mode, horizon);
+
+        long startTime_ms = System.currentTimeMillis();
+        builder.collect(policy(), noOfGames, randomer);
+        System.out.println(builder.layers[0].size + " near-full fields collected from " + noOfGames + " games of "
+                           + TileList.MODE_NAMES[mode] + " mode in " + (System.currentTimeMillis() - startTime_ms) + "ms");
+        startTime_ms = System.currentTimeMillis();
+        builder.enumerate();
+        long noOfFields = 0;
+        for (int k = 0; k < horizon; k++)
+        {
+            System.out.println("layer " + k + ": " + builder.layers[k].size + " fields");
+            noOfFields += builder.layers[k].size;
+        }
+        System.out.println(noOfFields + " fields enumerated in " + (System.currentTimeMillis() - startTime_ms) + "ms");
+        startTime_ms = System.currentTimeMillis();
+        builder.solve();
+        System.out.println("solved in " + (System.currentTimeMillis() - startTime_ms) + "ms");
+        Tablebase tablebase = builder.write(file);
+        System.out.println("written " + file + ": " + tablebase.size() + " fields in " + tablebase.getCapacity()
+                           + " slots, " + builder.noOfRiskyFields() + " of them may lose within " + horizon + " placements");
+    }
+    //the n-tuple player, as the AI players play, see Tetris2048.createAI(..)
+    private static PlacementPolicy policy()
+    {
+        NTupleNetwork network;
+        try
+        {
+            network = NTupleNetwork.map(new File(System.getProperty(NTupleNetwork.WEIGHTS_PROPERTY,
+                                                 NTupleNetwork.DEFAULT_WEIGHTS_PATH)), NO_ROW, NO_COL, false);
+        }
+        catch (IOException ex)
+        {
+            Logger.getLogger(TablebaseBuilder.class.getName()).log(Level.WARNING, "the fields are collected by greedy play", ex);
+            network = NTupleNetwork.inMemory(NO_ROW, NO_COL);
+        }
+        return new NTuplePolicy(network, NO_ROW, NO_COL);
+    }
+
+    //**  steps of building  **//
+    //
+    //the near-full fields met before each placement, into layer 0
+    void collect(PlacementPolicy policy, int noOfGames, Random randomer)
+    {
+        GridEngine game = new GridEngine(noOfRows, noOfCols);
+        for (int i = 0; i < noOfGames; i++)
+        {
+            game.reset();
+            int value = TileList.randomValue(randomer, mode), nextValue = TileList.randomValue(randomer, mode);
+            while (!game.isLost())
+            {
+                if (noOfEmptyCells(game) < horizon)
+                    layers[0].add(Tablebase.keyOf(game));
+                game.place(policy.choosePlacement(game, value, nextValue, mode), value);
+                value = nextValue;
+                nextValue = TileList.randomValue(randomer, mode);
+            }
+        }
+    }
+    //the fields which may lose within the horizon, reachable from layer 0, into the layers after it
+    void enumerate()
+    {
+        for (int k = 0; k + 1 < horizon; k++)
+        {
+            Layer layer = layers[k];
+            for (int idx = 0; idx < layer.size; idx++)
+            {
+                Tablebase.setField(field, layer.keys[idx]);
+                for (int i = 0; i < Tablebase.NO_OF_VALUES; i++)
+                    for (int col = 0; col < noOfCols; col++)
+                    {
+                        afterPlacement.copyFrom(field);
+                        afterPlacement.place(col, 2 << i);
+                        if (!afterPlacement.isLost() && noOfEmptyCells(afterPlacement) < horizon - k - 1)
+                            layers[k + 1].add(Tablebase.keyOf(afterPlacement));
+                    }
+            }
+        }
+    }
+    //the worth of every field of every layer, from the last layer
+    void solve()
+    {
+        float[] survivalByCol = new float[noOfCols * Tablebase.NO_OF_VALUES]; //[col][value to come], of a value placed
+        for (int k = horizon - 1; k >= 0; k--)
+        {
+            Layer layer = layers[k], nextLayer = (k + 1 < horizon) ? layers[k + 1] : null;
+            layer.pairs = new int[layer.size * Tablebase.NO_OF_PAIRS];
+            for (int idx = 0; idx < layer.size; idx++)
+            {
+                Tablebase.setField(field, layer.keys[idx]);
+                for (int i = 0; i < Tablebase.NO_OF_VALUES; i++)
+                {
+                    //the chance to survive the field left by placing 2 << i in each column, for each next value
+                    for (int col = 0; col < noOfCols; col++)
+                    {
+                        afterPlacement.copyFrom(field);
+                        afterPlacement.place(col, 2 << i);
+                        int nextIdx = (afterPlacement.isLost() || nextLayer == null)
+                                      ? -1 : nextLayer.indexOf(Tablebase.keyOf(afterPlacement));
+                        for (int j = 0; j < Tablebase.NO_OF_VALUES; j++)
+                            survivalByCol[col * Tablebase.NO_OF_VALUES + j]
+                                    = afterPlacement.isLost() ? 0
+                                    : (nextIdx < 0) ? 1 : survivalAfter(nextLayer, nextIdx, j);
+                    }
+                    for (int j = 0; j < Tablebase.NO_OF_VALUES; j++)
+                        layer.pairs[idx * Tablebase.NO_OF_PAIRS + i * Tablebase.NO_OF_VALUES + j]
+                                = bestOf(survivalByCol, j);
+                }
+            }
+            if (nextLayer != null)
+                nextLayer.pairs = null; //not needed anymore
+        }
+    }
+    Tablebase write(File file) throws IOException
+    {
+        Layer layer = layers[0];
+        if (layer.size > Tablebase.MAX_CAPACITY)
+            throw new IllegalStateException(layer.size + " fields are more than a tablebase holds: " + Tablebase.MAX_CAPACITY);
+        Tablebase tablebase = Tablebase.create(file, noOfRows, noOfCols, mode, horizon,
+                                               (int) Math.min(2L * layer.size, Tablebase.MAX_CAPACITY));
+        int[] pairs = new int[Tablebase.NO_OF_PAIRS];
+        for (int idx = 0; idx < layer.size; idx++)
+        {
+            System.arraycopy(layer.pairs, idx * Tablebase.NO_OF_PAIRS, pairs, 0, Tablebase.NO_OF_PAIRS);
+            tablebase.put(layer.keys[idx], pairs);
+        }
+        tablebase.flush();
+        return tablebase;
+    }
+    //
+    //**  END of steps of building  **//
+
+    //the mean over the values to come of the worth of a field, when "2 << nextI" is to be placed
+    private float survivalAfter(Layer layer, int idx, int nextI)
+    {
+        float survival = 0;
+        for (int j = 0; j < Tablebase.NO_OF_VALUES; j++)
+            survival += chanceOfValue[j] * (layer.pairs[idx * Tablebase.NO_OF_PAIRS + nextI * Tablebase.NO_OF_VALUES + j]
+                                            & Tablebase.CERTAIN);
+        return survival / Tablebase.CERTAIN;
+    }
+    //packed as a pair of Tablebase, for the next value "2 << j". columns whose chances round the same are all best
+    private int bestOf(float[] survivalByCol, int j)
+    {
+        int best = 0, bestCols = 0;
+        for (int col = 0; col < noOfCols; col++)
+        {
+            int survival = Math.round(survivalByCol[col * Tablebase.NO_OF_VALUES + j] * Tablebase.CERTAIN);
+            if (survival > best)
+            {
+                best = survival;
+                bestCols = 0;
+            }
+            if (survival == best)
+                bestCols |= 1 << col;
+        }
+        return best | (bestCols << 16);
+    }
+    private int noOfRiskyFields()
+    {
+        int count = 0;
+        Layer layer = layers[0];
+        for (int idx = 0; idx < layer.size; idx++)
+            for (int pair = 0; pair < Tablebase.NO_OF_PAIRS; pair++)
+                if ((layer.pairs[idx * Tablebase.NO_OF_PAIRS + pair] & Tablebase.CERTAIN) != Tablebase.CERTAIN)
+                {
+                    count++;
+                    break;
+                }
+        return count;
+    }
+    private int noOfEmptyCells(GridEngine field)
+    {
+        int count = 0;
+        for (int col = 0; col < noOfCols; col++)
+            count += noOfRows - 1 - ColumnTable.heightOf(field.getColumn(col));
+        return count;
+    }
+
+    /**
+     * The fields of a layer, in the order added, with an open-addressed index of their keys.
+     * Keys are never 0, as the empty field is never near-full.
+     */
+    private static class Layer
+    {
+        long[] keys = new long[1024];
+        int size;
+        int[] pairs;                        //NO_OF_PAIRS per field, once solved
+        private int[] index = new int[4096];   //idx + 1 of the keys, 0 if free
+
+        void add(long key)
+        {
+            if (indexOf(key) >= 0)
+                return;
+            if (size == keys.length)
+                keys = Arrays.copyOf(keys, 2 * size);
+            keys[size++] = key;
+            if (2 * size > index.length)
+                rehash();
+            else
+                insert(size - 1);
+        }
+        int indexOf(long key)
+        {
+            int mask = index.length - 1;
+            for (int slot = hash(key) & mask; index[slot] != 0; slot = (slot + 1) & mask)
+                if (keys[index[slot] - 1] == key)
+                    return index[slot] - 1;
+            return -1;
+        }
+        private void insert(int idx)
+        {
+            int mask = index.length - 1;
+            int slot = hash(keys[idx]) & mask;
+            while (index[slot] != 0)
+                slot = (slot + 1) & mask;
+            index[slot] = idx + 1;
+        }
+        private void rehash()
+        {
+            index = new int[2 * index.length];
+            for (int idx = 0; idx < size; idx++)
+                insert(idx);
+        }
+        private static int hash(long key)
+        {
+            return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package Tetris2048;
+
+/**
+ * Plays the placements of a near-full field by a Tablebase, & any other by another policy.
+ *
+ * The other policy still chooses among the columns which the table tells are best, so that its way of play
+ * is kept wherever the table cannot tell the columns apart, e.g. when every column is sure to survive.
+ * The table is only looked up in a mode it is solved for.
+ *
+ * @author ILoveIdunna
+ */
+class TablebasePolicy implements PlacementPolicy
+{
+    private final Tablebase tablebase;
+    private final PlacementPolicy otherPolicy;
+    private long noOfProbes, noOfHits, noOfOverrides;
+
+    TablebasePolicy(Tablebase tablebase, PlacementPolicy otherPolicy)
+    {
+        this.tablebase = tablebase;
+        this.otherPolicy = otherPolicy;
+    }
+
+    @Override
+    public int choosePlacement(GridEngine field, int value, int nextValue, int mode)
+    {
+        int col = otherPolicy.choosePlacement(field, value, nextValue, mode);
+        if (!tablebase.isSolvedFor(mode))
+            return col;
+        noOfProbes++;
+        int slot = tablebase.slotOf(field);
+        if (slot < 0)
+            return col;
+        noOfHits++;
+        int bestCols = tablebase.bestColsAt(slot, value, nextValue);
+        if ((bestCols & (1 << col)) != 0)
+            return col;
+        noOfOverrides++;
+        return Integer.numberOfTrailingZeros(bestCols);
+    }
+    public long getNoOfProbes() { return noOfProbes; }
+    public long getNoOfHits() { return noOfHits; }
+    //placements of the other policy replaced by the table
+    public long getNoOfOverrides() { return noOfOverrides; }
+}
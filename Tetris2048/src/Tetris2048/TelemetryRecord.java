@@ -0,0 +1,118 @@
+/**
+ *
+ *
+ * As a data container.
+ *
+ * One line of telemetry: either a tile placement or a finished game.
+ * Filled by GameRecorder on the game loop, then encoded by TelemetryWriter
+ * on its own thread, either as one NDJSON line or as one binary record.
+ *
+ * Binary layout, big-endian as of DataOutputStream:
+ *   PLACEMENT  byte type, long seed, int gameNo, int placementNo, byte mode, int value, int nextValue,
+ *              byte column, int merges, int scoreDelta, long duration_ms
+ *   GAME       byte type, long seed, int gameNo, byte mode, byte won, int score, int merges, long duration_ms,
+ *              int n, byte[n] values (log2 of each tile value, in spawn order),
+ *              int m, byte[m] columns (of each placement, in order)
+ *
+ */
+package Tetris2048;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ *
+ * @author ILoveIdunna
+ */
+class TelemetryRecord
+{
+    static final byte PLACEMENT = 1;
+    static final byte GAME = 2;
+
+    final byte type;
+    long seed;              //of the Random which generates the values of tiles in this game
+    int gameNo;
+    int mode;               //as of the placement, or the start of the game
+    long duration_ms;       //since the last placement, or the start of the game
+    int merges;             //since the last placement, or in the whole game
+    //**PLACEMENT only
+    int placementNo, value, nextValue, column, scoreDelta;
+    //**GAME only
+    boolean won;
+    int score;
+    int[] values;           //values of the tiles in spawn order
+    int noOfValues;
+    int[] columns;          //columns chosen in placement order
+    int noOfColumns;
+
+    TelemetryRecord(byte type) { this.type = type; }
+
+    void appendJson(StringBuilder json)
+    {
+        json.append("{\"type\":\"").append((type == PLACEMENT) ? "placement" : "game").append('"')
+            .append(",\"seed\":").append(seed)
+            .append(",\"game\":").append(gameNo)
+            .append(",\"mode\":\"").append(TileList.MODE_NAMES[mode].toLowerCase()).append('"');
+        if (type == PLACEMENT)
+        {
+            json.append(",\"placement\":").append(placementNo)
+                .append(",\"value\":").append(value)
+                .append(",\"nextValue\":").append(nextValue)
+                .append(",\"column\":").append(column)
+                .append(",\"scoreDelta\":").append(scoreDelta);
+        }
+        else
+        {
+            json.append(",\"won\":").append(won)
+                .append(",\"score\":").append(score);
+            appendJsonArray(json, "values", values, noOfValues);
+            appendJsonArray(json, "columns", columns, noOfColumns);
+        }
+        json.append(",\"merges\":").append(merges)
+            .append(",\"durationMs\":").append(duration_ms)
+            .append("}\n");
+    }
+    private static void appendJsonArray(StringBuilder json, String name, int[] array, int length)
+    {
+        json.append(",\"").append(name).append("\":[");
+        for (int i = 0; i < length; i++)
+        {
+            if (i > 0)
+                json.append(',');
+            json.append(array[i]);
+        }
+        json.append(']');
+    }
+
+    void writeBinary(DataOutputStream out) throws IOException
+    {
+        out.writeByte(type);
+        out.writeLong(seed);
+        out.writeInt(gameNo);
+        if (type == PLACEMENT)
+        {
+            out.writeInt(placementNo);
+            out.writeByte(mode);
+            out.writeInt(value);
+            out.writeInt(nextValue);
+            out.writeByte(column);
+            out.writeInt(merges);
+            out.writeInt(scoreDelta);
+            out.writeLong(duration_ms);
+        }
+        else
+        {
+            out.writeByte(mode);
+            out.writeByte(won ? 1 : 0);
+            out.writeInt(score);
+            out.writeInt(merges);
+            out.writeLong(duration_ms);
+            out.writeInt(noOfValues);
+            for (int i = 0; i < noOfValues; i++)
+                out.writeByte(Integer.numberOfTrailingZeros(values[i])); //values are powers of 2
+            out.writeInt(noOfColumns);
+            for (int i = 0; i < noOfColumns; i++)
+                out.writeByte(columns[i]);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package Tetris2048;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Writes TelemetryRecord objs to a file on its own thread, so that the game loop never waits for I/O.
+ *
+ * Records are handed over through a bounded queue. offer(..) never blocks;
+ * a record offered while the queue is full is dropped & counted.
+ * The writer takes whatever is queued, up to BATCH_SIZE records, & writes them with one flush.
+ *
+ * @author ILoveIdunna
+ */
+class TelemetryWriter extends Thread
+{
+    static final String FILE_PROPERTY = "tetris2048.telemetry.file";             //telemetry is off if not set
+    static final String FORMAT_PROPERTY = "tetris2048.telemetry.format";         //"ndjson"(default) or "binary"
+    static final String PLACEMENTS_PROPERTY = "tetris2048.telemetry.placements"; //"true" to record every placement
+    static final int NDJSON = 0, BINARY = 1;
+    static final int DEFAULT_CAPACITY = 1024;
+    private static final int BATCH_SIZE = 64;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final ArrayBlockingQueue<TelemetryRecord> queue;
+    private final OutputStream out;
+    private final DataOutputStream binaryOut;
+    private final int format;
+    private final AtomicLong noOfDroppedRecords;
+    private volatile boolean closing;
+
+    TelemetryWriter(String filePath, int format, int capacity) throws IOException
+    {
+        super("Tetris2048-telemetry");
+        setDaemon(true);
+        this.format = format;
+        queue = new ArrayBlockingQueue<TelemetryRecord>(capacity);
+        out = new BufferedOutputStream(new FileOutputStream(filePath, true), 1 << 16); //appended to, across runs
+        binaryOut = new DataOutputStream(out);
+        noOfDroppedRecords = new AtomicLong();
+    }
+
+    /**
+     * @return  a started writer as asked by the system properties, or null if telemetry is off
+     */
+    static TelemetryWriter fromSystemProperties()
+    {
+        String filePath = System.getProperty(FILE_PROPERTY);
+        if (filePath == null)
+            return null;
+        int format = "binary".equalsIgnoreCase(System.getProperty(FORMAT_PROPERTY)) ? BINARY : NDJSON;
+        try
+        {
+            final TelemetryWriter writer = new TelemetryWriter(filePath, format, DEFAULT_CAPACITY);
+            writer.start();
+            Runtime.getRuntime().addShutdownHook(new Thread() {
+                @Override
+                public void run() { writer.close(); }
+            });
+            return writer;
+        }
+        catch (IOException ex)
+        {
+            Logger.getLogger(TelemetryWriter.class.getName()).log(Level.WARNING, null, ex);
+            return null;
+        }
+    }
+
+    /**
+     * May be called by any thread. never blocks.
+     * @return  false if the queue is full & the record is dropped
+     */
+    public boolean offer(TelemetryRecord record)
+    {
+        if (queue.offer(record))
+            return true;
+        noOfDroppedRecords.incrementAndGet();
+        return false;
+    }
+    public long getNoOfDroppedRecords() { return noOfDroppedRecords.get(); }
+
+    @Override
+    public void run()
+    {
+        ArrayList<TelemetryRecord> batch = new ArrayList<TelemetryRecord>(BATCH_SIZE);
+        StringBuilder json = new StringBuilder(4096);
+        try
+        {
+            while (!closing)
+            {
+                TelemetryRecord first = queue.take();
+                batch.add(first);
+                queue.drainTo(batch, BATCH_SIZE - 1);
+                writeBatch(batch, json);
+                batch.clear();
+            }
+        }
+        catch (InterruptedException ex)
+        {
+            //interrupted by close(). whatever still queued is written there
+        }
+        catch (IOException ex)
+        {
+            Logger.getLogger(TelemetryWriter.class.getName()).log(Level.WARNING, null, ex);
+        }
+    }
+    private void writeBatch(ArrayList<TelemetryRecord> batch, StringBuilder json) throws IOException
+    {
+        if (format == BINARY)
+        {
+            for (TelemetryRecord record : batch)
+                record.writeBinary(binaryOut);
+        }
+        else
+        {
+            json.setLength(0);
+            for (TelemetryRecord record : batch)
+                record.appendJson(json);
+            out.write(json.toString().getBytes(UTF8));
+        }
+        out.flush();
+    }
+
+    /**
+     * Stops the writer, then writes out the records still queued.
+     */
+    public void close()
+    {
+        closing = true;
+        interrupt();
+        try
+        {
+            join(1000);
+            if (isAlive()) //still stuck in I/O. the rest is given up rather than written by 2 threads
+                return;
+            ArrayList<TelemetryRecord> rest = new ArrayList<TelemetryRecord>(queue.size());
+            queue.drainTo(rest);
+            writeBatch(rest, new StringBuilder());
+            out.close();
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+        catch (IOException ex)
+        {
+            Logger.getLogger(TelemetryWriter.class.getName()).log(Level.WARNING, null, ex);
+        }
+    }
+}
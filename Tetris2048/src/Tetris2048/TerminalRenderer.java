@@ -0,0 +1,185 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package Tetris2048;
+
+import static Tetris2048.GameFieldData.*;
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * Draws snapshots as text on an ANSI terminal, e.g. to watch the AI over SSH.
+ *
+ * The frame, i.e. borders & labels, is drawn once. Afterwards, only the cells whose content
+ * changed since the last frame are rewritten, each by moving the cursor to it first.
+ * Moving tiles are shown in the grid they are mostly laying over.
+ * The cursor is hidden while drawing, & shown again by close(), which a shutdown hook runs, e.g. on Ctrl-C.
+ *
+ *     EASY     AI
+ *     score       28   best      512
+ *     next         4   time    01:23
+ *    +------+------+------+------+
+ *    |     2|      |      |      |     <- the row where new tiles are created
+ *    ...
+ *    +------+------+------+------+
+ *
+ * @author ILoveIdunna
+ */
+class TerminalRenderer implements SnapshotRenderer
+{
+    static final String FPS_PROPERTY = "tetris2048.terminal.fps"; //frames per second drawn on the terminal
+    static final int DEFAULT_FPS = 10;
+
+    private static final String ESC = "\u001b[";
+    private static final int CELL_WIDTH = 6;
+    private static final int BOARD_LINE = 4;    //the line of the upper border, counted from 1
+    private static final int HUD_VALUE_WIDTH = 8;
+    //**HUD fields, each drawn at the line & column below
+    private static final int MODE = 0, AI = 1, CURR_SCORE = 2, BEST_SCORE = 3, NEXT_VALUE = 4, DURATION = 5, NO_HUD_FIELDS = 6;
+    private static final int[] HUD_LINES = {1, 1, 2, 2, 3, 3};
+    private static final int[] HUD_COLS = {2, 11, 8, 27, 8, 27};
+
+    private final PrintStream out;
+    private final StringBuilder frame; //all escape sequences of one frame, written in one go
+    private final int[] cellValues, lastCellValues; //0 for an empty cell, by row * NO_COL + col
+    private final int[] hudValues, lastHudValues;
+    private boolean frameDrawn;
+
+    TerminalRenderer(PrintStream out)
+    {
+        this.out = out;
+        frame = new StringBuilder(1024);
+        cellValues = new int[NO_ROW * NO_COL];
+        lastCellValues = new int[NO_ROW * NO_COL];
+        hudValues = new int[NO_HUD_FIELDS];
+        lastHudValues = new int[NO_HUD_FIELDS];
+        Runtime.getRuntime().addShutdownHook(new Thread("Tetris2048-terminal") {
+            @Override
+            public void run() { close(); }
+        });
+    }
+
+    @Override
+    public void render(BoardSnapshot snapshot)
+    {
+        frame.setLength(0);
+        if (!frameDrawn)
+        {
+            drawFrame();
+            Arrays.fill(lastCellValues, -1); //so that every cell is drawn once
+            Arrays.fill(lastHudValues, -1);
+            frameDrawn = true;
+        }
+
+        Arrays.fill(cellValues, 0);
+        for (int i = 0; i < snapshot.getNoOfTiles(); i++) //the latest tile is the last, so it wins a shared grid
+        {
+            int row = Math.round((snapshot.getTileTop(i) - NEW_TILE_TOP) / (float) GRID_SIZE),
+                col = Math.round((snapshot.getTileLeft(i) - LEFT_BOUNDARY) / (float) GRID_SIZE);
+            if (row >= 0 && row < NO_ROW && col >= 0 && col < NO_COL)
+                cellValues[row * NO_COL + col] = snapshot.getTileValue(i);
+        }
+        for (int i = 0; i < cellValues.length; i++)
+            if (cellValues[i] != lastCellValues[i])
+            {
+                moveTo(BOARD_LINE + 1 + i / NO_COL, 2 + (i % NO_COL) * (CELL_WIDTH + 1));
+                pad((cellValues[i] == 0) ? "" : String.valueOf(cellValues[i]), CELL_WIDTH, true);
+                lastCellValues[i] = cellValues[i];
+            }
+
+        hudValues[MODE] = snapshot.getMode();
+        hudValues[AI] = (snapshot.isAiOn() ? 1 : 0) + (snapshot.isPaused() ? 2 : 0);
+        hudValues[CURR_SCORE] = snapshot.getCurrScore();
+        hudValues[BEST_SCORE] = snapshot.getBestScore();
+        hudValues[NEXT_VALUE] = snapshot.getNextValue();
+        hudValues[DURATION] = (int) (snapshot.getGameDuration() / 1000);
+        for (int i = 0; i < NO_HUD_FIELDS; i++)
+            if (hudValues[i] != lastHudValues[i])
+            {
+                moveTo(HUD_LINES[i], HUD_COLS[i]);
+                pad(hudText(i, hudValues[i]), HUD_VALUE_WIDTH, i != MODE && i != AI);
+                lastHudValues[i] = hudValues[i];
+            }
+
+        if (frame.length() > 0)
+        {
+            moveTo(BOARD_LINE + NO_ROW + 2, 1); //park the cursor below the board
+            out.print(frame);
+            out.flush();
+        }
+    }
+
+    //shows the cursor again, below the board
+    public void close()
+    {
+        out.print(ESC + (BOARD_LINE + NO_ROW + 2) + ";1H" + ESC + "?25h");
+        out.flush();
+    }
+
+    private String hudText(int field, int value)
+    {
+        switch (field)
+        {
+            case MODE:
+                return TileList.MODE_NAMES[value];
+            case AI:
+                return ((value & 1) != 0 ? "AI" : "") + ((value & 2) != 0 ? " paused" : "");
+            case DURATION:
+                return String.format("%02d:%02d", value / 60, value % 60);
+            default:
+                return String.valueOf(value);
+        }
+    }
+
+    private void drawFrame()
+    {
+        frame.append(ESC).append("?25l") //hide the cursor
+             .append(ESC).append("2J");  //clear the screen
+        moveTo(HUD_LINES[CURR_SCORE], 2);
+        frame.append("score");
+        moveTo(HUD_LINES[BEST_SCORE], HUD_COLS[BEST_SCORE] - 6);
+        frame.append("best");
+        moveTo(HUD_LINES[NEXT_VALUE], 2);
+        frame.append("next");
+        moveTo(HUD_LINES[DURATION], HUD_COLS[DURATION] - 6);
+        frame.append("time");
+
+        StringBuilder border = new StringBuilder("+"), row = new StringBuilder("|");
+        for (int col = 0; col < NO_COL; col++)
+        {
+            for (int i = 0; i < CELL_WIDTH; i++)
+            {
+                border.append('-');
+                row.append(' ');
+            }
+            border.append('+');
+            row.append('|');
+        }
+        moveTo(BOARD_LINE, 1);
+        frame.append(border);
+        for (int i = 1; i <= NO_ROW; i++)
+        {
+            moveTo(BOARD_LINE + i, 1);
+            frame.append(row);
+        }
+        moveTo(BOARD_LINE + NO_ROW + 1, 1);
+        frame.append(border);
+    }
+
+    //cursor-addressing. line & col are counted from 1
+    private void moveTo(int line, int col)
+    {
+        frame.append(ESC).append(line).append(';').append(col).append('H');
+    }
+    private void pad(String text, int width, boolean alignRight)
+    {
+        if (!alignRight)
+            frame.append(text);
+        for (int i = text.length(); i < width; i++)
+            frame.append(' ');
+        if (alignRight)
+            frame.append(text);
+    }
+}
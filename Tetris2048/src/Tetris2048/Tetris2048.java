@@ -110,13 +110,17 @@ package Tetris2048;
 import static Tetris2048.GameFieldData.*;
 import game.v2.Console;
 import game.v2.Game;
+import java.awt.AWTEvent;
 import java.awt.Color;
-import java.awt.Font;
+import java.awt.Toolkit;
+import java.awt.event.AWTEventListener;
+import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
 import java.awt.event.MouseEvent;
+import java.awt.event.WindowEvent;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.sql.Time;
 import java.util.Calendar;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -132,13 +136,43 @@ public class Tetris2048 extends Game {
 
     private static TileList tileList;
     private static Scorer scorer;
-    private static AIPlayer ai;
+    private static GameAI ai;
     private static boolean aiOn;
     private static boolean paused;
+    private static boolean autoPaused; //true when paused because the window lost focus
+    private static boolean profilerOn; //toggled by key 'P'. see FrameProfiler
     private static Calendar lastCycleTime;
-    private static Time gameDuration;
     private static long gameDuration_milliSec = 0;
     private static Sound bgm, soundEffect;
+    private static final CommandQueue commandQueue = new CommandQueue(CommandQueue.DEFAULT_CAPACITY);
+                                    //keyPressed(..) runs on the AWT event thread while cycle() runs on the game loop.
+                                    //all commands are queued here & handled at the beginning of cycle()
+                                    //so that the game state has one single writer, the game loop.
+    private static final SnapshotRing snapshotRing = new SnapshotRing();
+                                    //at the end of each cycle(), the game state is published here
+                                    //for the render thread to draw
+    private static long tickNo;
+    private static final InputLatencyTracker latencyTracker = new InputLatencyTracker();
+    private static final long FRAME_BUDGET_NS = 1000000000L / FPS;
+    //**commands other than key codes. see CommandQueue
+    private static final int FOCUS_LOST = -2, FOCUS_GAINED = -3;
+    private RenderLoop renderLoop;
+    private volatile GameLoop gameLoop; //woken up by keyPressed(..) on the AWT event thread
+    private DrawSurface surface;
+    static final String RENDERER_PROPERTY = "tetris2048.renderer";     //"console"(default), "canvas" or "terminal"
+    static final String AI_PROPERTY = "tetris2048.ai";                 //"true" to start with AI on
+    static final String AI_PLAYER_PROPERTY = "tetris2048.ai.player";   //"rules"(default) for AIPlayer,
+                                                                        //"ntuple" for a player by NTupleNetwork,
+                                                                        //"expectimax" for one searching by it
+    static final String AUTO_RETRY_PROPERTY = "tetris2048.autoRetry";  //"true" to retry without asking
+    private static final boolean headless = "terminal".equalsIgnoreCase(System.getProperty(RENDERER_PROPERTY));
+                                    //drawn on the terminal by TerminalRenderer. no window & no dialog is shown
+    static final String RENDER_FPS_PROPERTY = "tetris2048.render.fps"; //frame rate of the render thread. FPS by default
+    static final String CLOCK_PROPERTY = "tetris2048.clock";           //"virtual" to step the game as fast as it runs,
+                                    //e.g. for AI runs with -Dtetris2048.renderer=terminal, each update() being 1/FPS s of game time
+    private static long startTime_ns, startClock_ms;    //of the 1st game, to tell game time from wall time
+    private static int noOfGamesEnded;
+    private static long lastAiTime_ns, lastUpdateTime_ns; //costs of the current tick, published with its snapshot
     /*
      Main method
      */
@@ -149,12 +183,18 @@ public class Tetris2048 extends Game {
             soundEffect.setSong(SOUND_EFFECT_NAME, Sound.SOUND_EFFECT);
             scorer = new Scorer(soundEffect);
             tileList = new TileList(TileList.EASY_MODE, scorer);
-            ai = new AIPlayer(tileList);        
-            JOptionPane.showMessageDialog(null, "Press 'E' and 'H' to switch between easy and hard modes.\n"
-                            + "Press 'A' to turn on or off AI mode.\n"
-                            + "The victory condition is creating a tile with value 2048~\n"
-                            + "Please Enjoy this game ~ :)", "Tetris2048", JOptionPane.INFORMATION_MESSAGE);
-            gameDuration = new Time(0);
+            if ("virtual".equalsIgnoreCase(System.getProperty(CLOCK_PROPERTY)))
+                tileList.setClock(GameClock.virtual(System.currentTimeMillis()));
+            startTime_ns = System.nanoTime();
+            startClock_ms = tileList.getClock().now_ms();
+            ai = createAI(tileList);
+            aiOn = Boolean.getBoolean(AI_PROPERTY);
+            if (!headless)
+                JOptionPane.showMessageDialog(null, "Press 'E', 'H' and 'U' to switch between easy, hard and hyper modes.\n"
+                                + "Press 'A' to turn on or off AI mode.\n"
+                                + "Press 'P' to show or hide the frame profiler.\n"
+                                + "The victory condition is creating a tile with value 2048~\n"
+                                + "Please Enjoy this game ~ :)", "Tetris2048", JOptionPane.INFORMATION_MESSAGE);
             bgm = new Sound();
 //            if (bgm.setSong(BGM_RELATIVE_PATH, Sound.BGM)) {
             if (bgm.setSong(BGM_NAME, Sound.BGM)) {
@@ -167,28 +207,172 @@ public class Tetris2048 extends Game {
         } 
         
         
-        //This is to set the beginning values
-//        tileList.nextValueListOn(new int[]{2,4,8,2,8,2});
+        GameMetrics.REGISTRY.gauge("input.dropped", new MetricsRegistry.Gauge() { //dropped by a full queue
+            @Override
+            public long getValue() { return commandQueue.getNoOfRejectedOffers(); }
+        });
+        GameMetrics.startExporting();
+        GameRecorder recorder = GameRecorder.fromSystemProperties(); //null unless -Dtetris2048.telemetry.file is set
+        if (recorder != null)
+            tileList.setRecorder(recorder);
+        
+        //This is to set the beginning values, e.g. by -Dtetris2048.scenario=chain-merge, see Scenario.
+        //the game starts on an empty board, whatever the board of the scenario
+        Scenario scenario = Scenario.fromSystemProperties();
+        if (scenario != null && scenario.getTiles().length > 0)
+        {
+            if (scenario.hasBoard())
+                Logger.getLogger(Tetris2048.class.getName()).log(Level.WARNING,
+                        "the board of scenario {0} is played by ScenarioSuite only", scenario.getName());
+            tileList.setMode(scenario.getMode());
+            tileList.nextValueListOn(scenario.getTiles());
+        }
         
         /*
          Customize the console window per your need but do not show it yet.
          */
         Console.getInstance()
                 .setTitle("Tetris 2048")
-                .setWidth(450)
-                .setHeight(700)
+                .setWidth(WINDOW_WIDTH)   //450 x 700 as of the default board
+                .setHeight(WINDOW_HEIGHT)
                 .setTheme(Console.Theme.LIGHT);
 
         /*
          Similar to the Console class, use the chaining setters to configure the game. Call start() at the end of
          the chain to start the game loop.
+         start() is overridden below, so that only the setters of Game are used.
          */
         new Tetris2048()
                 .setFps(FPS) // set frame rate
                 .setShowFps(true) // set to display fps on screen
-                .setBackground(Console.loadImage(BOARD_IMG_RELATIVE_PATH)) // set background image
+                .setBackground(DEFAULT_GEOMETRY ? Console.loadImage(BOARD_IMG_RELATIVE_PATH) : null) // set background image,
+                                                                        // which fits the default board only
                 .start();                                               // start game loop
     }
+    //the n-tuple player maps its weights file, see NTupleNetwork. without the file, it plays greedily
+    private static GameAI createAI(TileList tileList)
+    {
+        String player = System.getProperty(AI_PLAYER_PROPERTY);
+        if (!"ntuple".equalsIgnoreCase(player) && !"expectimax".equalsIgnoreCase(player))
+            return new AIPlayer(tileList);
+        if (NO_ROW > ColumnTable.MAX_NO_TABLED_CELLS)
+        {
+            Logger.getLogger(Tetris2048.class.getName()).log(Level.WARNING,
+                    "no n-tuple network for {0} rows, AIPlayer is used instead", NO_ROW);
+            return new AIPlayer(tileList);
+        }
+        NTupleNetwork network = null;
+        File weightsFile = new File(System.getProperty(NTupleNetwork.WEIGHTS_PROPERTY, NTupleNetwork.DEFAULT_WEIGHTS_PATH));
+        try
+        {
+            network = NTupleNetwork.map(weightsFile, NO_ROW, NO_COL, false);
+        }
+        catch (IOException ex)
+        {
+            Logger.getLogger(Tetris2048.class.getName()).log(Level.WARNING, "no weights file for the n-tuple network", ex);
+        }
+        PlacementPolicy policy;
+        if ("expectimax".equalsIgnoreCase(player))
+            policy = expectimaxPolicy(network);
+        else
+            policy = new NTuplePolicy((network != null) ? network : NTupleNetwork.inMemory(NO_ROW, NO_COL), //greedy
+                                      NO_ROW, NO_COL);
+        //the endgame is played by the tablebase, if one is built, see TablebaseBuilder
+        File tablebaseFile = new File(System.getProperty(Tablebase.FILE_PROPERTY, Tablebase.DEFAULT_PATH));
+        if (tablebaseFile.exists())
+        {
+            try
+            {
+                Tablebase tablebase = Tablebase.map(tablebaseFile);
+                if (tablebase.getNoOfRows() == NO_ROW && tablebase.getNoOfCols() == NO_COL)
+                    policy = new TablebasePolicy(tablebase, policy);
+            }
+            catch (IOException ex)
+            {
+                Logger.getLogger(Tetris2048.class.getName()).log(Level.WARNING, "the endgame is played without tablebase", ex);
+            }
+        }
+        return new PlacementAIPlayer(tileList, policy);
+    }
+    //searched on a pool of threads sharing a transposition table, whose counts are exported by GameMetrics.
+    //without a network, the fields are evaluated by BoardEvaluator
+    private static PlacementPolicy expectimaxPolicy(NTupleNetwork network)
+    {
+        TranspositionTable table = TranspositionTable.fromSystemProperties();
+        table.register(GameMetrics.REGISTRY);
+        int depth = Integer.getInteger(ExpectimaxPolicy.DEPTH_PROPERTY, ExpectimaxPolicy.DEFAULT_DEPTH);
+        int noOfThreads = Integer.getInteger(ExpectimaxPolicy.THREADS_PROPERTY, Runtime.getRuntime().availableProcessors());
+        if (network != null || !Tablebase.fits(NO_ROW, NO_COL))
+            return new ExpectimaxPolicy((network != null) ? network : NTupleNetwork.inMemory(NO_ROW, NO_COL),
+                                        table, NO_ROW, NO_COL, depth, noOfThreads);
+        return new ExpectimaxPolicy(new BoardEvaluator(NO_ROW, NO_COL), table, NO_ROW, NO_COL, depth, noOfThreads);
+    }
+
+    /**
+     * Replacing the one of Game, which hands keys to keyPressed(..) & runs the loop of Game.
+     * Here keys are handed over to keyPressed(..) by a listener of our own,
+     * & run() below is started on a thread of our own. Hence, nothing in the loop depends on Game.
+     * The window is the one of Console, configured in main(..), or a BufferStrategy canvas of the same size.
+     */
+    @Override
+    public void start() {
+        if (headless) {
+            new Thread(this, "Tetris2048-game").start();
+            return;
+        }
+        Console consoleConfig = Console.getInstance();
+        if ("canvas".equalsIgnoreCase(System.getProperty(RENDERER_PROPERTY)))
+            surface = new CanvasSurface(consoleConfig.getTitle(), consoleConfig.getWidth(), consoleConfig.getHeight(),
+                                        Color.WHITE);
+        else
+            surface = new ConsoleSurface(consoleConfig);
+        surface.show();
+        surface.addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) { Tetris2048.this.keyPressed(e); }
+        });
+        //pause when another application takes the focus, so that the loops can idle.
+        //focus moving to a dialog of this game is not counted, as the opposite window is then ours
+        Toolkit.getDefaultToolkit().addAWTEventListener(new AWTEventListener() {
+            @Override
+            public void eventDispatched(AWTEvent event) {
+                WindowEvent e = (WindowEvent) event;
+                if (e.getOppositeWindow() != null)
+                    return;
+                if (e.getID() == WindowEvent.WINDOW_LOST_FOCUS)
+                    offerCommand(FOCUS_LOST);
+                else if (e.getID() == WindowEvent.WINDOW_GAINED_FOCUS)
+                    offerCommand(FOCUS_GAINED);
+            }
+        }, AWTEvent.WINDOW_FOCUS_EVENT_MASK);
+        new Thread(this, "Tetris2048-game").start();
+    }
+
+    /**
+     * The game loop, replacing the one of Game, which draws & simulates in turn.
+     * Here the game loop simulates only. Drawing is done by the render thread out of
+     * the snapshots published by cycle(), so that a slow frame never delays the simulation.
+     * Both loops are paced by GameLoop.
+     */
+    @Override
+    public void run() {
+        if (headless)   //the terminal is refreshed at a rate of its own, far below FPS
+            renderLoop = new RenderLoop(snapshotRing, new TerminalRenderer(System.out),
+                                    Integer.getInteger(TerminalRenderer.FPS_PROPERTY, TerminalRenderer.DEFAULT_FPS),
+                                    latencyTracker, GameMetrics.RENDER_TIME, GameMetrics.RENDER_JITTER);
+        else
+            renderLoop = new RenderLoop(snapshotRing, new BoardRenderer(surface, getBackground(), isShowFps()),
+                                    Integer.getInteger(RENDER_FPS_PROPERTY, getFps()), latencyTracker,
+                                    GameMetrics.RENDER_TIME, GameMetrics.RENDER_JITTER);
+        renderLoop.start();
+        
+        gameLoop = new GameLoop(getFps(), new Runnable() {
+            @Override
+            public void run() { cycle(); }
+        }, GameMetrics.LOOP_JITTER);
+        gameLoop.setUnpaced(tileList.getClock().isVirtual());
+        gameLoop.run();
+    }
 
     /**
      * **********************************************************************************************
@@ -198,20 +382,28 @@ public class Tetris2048 extends Game {
      */
     @Override
     protected void cycle() {
+        long simulationStartTime_ns = System.nanoTime(), aiTime_ns = 0, updateStartTime_ns;
+        latencyTracker.checkIfReadyForNewPplMv(tileList.getLatestTile().readyForNewPplMv(), simulationStartTime_ns);
+        handleCommands();
         if (aiOn)
         {
-            console.drawText((int)(LEFT_BOUNDARY + GRID_SIZE * 1.6), NEW_TILE_TOP + 22,
-                            "AI on", new Font(null,2,26), Color.yellow);
             if (!paused)
             {
+                long aiStartTime_ns = System.nanoTime();
                 int input = ai.getAINextInput();
                 if (input > 0)
                     if (moveTile(input))
                         ai.nextInputTaken();
+                aiTime_ns = System.nanoTime() - aiStartTime_ns;
+                GameMetrics.AI_TIME.record(aiTime_ns);
             }
         }
         
-        tileList.updateAndDisplay();
+        updateStartTime_ns = System.nanoTime();
+        tileList.update();
+        lastUpdateTime_ns = System.nanoTime() - updateStartTime_ns;
+        GameMetrics.SIMULATION_TIME.record(System.nanoTime() - simulationStartTime_ns - aiTime_ns);
+        GameMetrics.TILES_ON_BOARD.lazySet(tileList.getNoOfTiles());
         if (tileList.getHighestValue() >= 2048)
         {
             showWinMsg();   
@@ -221,32 +413,97 @@ public class Tetris2048 extends Game {
             showLoseMsg();   
         }
         
-        scorer.displayScores();
         handleGameDuration();
                 
-        lastCycleTime = Calendar.getInstance();
+        lastCycleTime = gameTime();
+        lastAiTime_ns = aiTime_ns;
+        publishSnapshot();
+        recordIfOverrun(System.nanoTime() - simulationStartTime_ns, aiTime_ns);
+        //nothing moves while paused. tick rarely until a command comes
+        if (gameLoop != null)
+            gameLoop.setIdle(paused);
+    }
+    
+    private void recordIfOverrun(long frameTime_ns, long aiTime_ns)
+    {
+        if (frameTime_ns <= FRAME_BUDGET_NS)
+            return;
+        FlightEvents.FrameOverrun event = new FlightEvents.FrameOverrun();
+        if (event.shouldCommit())
+        {
+            event.loop = "game";
+            event.frameTime = frameTime_ns;
+            event.budget = FRAME_BUDGET_NS;
+            event.aiTime = aiTime_ns;
+            event.noOfTiles = tileList.getNoOfTiles();
+            event.commit();
+        }
     }
     
     @Override
     protected void keyPressed(KeyEvent e) {
-        int keyCode = e.getKeyCode();
+        //hand the key over to the game loop only.
+        //a key pressed while the queue is full is dropped, as if it were pressed too fast
+        offerCommand(e.getKeyCode());
+    }
+    private void offerCommand(int command) {
+        commandQueue.offer(command, System.nanoTime());
+        GameLoop loop = gameLoop;
+        if (loop != null)
+            loop.wakeUp(); //an idle game loop handles the command at once
+    }
+    
+    @Override
+    protected void mouseClicked(MouseEvent e) {
+    }
+ 
+    //called at the beginning of each cycle() to apply the commands queued since the last cycle()
+    private void handleCommands()
+    {
+        int keyCode;
+        for (int i = 0; i < commandQueue.getCapacity(); i++) //at most one queue of commands per cycle
+        {
+            keyCode = commandQueue.poll();
+            if (keyCode == CommandQueue.EMPTY)
+                return;
+            handleKey(keyCode, commandQueue.getLastPolledOfferTime());
+        }
+    }
+    private void handleKey(int keyCode, long arrivalTime_ns)
+    {
         if (keyCode == KeyEvent.VK_A)
             aiOn = !aiOn;
+        if (keyCode == KeyEvent.VK_P)
+            profilerOn = !profilerOn;
+        if (keyCode == KeyEvent.VK_SPACE)
+            autoPaused = false; //the player takes over
+        handleFocus(keyCode);
         setMode(keyCode);
         testUse(keyCode);
         pauseOrContinue(keyCode);
         if (!paused)
         {   
             if (!aiOn)
-                moveTile(keyCode);
+                trackLatency(keyCode, arrivalTime_ns, moveTile(keyCode));
         }
-        
     }
-    
-    @Override
-    protected void mouseClicked(MouseEvent e) {
+    private void trackLatency(int keyCode, long arrivalTime_ns, boolean accepted)
+    {
+        switch(keyCode)
+        {
+            case KeyEvent.VK_LEFT:
+            case KeyEvent.VK_RIGHT:
+            case KeyEvent.VK_DOWN:
+                if (accepted)
+                    latencyTracker.inputAccepted(arrivalTime_ns, System.nanoTime(), tileList.getMode());
+                else
+                {
+                    latencyTracker.inputRejected(arrivalTime_ns, tileList.getMode());
+                    GameMetrics.INPUTS_REJECTED.incrementAndGet();
+                }
+        }
     }
- 
+    
     private boolean moveTile(int keyCode)
     {
         TileList.Tile latestTile = tileList.getLatestTile();
@@ -269,6 +526,8 @@ public class Tetris2048 extends Game {
                 return tileList.setMode(TileList.EASY_MODE);
             case KeyEvent.VK_H:
                 return tileList.setMode(TileList.HARD_MODE);
+            case KeyEvent.VK_U:
+                return tileList.setMode(TileList.HYPER_MODE);
         }
         return false;
     }
@@ -278,10 +537,27 @@ public class Tetris2048 extends Game {
         {
             case KeyEvent.VK_SPACE:
                 paused = !paused;
+                if (!paused)
+                    lastCycleTime = gameTime(); //the game duration goes on from now,
+                                                            //however long ago the last idle tick was
                 return tileList.pauseOrContinue();
         }
         return false;
     }
+    private void handleFocus(int command)
+    {
+        if (command == FOCUS_LOST && !paused)
+        {
+            pauseOrContinue(KeyEvent.VK_SPACE);
+            autoPaused = true;
+        }
+        else if (command == FOCUS_GAINED && autoPaused)
+        {
+            if (paused)
+                pauseOrContinue(KeyEvent.VK_SPACE);
+            autoPaused = false;
+        }
+    }
     //function for test only
     private boolean testUse(int keyCode)
     {
@@ -308,43 +584,69 @@ public class Tetris2048 extends Game {
     private void handleGameDuration()
     {
         if (lastCycleTime == null)
-            lastCycleTime = Calendar.getInstance();
+            lastCycleTime = gameTime();
         increaseGameDuration();
-        displayGameDuration();
     }
     
     private void increaseGameDuration()
     {
         if (paused)
             return;
-        gameDuration_milliSec += Calendar.getInstance().getTimeInMillis() - lastCycleTime.getTimeInMillis();
-        gameDuration.setTime(gameDuration_milliSec);
+        gameDuration_milliSec += gameTime().getTimeInMillis() - lastCycleTime.getTimeInMillis();
+    }
+    //the time seen by the tiles, ahead of the wall clock if virtual
+    private static Calendar gameTime()
+    {
+        Calendar time = Calendar.getInstance();
+        time.setTimeInMillis(tileList.getClock().now_ms());
+        return time;
     }
     
-    private void displayGameDuration()
+    //copy what is to be drawn into a preallocated snapshot & hand it over to the render thread
+    private void publishSnapshot()
     {
-        String mm, ss;
-        int min, sec;
-        min = gameDuration.getMinutes();
-        sec = gameDuration.getSeconds();
-        mm = (min >= 10) ? "" + min : "0" + min; 
-        ss = (sec >= 10) ? "" + sec : "0" + sec; 
-        console.drawText((int)(LEFT_BOUNDARY + GRID_SIZE * 1.6), NEW_TILE_TOP - 22,
-                            mm + ":" + ss, new Font(null,2,26), Color.BLACK);
+        BoardSnapshot snapshot = snapshotRing.getWritable();
+        tileList.fillSnapshot(snapshot);
+        snapshot.setScores(scorer.getCurrScore(), scorer.getBestScore());
+        snapshot.setGameDuration(gameDuration_milliSec);
+        snapshot.setAiOn(aiOn);
+        snapshot.setPaused(paused);
+        snapshot.setProfilerOn(profilerOn);
+        snapshot.setTickCosts(lastAiTime_ns, lastUpdateTime_ns);
+        snapshot.setTickNo(++tickNo);
+        snapshot.setLastAcceptedInputTime(latencyTracker.getLastAcceptedArrivalTime());
+        snapshotRing.publish();
+        if (renderLoop != null)
+            renderLoop.wakeUp();
     }
     private void showLoseMsg()
     {
+        tileList.recordGameEnd(false);
         askIfRetry("Your score is: " + scorer.getCurrScore());
     }
     
     private void showWinMsg()
     {
+        tileList.recordGameEnd(true);
         askIfRetry("Congratulation! You just WON the game!!!:D\n" +
                     "Your score is: " + scorer.getCurrScore());
     }
     
     private boolean askIfRetry(String winLoseMsg)
     {
+        noOfGamesEnded++;
+        Logger.getLogger(Tetris2048.class.getName()).log(Level.INFO, latencyTracker.report()
+                        + "\n  " + commandQueue.getNoOfRejectedOffers() + " keys dropped by a full queue so far"
+                        + String.format("\n  %d games ended, score %d, in %.2fs of wall time & %.1fs of game time",
+                                        noOfGamesEnded, scorer.getCurrScore(), (System.nanoTime() - startTime_ns) / 1e9,
+                                        (tileList.getClock().now_ms() - startClock_ms) / 1e3));
+        latencyTracker.reset();
+        if (headless || Boolean.getBoolean(AUTO_RETRY_PROPERTY))
+        {
+            tileList.cleanToReuse();
+            scorer.cleanToReuse();
+            return true;
+        }
         int retryAns = JOptionPane.showConfirmDialog(null, winLoseMsg + "\nRetry?", "Tetris2048", 
                 JOptionPane.YES_NO_OPTION, JOptionPane.QUESTION_MESSAGE);
         if (retryAns == JOptionPane.YES_OPTION)
@@ -0,0 +1,129 @@
+/**
+ *
+ *
+ * As a data container.
+ *
+ * The state of all tiles of a TileList, kept as a struct of arrays indexed by handle,
+ * instead of as the fields of Tile objects held by an ArrayList.
+ *
+ * A handle is an int given by allocate() which stays the same for the whole life of a tile,
+ * whatever is added or removed meanwhile. Hence, a tile can be removed by its handle in O(1),
+ * rather than by looking for it with indexOf(..), which compares positions & may hit another tile
+ * laying over the same grid, e.g. the one absorbing it.
+ *
+ * The live handles are linked in the order of allocation, i.e. the order tileList used to have.
+ * A removed handle is not given out again until releaseRemoved(), so that a tile removed during
+ * a step of TileList.update() keeps its state until the end of that step.
+ *
+ */
+package Tetris2048;
+
+import java.util.Arrays;
+
+/**
+ *
+ * @author ILoveIdunna
+ */
+class TileArena
+{
+    static final int NONE = -1;
+
+    //**struct of arrays, by handle
+    final int[] values;
+    final int[] tops, lefts;            //current position
+    final int[] nextTops, nextLefts;    //predicted position of the next frame
+    final int[] flags;                  //state flags, as the bits defined by Tile
+    final int[] serialNos;              //to tell a tile from another given the same handle later
+
+    //**live handles, linked in the order of allocation
+    private final int[] nextHandles, prevHandles;
+    private int first, last, size;
+    //**handles to allocate
+    private final int[] freeHandles;        //used as a stack
+    private int noOfFreeHandles;
+    private final int[] removedHandles;     //to be freed by releaseRemoved()
+    private int noOfRemovedHandles;
+    private int noOfAllocations;
+
+    TileArena(int capacity)
+    {
+        values = new int[capacity];
+        tops = new int[capacity];
+        lefts = new int[capacity];
+        nextTops = new int[capacity];
+        nextLefts = new int[capacity];
+        flags = new int[capacity];
+        serialNos = new int[capacity];
+        nextHandles = new int[capacity];
+        prevHandles = new int[capacity];
+        freeHandles = new int[capacity];
+        removedHandles = new int[capacity];
+        clear();
+    }
+
+    /**
+     * @return  the handle of a new tile, which is the last in the order of live handles;
+     *          NONE if the arena is full
+     */
+    int allocate()
+    {
+        if (noOfFreeHandles == 0)
+            return NONE;
+        int handle = freeHandles[--noOfFreeHandles];
+        values[handle] = 0;
+        tops[handle] = lefts[handle] = nextTops[handle] = nextLefts[handle] = 0;
+        flags[handle] = 0;
+        serialNos[handle] = ++noOfAllocations;
+
+        prevHandles[handle] = last;
+        nextHandles[handle] = NONE;
+        if (last == NONE)
+            first = handle;
+        else
+            nextHandles[last] = handle;
+        last = handle;
+        size++;
+        return handle;
+    }
+    /**
+     * Unlinks a live handle in O(1). Its state is kept until releaseRemoved().
+     */
+    void remove(int handle)
+    {
+        int prev = prevHandles[handle], next = nextHandles[handle];
+        if (prev == NONE)
+            first = next;
+        else
+            nextHandles[prev] = next;
+        if (next == NONE)
+            last = prev;
+        else
+            prevHandles[next] = prev;
+        size--;
+        removedHandles[noOfRemovedHandles++] = handle;
+    }
+    //lets the handles removed so far be allocated again
+    void releaseRemoved()
+    {
+        for (int i = 0; i < noOfRemovedHandles; i++)
+            freeHandles[noOfFreeHandles++] = removedHandles[i];
+        noOfRemovedHandles = 0;
+    }
+    void clear()
+    {
+        first = last = NONE;
+        size = 0;
+        noOfRemovedHandles = 0;
+        //handles are given out from 0 upwards
+        noOfFreeHandles = freeHandles.length;
+        for (int i = 0; i < noOfFreeHandles; i++)
+            freeHandles[i] = noOfFreeHandles - 1 - i;
+        Arrays.fill(flags, 0);
+    }
+
+    int size() { return size; }
+    int capacity() { return values.length; }
+    //iteration over the live handles: for (int h = first(); h != NONE; h = next(h))
+    int first() { return first; }
+    int next(int handle) { return nextHandles[handle]; }
+}
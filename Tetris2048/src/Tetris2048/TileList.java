@@ -105,17 +105,10 @@
 package Tetris2048;
 
 import static Tetris2048.GameFieldData.*;
-import game.v2.Console;
-import java.awt.Color;
-import java.awt.Font;
-import java.awt.Image;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Calendar;
-import java.util.HashMap;
-import java.util.List;
 import java.util.Random;
 
 /**
@@ -124,8 +117,10 @@ import java.util.Random;
 *            getLatestTile()
 *    1.2) use functions of the tileBeingCtrled obj to modify its path:
 *            setLeftMvOfAGrid(), setRightMvOfAGrid(), setDownMvOfGrids()
-*    1.3) call below function to follow the path to move & display all the tiles:
-*            updateAndDisplay()
+*    1.3) call below function to follow the path to move all the tiles:
+*            update()
+*    1.4) copy the tiles into a snapshot, which is then drawn by a renderer:
+*            fillSnapshot(BoardSnapshot snapshot)
 *    2)   pause or resume by calling:
 *            pauseOrContinue().
 **/
@@ -136,35 +131,47 @@ class TileList
     //**mode
     static final int EASY_MODE = 0;
     static final int HARD_MODE = 1;
+    static final int HYPER_MODE = 2;
+    static final int NO_OF_MODES = 3;
+    static final String[] MODE_NAMES = {"EASY", "HARD", "HYPER"};
     private int mode;
-    private static final int[][] value248Ratio = {{1,3,6}, {6,3,1}};
-    private static final double[] fallTimeGap_sec = {1, 0.5}; //time difference between adjacent free falls in sec
+    private static final int[][] value248Ratio = {{1,3,6}, {6,3,1}, {6,3,1}};
+    private static final double[] fallTimeGap_sec = {1, 0.5, 0.25}; //time difference between adjacent free falls in sec
+    private static final int[] stepsPerFrame = {1, 1, 2}; //steps taken by each update(). see update()
     
     //**time related
     private int frameCount, //as timeline.
-                            //each time updateAndDisplay() runs, frameCount++
+                            //at each step of update(), frameCount++
                             //but it won't be used to to determine when to free fall.
-                            //due to the potentially unstable frequency of call of updateAndDisplay().
+                            //due to the potentially unstable frequency of call of update().
                             //it is only used in generating animation
                 settledTilesFallFrame; //the frame at which settled tiles should fall
-    private Calendar tileBingCtrledNextFallTime; //expected time of next tileBeingCtrled's free fall
+    private long tileBingCtrledNextFallTime_ms; //expected time of next tileBeingCtrled's free fall
     private boolean paused;
-    private Calendar lastPauseTime;
+    private long lastPauseTime_ms;
+    private GameClock clock;    //the time seen by tiles. a wall clock unless set by setClock(..)
 
     //**tiles
-    private static final int FALL__FRAME_PER_GRID = 11  ; //number of frames to complete a free fall across a grid
+    static final int FALL__FRAME_PER_GRID = 11  ; //number of frames to complete a free fall across a grid
     private static final int PPLMV__FRAME_PER_GRID = FALL__FRAME_PER_GRID;
     private static final int FALLDIST__PER_FRAME = GRID_SIZE / FALL__FRAME_PER_GRID; //dist for distance
     private static final int PPLMVDIST__PER_FRAME = GRID_SIZE / PPLMV__FRAME_PER_GRID; 
+    private static final long FRAME_NS = 1000000000L / FPS; //game time of one update()
     
     private final Random randomer; //serve to generate random values for tiles
-    //"tilesImgMap" as a container of the images of tiles.
-    //running Console.loadImage(String imagePath) consumes a lot of resource, which may slow down fps.
-    //hence, build a map and reuse loaded Image obj
-    private static final HashMap<Integer, Image> tilesImgMap = new HashMap<Integer, Image>(11); 
+    private long seed;             //of randomer in the current game. reseeded by cleanToReuse()
     private boolean exceededUpperBoundary; //true when any one of Tile exceeds the upper boundary
     private int highestValue; //the highest value that has been made
-    private List<Tile> tileList;
+    private final TileArena arena;      //the state of the tiles in play, by handle. see TileArena
+    private final Tile[] tilesByHandle; //the Tile obj of each handle, made once
+    private final Tile[] tilesInUpdateOrder; //tiles sorted by the last update(), also used as the drawing order.
+                                             //reused by every step, so that no array is made per frame
+    private int noOfTilesInUpdateOrder;
+    //**grid index. see tileAt(..)
+    private final Tile[] gridTiles;  //the tile laying exactly over each grid, by row * NO_COL + col
+    private final int[] gridCounts;  //no of tiles laying exactly over each grid. more than 1 only at the end of an absorption
+    private static final int NOT_LISTED = -2; //as Tile.grid of a tile not in play,
+                                              //e.g. one just absorbed, which may still be moved in the same step
     private Tile latestTile;    //roughly speaking, it is tileBeingCtrled.
                                 //However, sometimes, a player may have no control power over the latest tile.
                                 //Considering this situation.
@@ -176,9 +183,10 @@ class TileList
                                 //move.
                                 //as a result, during this period, latestTile is not equivalent to tileBeingCtrled.
     private int nextValue;
+    private long noOfAbsorptions; //as the id of the latest absorption
     
-    private Console console;
     private Scorer scorer;
+    private GameRecorder recorder; //null if telemetry is off
     
     //**test use
     boolean nextValueListOn;
@@ -198,35 +206,47 @@ class TileList
     class Tile implements Comparable<Tile>{
         //**  identiers declaration  **//
         //
-        private int value;                  
+        //the value, position & flags of a Tile obj are kept in "arena", by its handle.
+        //a Tile obj is made once for each handle, & reused by the tiles given the same handle later
+        private final int handle;
         //a Tile obj's coordinate & motion
         private final Position  currPosi, //curr for current, posi for position
                                 predictedNextFramePosi;
-        private boolean inLeftPplMv, inRightPplMv ,inDownPplMv, //true if in process of the pplMv
-                        inFall,
-                        fallHeldOn, //sometimes a tile is moving horizontally over other tile(s),
-                                    //free falling is then held on until the completion of the horizontal move
-                        absorbing, beingAbsorbed, //e.g. A moves & collides with B, then A absorbs B
-                        beingCtrled, //true when this obj is under a player's control
-                        createdNewerTile;   //when a Tile obj is going to settle down,
-                                            //it will call a function of TileList to suggest to create the next Tile obj.
-                                            //afterwards, this boolean is set true
+        //**flags, as bits of arena.flags
+        private static final int IN_LEFT_PPLMV = 1, IN_RIGHT_PPLMV = 1<<1, IN_DOWN_PPLMV = 1<<2, //set if in process of the pplMv
+                                 IN_FALL = 1<<3,
+                                 FALL_HELD_ON = 1<<4,   //sometimes a tile is moving horizontally over other tile(s),
+                                                        //free falling is then held on until the completion of the horizontal move
+                                 ABSORBING = 1<<5, BEING_ABSORBED = 1<<6, //e.g. A moves & collides with B, then A absorbs B
+                                 BEING_CTRLED = 1<<7,   //set when this obj is under a player's control
+                                 CREATED_NEWER_TILE = 1<<8; //when a Tile obj is going to settle down,
+                                                            //it will call a function of TileList to suggest to create the next Tile obj.
+                                                            //afterwards, this flag is set
         private int     remainFallDist, remainPplMvDist; //remaining distance needed to finish a certain move
                                                          //fall & pplMv distances are stored separately
                                                          //since they may occur simutaneously
         private Tile    tileAbsorbingThis, tileBeingAbsorbed;
+        private long    absorptionId; //to pair the flight recorder events of the start & end of an absorption
+        private int     grid = NOT_LISTED; //the grid this Tile obj lays exactly over, as indexed by indexTile(..).
+                                           //-1 when laying over 2 grids
         //
         //**  END of identiers declaration  **//
 
+        //a view of the coordinate of this Tile obj in "arena"
         class Position
         {
-            private int top,left;
-            private Position setTop(int top)    { this.top = top; return this; }
-            private Position setLeft(int left)  { this.left = left; return this; }
-            public int getTop()    { return top; }
-            public int getLeft()   { return left; }
+            private final int[] tops, lefts;
+            private Position(int[] tops, int[] lefts)
+            {
+                this.tops = tops;
+                this.lefts = lefts;
+            }
+            private Position setTop(int top)    { tops[handle] = top; return this; }
+            private Position setLeft(int left)  { lefts[handle] = left; return this; }
+            public int getTop()    { return tops[handle]; }
+            public int getLeft()   { return lefts[handle]; }
             @Override
-            public int hashCode() { return top*10000 + left; }
+            public int hashCode() { return getTop()*10000 + getLeft(); }
             @Override
             public boolean equals(Object o)
             {
@@ -236,18 +256,30 @@ class TileList
             }
         }
 
-        Tile ()
+        Tile (int handle)
         {
-            currPosi = new Position();
-            predictedNextFramePosi = null;
+            this.handle = handle;
+            currPosi = new Position(arena.tops, arena.lefts);
+            predictedNextFramePosi = new Position(arena.nextTops, arena.nextLefts);
         }
-        Tile (int value, int top, int left)
+        //called when this Tile obj is given to a new tile, whose handle is just allocated
+        private void reset(int value, int top, int left)
         {
-            this.value = value;
-            currPosi = new Position();
+            arena.values[handle] = value;
             currPosi.setTop(top).setLeft(left);
-            predictedNextFramePosi = new Position();
-            beingCtrled = true;
+            arena.flags[handle] = BEING_CTRLED;
+            remainFallDist = remainPplMvDist = 0;
+            tileAbsorbingThis = tileBeingAbsorbed = null;
+            absorptionId = 0;
+            grid = NOT_LISTED;
+        }
+        private boolean is(int flag) { return (arena.flags[handle] & flag) != 0; }
+        private void set(int flag, boolean on)
+        {
+            if (on)
+                arena.flags[handle] |= flag;
+            else
+                arena.flags[handle] &= ~flag;
         }
 
         @Override
@@ -258,9 +290,8 @@ class TileList
             if (o == null)
                 return false;
             return (this.hashCode() == ((Tile)o).hashCode()); //it is expected no more than one tile located in the same position
-                                                              //this definition of Tile obj comparsion will be used by
-                                                              //tileList.get(..), .contains(..) functions,
-                                                              //where tileList is an ArrayList<Tile> obj
+                                                              //this definition of Tile obj comparsion is used to
+                                                              //tell if 2 tiles are at the same position, e.g. by tryEndAbsorbing()
         }
         @Override
         public int compareTo(Tile another)
@@ -272,48 +303,67 @@ class TileList
             return another.getCurrPosi().getTop() - this.getCurrPosi().getTop();
         }
 
-        public int      getValue() { return value; }
+        public int      getValue() { return arena.values[handle]; }
+        public int      getSerialNo() { return arena.serialNos[handle]; } //tells this tile from a later one of the same Tile obj
         public Position getCurrPosi()  { return currPosi; }
-        public boolean isAbsorbing() { return absorbing; }
-        public boolean isBeingAbsorbed() { return beingAbsorbed; }
+        public boolean isAbsorbing() { return is(ABSORBING); }
+        public boolean isBeingAbsorbed() { return is(BEING_ABSORBED); }
 
         private void doubleValue() 
         {
-            value += value;
-            addCurrScore(value); //a function of TileList.
+            arena.values[handle] += arena.values[handle];
+            addCurrScore(getValue()); //a function of TileList.
         }
-        private void settleDown() { beingCtrled = false; }
+        private void settleDown() { set(BEING_CTRLED, false); }
         private void beAbsorbedBy(Tile tileAbsorbingThis)
         { 
             tileAbsorbingThis = this.tileAbsorbingThis;
-            beingAbsorbed = true;
+            set(BEING_ABSORBED, true);
         }
         private void absorbs(Tile tileBeingAbsorbed) 
         { 
-            if (absorbing || beingAbsorbed)
+            if (is(ABSORBING) || is(BEING_ABSORBED))
                 return;
             this.tileBeingAbsorbed = tileBeingAbsorbed;
-            absorbing = true; 
+            set(ABSORBING, true); 
             doubleValue();
+            GameMetrics.TILES_MERGED.mark();
+
+            absorptionId = ++noOfAbsorptions;
+            FlightEvents.AbsorptionStart event = new FlightEvents.AbsorptionStart();
+            if (event.shouldCommit())
+            {
+                event.absorptionId = absorptionId;
+                event.newValue = getValue();
+                event.top = currPosi.getTop();
+                event.left = currPosi.getLeft();
+                event.byTileBeingCtrled = is(BEING_CTRLED);
+                event.commit();
+            }
         }
         //p.s.  an absorption is finished, when one entirely overlaps another.
         //      the tile being abosrbed is gone when the end of absorption.
         void endAbsorbing() 
         {
-            if (!absorbing)
+            if (!is(ABSORBING))
                 return;
-            //remove the tileBeingAbsorbed obj
-            int tileBeingAbsorbedIdx; //the index in the ArrayList object, "tileList"                
-            tileBeingAbsorbedIdx = tileList.indexOf(tileBeingAbsorbed); //indexOf(Object o) will only return the first occurence
-                                                                        //of the object.
-                                                                        //Here, the index returned may be for the tile which is absorbing
-                                                                        //or the tile which is being absorbed.
-            if (tileBeingAbsorbed != tileList.get(tileBeingAbsorbedIdx))
-                tileBeingAbsorbedIdx = tileList.lastIndexOf(tileBeingAbsorbed);
-            tileList.remove(tileBeingAbsorbedIdx);
+            //remove the tileBeingAbsorbed obj by its handle.
+            //it cannot be looked for by position, which it shares with this Tile obj by now
+            arena.remove(tileBeingAbsorbed.handle);
+            unlistTile(tileBeingAbsorbed); //a function of TileList
+
+            FlightEvents.AbsorptionEnd event = new FlightEvents.AbsorptionEnd();
+            if (event.shouldCommit())
+            {
+                event.absorptionId = absorptionId;
+                event.value = getValue();
+                event.top = currPosi.getTop();
+                event.left = currPosi.getLeft();
+                event.commit();
+            }
 
             //update the status of this Tile obj
-            absorbing = false;
+            set(ABSORBING, false);
             tileBeingAbsorbed = null;
         }
 
@@ -326,13 +376,13 @@ class TileList
         //
         public boolean readyForNewPplMv() 
         { 
-            return !(inLeftPplMv || inRightPplMv || inDownPplMv || absorbing || beingAbsorbed || !beingCtrled);
+            return !(is(IN_LEFT_PPLMV) || is(IN_RIGHT_PPLMV) || is(IN_DOWN_PPLMV) || is(ABSORBING) || is(BEING_ABSORBED) || !is(BEING_CTRLED));
         }
         public boolean setRightMvOfAGrid()
         {
             if (!readyForNewPplMv())
                 return false;
-            inRightPplMv = true;
+            set(IN_RIGHT_PPLMV, true);
             remainPplMvDist = GRID_SIZE;
             return true;
         }
@@ -340,7 +390,7 @@ class TileList
         {
             if (!readyForNewPplMv())
                 return false;
-            inLeftPplMv = true;
+            set(IN_LEFT_PPLMV, true);
             remainPplMvDist = GRID_SIZE;
             return true;
         }
@@ -360,33 +410,29 @@ class TileList
             int currLeft = currPosi.getLeft();
             if ((currTop - NEW_TILE_TOP) % GRID_SIZE == 0)  //true when it is not laying over 2 grids
             {
-                Tile imagObstacle;  //imaginary obstacle tile.
-                                    //tileList.contains(imagObstacle) can be used to check if
-                                    //this obstacle is really present
-                imagObstacle = new Tile();
-                imagObstacle.getCurrPosi().setTop(currTop + GRID_SIZE).setLeft(currLeft); 
+                Tile obstacle;  //the tile, if any, at the imaginary obstacle's position
+                obstacle = tileAt(currTop + GRID_SIZE, currLeft);
 
                 //refuse the downPplMv when
                 //this Tile obj reaches the lower boundary
                 //or this Tile obj is just right above another Tile obj with different value
                 if (currTop == LOWER_BOUNDARY - GRID_SIZE || 
-                    (tileList.contains(imagObstacle) &&
-                    tileList.get(tileList.indexOf(imagObstacle)).getValue() != value))
+                    (obstacle != null && obstacle.getValue() != getValue()))
                     return false;
             }
             //
             //**  END OF basic checking about if the execution of this downPplMv possible  **//
 
 
-            inDownPplMv = true;
+            set(IN_DOWN_PPLMV, true);
             remainPplMvDist = GRID_SIZE * NO_ROW; //destination is set below the lower boundary.
                                                   //once tileBeingCtrled tries to go beyond the boundary
                                                   //or collides with tile during downPplMv,
                                                   //its path will be modified to stop its dropping.
             //disable the free fall of tileBeingCtrled during downPplMv
-            if (inFall) 
+            if (is(IN_FALL)) 
             {
-                inFall = false;
+                set(IN_FALL, false);
                 remainFallDist = 0;
             }
             return true;
@@ -402,11 +448,10 @@ class TileList
         **/
         private boolean setTileBeingCtrledNextFallTime()
         {
-            if (!beingCtrled)
+            if (!is(BEING_CTRLED))
                 return false;
 
-            tileBingCtrledNextFallTime = Calendar.getInstance();
-            tileBingCtrledNextFallTime.add(Calendar.MILLISECOND, (int)(fallTimeGap_sec[mode] * Math.pow(10,3)));
+            tileBingCtrledNextFallTime_ms = clock.now_ms() + (long)(fallTimeGap_sec[mode] * Math.pow(10,3));
             return true;
         }
         //set free falling path when it's time to begin a fall
@@ -414,19 +459,19 @@ class TileList
         {
             //reject to begin free falling if this Tile obj is in process of combination,
             //but free falling which begins before combination will not be stopped
-            if (absorbing || beingAbsorbed)
+            if (is(ABSORBING) || is(BEING_ABSORBED))
                 return; 
 
             //for tileBeingCtrled
-            if (beingCtrled)
+            if (is(BEING_CTRLED))
             {
-                if ( tileBingCtrledNextFallTime.after(Calendar.getInstance())|| inFall)
+                if ( tileBingCtrledNextFallTime_ms > clock.now_ms() || is(IN_FALL))
                     return;
 
                 //set free falling path
-                if (!inDownPplMv)
+                if (!is(IN_DOWN_PPLMV))
                 {
-                    inFall = true; //the free fall of tileBeingCtrled is disabled during downPplMv
+                    set(IN_FALL, true); //the free fall of tileBeingCtrled is disabled during downPplMv
                                     //so that downPpl's speed looks constant
                     remainFallDist = GRID_SIZE;
                 }
@@ -436,9 +481,9 @@ class TileList
             else
             {
                 if (frameCount != settledTilesFallFrame ||
-                    inFall)
+                    is(IN_FALL))
                     return;
-                inFall = true;
+                set(IN_FALL, true);
                 remainFallDist = GRID_SIZE;
             }
         }
@@ -463,13 +508,13 @@ class TileList
             int nextTop = predictedNextFramePosi.getTop();
             int nextLeft = predictedNextFramePosi.getLeft();
 
-            if (inFall)
+            if (is(IN_FALL))
                 predictedNextFramePosi.setTop(nextTop + FALLDIST__PER_FRAME);
-            if (inLeftPplMv)
+            if (is(IN_LEFT_PPLMV))
                 predictedNextFramePosi.setLeft(nextLeft - PPLMVDIST__PER_FRAME);
-            else if (inRightPplMv)
+            else if (is(IN_RIGHT_PPLMV))
                 predictedNextFramePosi.setLeft(nextLeft + PPLMVDIST__PER_FRAME);
-            else if (inDownPplMv)
+            else if (is(IN_DOWN_PPLMV))
                 predictedNextFramePosi.setTop(nextTop + PPLMVDIST__PER_FRAME);
         }
         //check if the path will bring this Tile obj collision with boundaries of game field
@@ -482,16 +527,16 @@ class TileList
 
             if (nextBottom > LOWER_BOUNDARY)
             {    
-                if (inFall)
+                if (is(IN_FALL))
                 {
-                    inFall = false;
+                    set(IN_FALL, false);
                     remainFallDist = 0;
-                    fallHeldOn = false;
-                    beingCtrled = false; //prohibit further pplMv
+                    set(FALL_HELD_ON, false);
+                    set(BEING_CTRLED, false); //prohibit further pplMv
                                          //& as signal to tell this tile is no longer under players' control,
                                         //i.e. a signal suggesting to create next tile
                 }
-                if (inDownPplMv)
+                if (is(IN_DOWN_PPLMV))
                 {
                     //if a downPplMv is performed during free falling,
                     //then in the end of the downPplMv.
@@ -501,12 +546,12 @@ class TileList
             }
             if (nextLeft < LEFT_BOUNDARY)
             {
-                inLeftPplMv = false;
+                set(IN_LEFT_PPLMV, false);
                 remainPplMvDist = 0;
             }
             else if (nextRight > RIGHT_BOUNDARY)
             {
-                inRightPplMv = false;
+                set(IN_RIGHT_PPLMV, false);
                 remainPplMvDist = 0;
             }
         }
@@ -531,7 +576,7 @@ class TileList
                     //1) hold on the free fall
                     //2) let this Tile obj absorbs another
                     //3) remove player's control power over the tile, & create the next tile
-            if (inFall)
+            if (is(IN_FALL))
             {
                 //get the maximum no of obstacles, in a range of 0 - 2, which hinder free falling
                 int maxNoOfImagObstacle;
@@ -552,25 +597,26 @@ class TileList
                     //Then, if "nextTop" is used instead of "currTop",
                     //according to how this piece of code is written, the free falling will then be held on/ blocked
                     //right before reaching A,B's bottom edges.
-                    imagObstacleTop =  ((((inDownPplMv) ? nextTop : currTop) - NEW_TILE_TOP) / GRID_SIZE + 1)
+                    imagObstacleTop =  (((is(IN_DOWN_PPLMV) ? nextTop : currTop) - NEW_TILE_TOP) / GRID_SIZE + 1)
                                         * GRID_SIZE + NEW_TILE_TOP;
                     imagObstacleLeft = ((nextLeft - NEW_TILE_LEFT) / GRID_SIZE + i) * GRID_SIZE + NEW_TILE_LEFT;
 
                     if (maxNoOfImagObstacle == 1) //true means no horizontal move
                                                 //or a horizontal move is finishing in this frame
                     {
-                        fallHeldOn = false;
+                        set(FALL_HELD_ON, false);
                         if (tryStartAbsorb(imagObstacleTop, imagObstacleLeft) == 0) //true when the free falling is blocked
                         {
-                            inFall = false;
+                            recordFallDecision(FlightEvents.FallDecision.BLOCKED);
+                            set(IN_FALL, false);
                             remainFallDist = 0;
-                            beingCtrled = false; //remove player's control power over the tile
+                            set(BEING_CTRLED, false); //remove player's control power over the tile
                                                 //& as a signal to suggest to create the next tile
                         }
                         else if (tryStartAbsorb(imagObstacleTop, imagObstacleLeft) == -1) //true when the imagObstacle is not really present
                         {
                             setTileBeingCtrledNextFallTime();
-                            if (beingCtrled)
+                            if (is(BEING_CTRLED))
                                 settledTilesFall(); //a function of tileList
                                                     //which sets up a signal to tell settled tiles to fall
                         }
@@ -579,7 +625,9 @@ class TileList
                     {
                         if (tryStartAbsorb(imagObstacleTop, imagObstacleLeft) == 0)
                         {
-                            fallHeldOn = true; //if any obstacle hindering the free falling,
+                            if (!is(FALL_HELD_ON))
+                                recordFallDecision(FlightEvents.FallDecision.HELD_ON);
+                            set(FALL_HELD_ON, true); //if any obstacle hindering the free falling,
                                                 //hold on the free fall to ensure that
                                                 //the horizontal move would not be disturbed by the blocking of free fall,
                                                 //i.e. a complete horizontal move is ensured.
@@ -587,7 +635,7 @@ class TileList
                         }
                     }
                 }
-                if (maxNoOfImagObstacle == 2 || !fallHeldOn)
+                if (maxNoOfImagObstacle == 2 || !is(FALL_HELD_ON))
                 {
                     setTileBeingCtrledNextFallTime();
                     settledTilesFall();
@@ -595,7 +643,7 @@ class TileList
             }
 
             //**determine when to stop a downPplMv
-            if (inDownPplMv)
+            if (is(IN_DOWN_PPLMV))
             {
                 imagObstacleTop = (((nextTop - NEW_TILE_TOP) / GRID_SIZE) + 1) * GRID_SIZE
                                 + NEW_TILE_TOP; //by setting imagObstacleTop in this way,
@@ -612,13 +660,13 @@ class TileList
             //**check if any need to cancel a horizontal pplMv
             //if the beginning of a horizontal movement is alright, then the rest of the horizontal move must be fine too.
             //hence, here we only need to check if it is problematic to allow a horizontal move to begin
-            if (inLeftPplMv || inRightPplMv)
+            if (is(IN_LEFT_PPLMV) || is(IN_RIGHT_PPLMV))
             {
                 if ((currLeft - NEW_TILE_LEFT) % GRID_SIZE == 0) //true means this Tile obj isn't laying over 2 grids,
                                                                 //i.e. not already in horizontal movement,
                                                                     //& a horizontal move about to begin
                 {
-                    if (inFall)
+                    if (is(IN_FALL))
                     {
                         if ((currTop - NEW_TILE_TOP) % GRID_SIZE > 0)//true if already in a free falling process
                         {
@@ -626,7 +674,7 @@ class TileList
                             //just left/right to
                             //the lower grid over which this Tile obj is laying
                             imagObstacleTop = ((currTop - NEW_TILE_TOP) / GRID_SIZE + 1) * GRID_SIZE + NEW_TILE_TOP;
-                            imagObstacleLeft = currLeft + ((inLeftPplMv) ? -GRID_SIZE : GRID_SIZE);
+                            imagObstacleLeft = currLeft + (is(IN_LEFT_PPLMV) ? -GRID_SIZE : GRID_SIZE);
                         }
                         else //if horizontal move & free falling begin simultaneously
                         {
@@ -634,7 +682,7 @@ class TileList
                             //that's pointed by
                             //the left/right, bottom corner of this Tile obj
                             imagObstacleTop = currTop + GRID_SIZE;
-                            imagObstacleLeft = currLeft + ((inLeftPplMv) ? -GRID_SIZE : GRID_SIZE);
+                            imagObstacleLeft = currLeft + (is(IN_LEFT_PPLMV) ? -GRID_SIZE : GRID_SIZE);
                         }
                     }
                     else //if about to begin horizontal move but no falling
@@ -642,18 +690,31 @@ class TileList
                         //check if any adjacent obstacle
                         //left/right to this Tile obj
                         imagObstacleTop = currTop;
-                        imagObstacleLeft = currLeft + ((inLeftPplMv) ? -GRID_SIZE : GRID_SIZE);
+                        imagObstacleLeft = currLeft + (is(IN_LEFT_PPLMV) ? -GRID_SIZE : GRID_SIZE);
                     }
 
                     if (tryStartAbsorb(imagObstacleTop, imagObstacleLeft) == 0)
                     {
-                        inLeftPplMv = false;
-                        inRightPplMv = false;
+                        set(IN_LEFT_PPLMV, false);
+                        set(IN_RIGHT_PPLMV, false);
                         remainPplMvDist = 0;
                     }
                 }
             }
         }
+        private void recordFallDecision(String decision)
+        {
+            FlightEvents.FallDecision event = new FlightEvents.FallDecision();
+            if (event.shouldCommit())
+            {
+                event.decision = decision;
+                event.value = getValue();
+                event.top = currPosi.getTop();
+                event.left = currPosi.getLeft();
+                event.beingCtrled = is(BEING_CTRLED);
+                event.commit();
+            }
+        }
         /**
          * This function examines the possibility of letting this Tile obj absorb another Tile obj,
          * whose position data is passed to this function as parameter, & let this Tile obj absorb
@@ -674,19 +735,15 @@ class TileList
          */
         private int tryStartAbsorb(int imagObstacleTop, int imagObstacleLeft)
         {                
-            if (absorbing) 
+            if (is(ABSORBING)) 
                 return 1;
 
-            Tile imagObstacle = new Tile();
-            imagObstacle.getCurrPosi().setTop(imagObstacleTop).setLeft(imagObstacleLeft);
-            if (tileList.contains(imagObstacle)) //true when real tile found
+            Tile obstacle = tileAt(imagObstacleTop, imagObstacleLeft);
+            if (obstacle != null) //true when real tile found
             {
-                Tile obstacle;
-                int obstacleIdx, obstacleValue;
+                int obstacleValue;
 
                 //retrieve the value of the obstacle to see if absorption possible
-                obstacleIdx = tileList.indexOf(imagObstacle);
-                obstacle = tileList.get(obstacleIdx);
                 obstacleValue = obstacle.getValue();
 
                 //check if the position of this Tile obj & the obstacle fit for absorption
@@ -701,7 +758,7 @@ class TileList
                                                  && Math.abs(nextTop-imagObstacleTop) <= GRID_SIZE)
                                             ); //true when the tiles are adjacent to each other
 
-                if (value != obstacleValue || obstacle.isBeingAbsorbed() || !bothPosiFitForabsorption) //true when absorption not available
+                if (getValue() != obstacleValue || obstacle.isBeingAbsorbed() || !bothPosiFitForabsorption) //true when absorption not available
                 {
                     return 0;
                 }
@@ -720,7 +777,7 @@ class TileList
         //p.s. an absorption is finished, when one entirely overlaps/passes via another.
         private boolean tryEndAbsorbing()
         {
-            if (!absorbing)
+            if (!is(ABSORBING))
                 return false;
             //in general, when it's the end of an absorption, the tile which absorbs another would
             //be located in the same position as the tile being absorbed,
@@ -731,7 +788,7 @@ class TileList
             //if tileBeingCtrled takes a downPplMv during free falling,
             //then the above general situation will not be held.
             //instead, the tile which absorbs another will just pass via the tileBeingAbsorbed.
-            else if (inDownPplMv)
+            else if (is(IN_DOWN_PPLMV))
             {
                 int currTop, nextTop, tileBeingAbsorbedTop;
                 currTop = currPosi.getTop();
@@ -740,20 +797,16 @@ class TileList
                 if (nextTop  > tileBeingAbsorbedTop) //true when this Tile obj is going to pass through tileBeingAbsorbed.
                 {
                     //check if any obstacle right below the tileBeingAbsorbed for this Tile obj 
-                    Tile imagObstacle, realObstacle;
+                    Tile realObstacle;
                     int imagObstacleTop, imagObstacleLeft;
-                    boolean imagObstacleIsReal; //true when imagObstacle is really present
 
                     imagObstacleTop = tileBeingAbsorbedTop + GRID_SIZE;
                     imagObstacleLeft = currPosi.getLeft();
-                    imagObstacle = new Tile();
-                    imagObstacle.getCurrPosi().setTop(imagObstacleTop).setLeft(imagObstacleLeft);
 
-                    imagObstacleIsReal = tileList.contains(imagObstacle);
-                    if (imagObstacleIsReal)
+                    realObstacle = tileAt(imagObstacleTop, imagObstacleLeft); //null unless imagObstacle is really present
+                    if (realObstacle != null)
                     {
-                        realObstacle = tileList.get(tileList.indexOf(imagObstacle));
-                        if (value != realObstacle.getValue())
+                        if (getValue() != realObstacle.getValue())
                         {
                             endAbsorbing();
                             remainPplMvDist = imagObstacleTop - (currTop + GRID_SIZE); //modify path to make this Tile obj
@@ -788,22 +841,22 @@ class TileList
             modifyPathIfColl();
 
             //update currPosi
-            if (inFall && (!beingCtrled || !fallHeldOn))
+            if (is(IN_FALL) && (!is(BEING_CTRLED) || !is(FALL_HELD_ON)))
             {
                 currPosi.setTop(currPosi.getTop() + FALLDIST__PER_FRAME);
                 remainFallDist -= FALLDIST__PER_FRAME;
             }
-            if (inLeftPplMv)
+            if (is(IN_LEFT_PPLMV))
             {
                 currPosi.setLeft(currPosi.getLeft() - PPLMVDIST__PER_FRAME);
                 remainPplMvDist -= PPLMVDIST__PER_FRAME;
             }
-            else if (inRightPplMv)
+            else if (is(IN_RIGHT_PPLMV))
             {
                 currPosi.setLeft(currPosi.getLeft() + PPLMVDIST__PER_FRAME);
                 remainPplMvDist -= PPLMVDIST__PER_FRAME;
             }
-            else if (inDownPplMv)
+            else if (is(IN_DOWN_PPLMV))
             {
                 if (remainPplMvDist - PPLMVDIST__PER_FRAME >= 0)
                 {
@@ -818,37 +871,38 @@ class TileList
                     remainPplMvDist -= remainPplMvDist;
                 }
             }
+            indexTile(this); //a function of TileList
             tryEndAbsorbing();
 
             //check if this is the end of a certain move
             if (remainFallDist <= 0)
             {
-                inFall = false;
+                set(IN_FALL, false);
             }
             if (remainPplMvDist <= 0)
             {
-                if (inDownPplMv)
+                if (is(IN_DOWN_PPLMV))
                 {
-                    inDownPplMv = false;
+                    set(IN_DOWN_PPLMV, false);
                     setTileBeingCtrledNextFallTime(); //ensure time for player to perform horizontal move after down pplMv
                 }
-                inLeftPplMv = false;
-                inRightPplMv = false;
+                set(IN_LEFT_PPLMV, false);
+                set(IN_RIGHT_PPLMV, false);
             }
 
             updateHighestValue(this); ///a function of TileList
 
             //check if it's time to create next tile for players to play with
             //& check if the player loses this game
-            if (!beingCtrled && !createdNewerTile)
+            if (!is(BEING_CTRLED) && !is(CREATED_NEWER_TILE))
             {
                 //ensure a complete horizontal move before letting next tile come
                 //& let next tile get into play
-                if (!(inLeftPplMv || inRightPplMv))
+                if (!(is(IN_LEFT_PPLMV) || is(IN_RIGHT_PPLMV)))
                 {
                     checkIfExceedUpperBoundary(this); //a function of TileList                
                     createNextTile(); //a function of tileList. called to suggest to create next tile
-                    createdNewerTile = true; //restrict the amount of tile one Tile obj suggests to create
+                    set(CREATED_NEWER_TILE, true); //restrict the amount of tile one Tile obj suggests to create
                 }
             }
         }
@@ -860,18 +914,18 @@ class TileList
     {
         setMode(mode);
         this.scorer = scorer;
-        console = Console.getInstance();
-        randomer= new Random(System.currentTimeMillis());
-        tileList = new ArrayList<Tile>(MAX_NO_TILES);
+        clock = GameClock.wall();
+        seed = System.currentTimeMillis();
+        randomer= new Random(seed);
+        arena = new TileArena(2 * MAX_NO_TILES); //tiles removed during a step still hold their handles until its end
+        tilesByHandle = new Tile[arena.capacity()];
+        for (int handle = 0; handle < tilesByHandle.length; handle++)
+            tilesByHandle[handle] = new Tile(handle);
+        tilesInUpdateOrder = new Tile[MAX_NO_TILES];
+        gridTiles = new Tile[NO_ROW * NO_COL];
+        gridCounts = new int[NO_ROW * NO_COL];
         nextValue = getRandomValue();
         createNextTile();
-        //initialize the images of tiles of various values
-        for (int i = 2; i <= 2048; i*=2)
-        {
-            String imgPath = TILE_IMG_DIR_RELATIVE_PATH + i + TILE_IMG_FILE_EXTENSION;
-            Image img = Console.loadImage(imgPath);
-            tilesImgMap.put(i, img);
-        }
     }
 
     //**  private methods  **//
@@ -887,7 +941,11 @@ class TileList
         //
         //**  NED of code for test use  **//
             
-        
+        return randomValue(randomer, mode);
+    }
+    //the value of a new tile, drawn by the ratio of 2, 4 & 8 of the mode. also used by the trainer of AI
+    static int randomValue(Random randomer, int mode)
+    {
         int value2Ratio, value4Ratio, value8Ratio;
         value2Ratio = value248Ratio[mode][0];
         value4Ratio = value248Ratio[mode][1];
@@ -901,21 +959,58 @@ class TileList
         else
             return 8;
     }
+    //the ratio of 2, 4 & 8 of the mode, as drawn by randomValue(..)
+    static int[] valueRatios(int mode)
+    {
+        return value248Ratio[mode].clone();
+    }
+    //the chance that randomValue(..) draws "value" in the mode. used by the solvers of AI
+    static double probabilityOfValue(int value, int mode)
+    {
+        int[] ratios = value248Ratio[mode];
+        int exponent = Integer.numberOfTrailingZeros(value);
+        if (value != 1 << exponent || exponent < 1 || exponent > ratios.length)
+            return 0;
+        return (double) ratios[exponent - 1] / (ratios[0] + ratios[1] + ratios[2]);
+    }
     private boolean createNextTile()
     {
-        if (tileList.size() >= MAX_NO_TILES)
+        if (arena.size() >= MAX_NO_TILES)
+            return false;
+        int handle = arena.allocate();
+        if (handle == TileArena.NONE)
             return false;
 
+        Tile placedTile = latestTile; //null for the 1st tile of a game
+
         //create new Tile based on pre-generated random value
-        Tile newTile = new Tile(nextValue, NEW_TILE_TOP, NEW_TILE_LEFT);
+        Tile newTile = tilesByHandle[handle];
+        newTile.reset(nextValue, NEW_TILE_TOP, NEW_TILE_LEFT);
         latestTile = newTile;
-        tileList.add(latestTile);
+        listTile(latestTile);
         settledTilesFall();
         latestTile.setTileBeingCtrledNextFallTime();
 
         //generate another random value for next tile
         nextValue = getRandomValue();
 
+        if (recorder != null)
+        {
+            if (placedTile != null)
+                recorder.tilePlaced(placedTile.getValue(), (placedTile.getCurrPosi().getLeft() - NEW_TILE_LEFT) / GRID_SIZE,
+                                    mode, latestTile.getValue(), noOfAbsorptions, scorer.getCurrScore());
+            recorder.tileSpawned(latestTile.getValue());
+        }
+        GameMetrics.TILES_CREATED.mark();
+        FlightEvents.TileSpawn event = new FlightEvents.TileSpawn();
+        if (event.shouldCommit())
+        {
+            event.value = latestTile.getValue();
+            event.nextValue = nextValue;
+            event.noOfTiles = arena.size();
+            event.mode = mode;
+            event.commit();
+        }
         return true;
     }
     //set up a signal to tell settled tiles to fall
@@ -938,6 +1033,76 @@ class TileList
         if (tile.getCurrPosi().getTop() < UPPER_BOUNDARY)    
             exceededUpperBoundary = true;
     }
+    /**
+     * Looking up a tile by position used to be tileList.contains(imagObstacle) & indexOf(imagObstacle),
+     * i.e. a scan of tileList & a new Tile obj for every look-up, done several times by every tile in every frame.
+     * Instead, tiles laying exactly over a grid are indexed by the grid, so that a look-up costs an array read.
+     * The tile returned is still the one indexOf(..) would give, i.e. the first in play at this position:
+     * the tiles are scanned in the rare cases where that is not the only one, e.g. at the end of an absorption,
+     * or where the position is not exactly over a grid.
+     * @return  the tile at this position, or null if none. also used by AIPlayer
+     */
+    Tile tileAt(int top, int left)
+    {
+        int offsetTop = top - NEW_TILE_TOP, offsetLeft = left - NEW_TILE_LEFT;
+        //no tile goes beyond the game field
+        if (offsetTop < 0 || offsetTop >= NO_ROW * GRID_SIZE || offsetLeft < 0 || offsetLeft >= NO_COL * GRID_SIZE)
+            return null;
+        if (offsetTop % GRID_SIZE == 0 && offsetLeft % GRID_SIZE == 0)
+        {
+            int grid = offsetTop / GRID_SIZE * NO_COL + offsetLeft / GRID_SIZE;
+            if (gridCounts[grid] <= 1)
+                return gridTiles[grid];
+        }
+        for (int handle = arena.first(); handle != TileArena.NONE; handle = arena.next(handle))
+            if (arena.tops[handle] == top && arena.lefts[handle] == left)
+                return tilesByHandle[handle];
+        return null;
+    }
+    //to be called once a tile is put in play
+    private void listTile(Tile tile)
+    {
+        tile.grid = -1;
+        indexTile(tile);
+    }
+    private void unlistTile(Tile tile)
+    {
+        removeFromGrid(tile);
+        tile.grid = NOT_LISTED;
+    }
+    //to be called whenever a tile moves
+    private void indexTile(Tile tile)
+    {
+        if (tile.grid == NOT_LISTED)
+            return;
+        int offsetTop = tile.getCurrPosi().getTop() - NEW_TILE_TOP,
+            offsetLeft = tile.getCurrPosi().getLeft() - NEW_TILE_LEFT,
+            grid = -1;
+        if (offsetTop % GRID_SIZE == 0 && offsetLeft % GRID_SIZE == 0)
+            grid = offsetTop / GRID_SIZE * NO_COL + offsetLeft / GRID_SIZE;
+        if (grid == tile.grid)
+            return;
+        removeFromGrid(tile);
+        tile.grid = grid;
+        if (grid >= 0 && gridCounts[grid]++ == 0)
+            gridTiles[grid] = tile;
+    }
+    private void removeFromGrid(Tile tile)
+    {
+        int grid = tile.grid;
+        if (grid < 0)
+            return;
+        tile.grid = -1;
+        gridCounts[grid]--;
+        if (gridTiles[grid] == tile || gridCounts[grid] == 1)
+        {
+            gridTiles[grid] = null;
+            if (gridCounts[grid] == 1) //find the one left, which is read without a scan from now on
+                for (int handle = arena.first(); handle != TileArena.NONE; handle = arena.next(handle))
+                    if (tilesByHandle[handle].grid == grid)
+                        gridTiles[grid] = tilesByHandle[handle];
+        }
+    }
     //
     //**  END of private methods  **//
 
@@ -955,6 +1120,7 @@ class TileList
         { 
             case EASY_MODE:
             case HARD_MODE:
+            case HYPER_MODE:
                 this.mode = mode;
                 return true;
 
@@ -965,32 +1131,55 @@ class TileList
         }
     }
     public int getMode(){ return mode; }
+    public int getNextValue() { return nextValue; }
+    /**
+     * Let the game be stepped faster or slower than real time, e.g. by a virtual clock.
+     * The next fall of tileBeingCtrled stays as far ahead on the new clock as it was on the old one.
+     */
+    public void setClock(GameClock clock)
+    {
+        tileBingCtrledNextFallTime_ms += clock.now_ms() - this.clock.now_ms();
+        lastPauseTime_ms += clock.now_ms() - this.clock.now_ms();
+        this.clock = clock;
+    }
+    public GameClock getClock() { return clock; }
     public Tile getLatestTile() { return latestTile; }
     public boolean pauseOrContinue() { 
         if (!paused)
         {
-            lastPauseTime = Calendar.getInstance(); //used to update nextFallTime when continuing game
+            lastPauseTime_ms = clock.now_ms(); //used to update nextFallTime when continuing game
         }
         else
         {
             //update nextFallTime
-            long now_ms = Calendar.getInstance().getTimeInMillis();
-            long lastPauseTime_ms = lastPauseTime.getTimeInMillis();
-            tileBingCtrledNextFallTime.add(Calendar.MILLISECOND, (int) (now_ms - lastPauseTime_ms));
+            tileBingCtrledNextFallTime_ms += clock.now_ms() - lastPauseTime_ms;
         }
         paused = !paused; 
         return true;
     }
     /**
     * Using functions to set path for the tileBeingControlled
-    * before calling updateAndDisplay() to follow the path & display all tiles.
+    * before calling update() to follow the path.
+    * 
+    * Each update() makes one frame, in which every tile takes one or more steps.
+    * A step moves a tile by FALLDIST__PER_FRAME/ PPLMVDIST__PER_FRAME at most, i.e. far less than a grid.
+    * The collision checks of Tile rely on this: an obstacle is looked for in the next grid only,
+    * & a collision is expected to be found at the very step when 2 tiles come to touch.
+    * Hence, a frame covering a longer distance, e.g. in HYPER_MODE,
+    * is swept by taking several steps, each checked for collision,
+    * rather than by a longer step which could let a tile pass through another.
     **/
-    public void updateAndDisplay()
+    public void update()
     {
         boolean pausedWhenCallThis = paused;    //to ensure consistency that all tiles displayed are out of the same frame.
                                                 //if player pauses game during the running of this function,
                                                 //this boolean variable will ensure the consistency.
-
+        for (int i = 0; i < stepsPerFrame[mode]; i++)
+            step(pausedWhenCallThis);
+        clock.advance(FRAME_NS);
+    }
+    private void step(boolean pausedWhenCallThis)
+    {
         //update latestTile's position first for 2 reasons:
         //others' free falling depends on it.
         //it has the priority to cause/join an absorption in case 3 tiles collide simultaneously.
@@ -1014,39 +1203,49 @@ class TileList
          * so that Arrays.sort(Object[] array) would then be able to sort the tiles to be in a 
          * proper sequence. 
          */
-        //Reason why using Arrays.sort(Object[] array) instead of Collection.sort(List list):
-        //1)Collection.sort(..) may provoke ConcurrentModificationException
-        //2)Collection.sort(..) may affect the running of endAbsorbing() by shuffling the indices of tileList
-        Object[] tileArray = tileList.toArray();
-        Arrays.sort(tileArray);
-        for (Object tileObj : tileArray)
+        //The tiles are copied into an array to be sorted, so that tiles removed during this step are still handled.
+        //they are mostly in order since the last step, which Arrays.sort(..) handles in about linear time
+        Tile[] tileArray = tilesInUpdateOrder;
+        int noOfTiles = 0;
+        for (int handle = arena.first(); handle != TileArena.NONE; handle = arena.next(handle))
+            tileArray[noOfTiles++] = tilesByHandle[handle];
+        Arrays.sort(tileArray, 0, noOfTiles);
+        for (int i = 0; i < noOfTiles; i++)
         {
-            Tile tile = (Tile)tileObj;
+            Tile tile = tileArray[i];
             if (tile == latestTile)
                 continue;
             if (!pausedWhenCallThis)
                 tile.updateCurrPosi();
-            Integer value = tile.getValue();
-            Image tileImg = tilesImgMap.get(value);
-            console.drawImage(tile.getCurrPosi().getLeft(),tile.getCurrPosi().getTop(),tileImg); //display tiles
         }
-        //display next tile's value
-        console.drawText(NEXT_VALUE_LEFT,NEXT_VALUE_BOTTOM,String.valueOf(nextValue), 
-                        new Font(null,3,26), new Color(0x00,0x00,0x00,0xFF));
-        //display mode
-        if (mode == EASY_MODE) 
-            console.drawText(MODE_LEFT,MODE_BOTTOM,"Easy", 
-                            new Font(null,2,26), new Color(0x00,0x88,0x88,0xFF));
-        else if (mode == HARD_MODE)
-            console.drawText(MODE_LEFT,MODE_BOTTOM,"HARD", 
-                            new Font(null,3,28), new Color(0xFF,0x00,0x00,0xFF));
-        //having the latestTile's image drawn in the end so that it won't be covered by the others.
-        console.drawImage(  latestTile.getCurrPosi().getLeft(),
-                            latestTile.getCurrPosi().getTop(),
-                            tilesImgMap.get(latestTile.getValue())); //display tiles
+        noOfTilesInUpdateOrder = noOfTiles;
+        arena.releaseRemoved(); //the handles of tiles absorbed in this step may be given to new tiles from now on
 
         if (!pausedWhenCallThis)
-            frameCount++;
+            frameCount++; //counted by step, as settled tiles fall at the step when tileBeingCtrled does
+    }
+    /**
+     * Copy the tiles, as of the last update(), into the snapshot.
+     * The HUD numbers owned by TileList, i.e. next value & mode, are copied as well.
+     */
+    public void fillSnapshot(BoardSnapshot snapshot)
+    {
+        snapshot.clearTiles();
+        for (int i = 0; i < noOfTilesInUpdateOrder; i++)
+        {
+            Tile tile = tilesInUpdateOrder[i];
+            if (tile == latestTile)
+                continue;
+            snapshot.addTile(tile.getCurrPosi().getLeft(), tile.getCurrPosi().getTop(), tile.getValue());
+        }
+        //having the latestTile added in the end so that it won't be covered by the others when drawn.
+        snapshot.addTile(latestTile.getCurrPosi().getLeft(), latestTile.getCurrPosi().getTop(), latestTile.getValue());
+        snapshot.setNextValue(nextValue);
+        snapshot.setMode(mode);
+    }
+    public int getNoOfTiles()
+    {
+        return arena.size();
     }
     public int getHighestValue()
     {
@@ -1059,9 +1258,16 @@ class TileList
     public void cleanToReuse()
     {
         setMode(EASY_MODE);
-        tileList.clear();
-        tileList = new ArrayList<Tile>(MAX_NO_TILES);
+        arena.clear();
+        Arrays.fill(gridTiles, null);
+        Arrays.fill(gridCounts, 0);
+        noOfTilesInUpdateOrder = 0;
+        seed = System.currentTimeMillis();
+        randomer.setSeed(seed);
+        if (recorder != null)
+            recorder.gameStarted(seed, mode, noOfAbsorptions);
         nextValue = getRandomValue();
+        latestTile = null;
         createNextTile();
         scorer.cleanToReuse();
         frameCount = 0;
@@ -1070,6 +1276,21 @@ class TileList
         highestValue = 0;
         exceededUpperBoundary = false;
     }
+    /**
+     * Telemetry of the game starts from the current tile. see GameRecorder
+     */
+    public void setRecorder(GameRecorder recorder)
+    {
+        this.recorder = recorder;
+        recorder.gameStarted(seed, mode, noOfAbsorptions);
+        recorder.tileSpawned(latestTile.getValue());
+    }
+    public void recordGameEnd(boolean won)
+    {
+        if (recorder != null)
+            recorder.gameEnded(won, scorer.getCurrScore(), noOfAbsorptions);
+    }
+    public long getSeed() { return seed; }
     //for test only
     public boolean testBySetNextValue(int i)
     {
@@ -1081,15 +1302,21 @@ class TileList
         nextValueListOn = true;
         this.nextValueList = nextValueList;
         nextValue = nextValueList[nextValueListCounter++];
-        tileList.remove(tileList.indexOf(latestTile));
+        arena.remove(latestTile.handle);
+        arena.releaseRemoved();
+        unlistTile(latestTile);
+        latestTile = null; //the tile removed was never placed
         createNextTile();
     }
     //
     //**  END of public methods  **//
     
-    //for class, AIPlayer, only
+    //for the AI players only
     ArrayList<Tile> getTileList()
     {
-        return new ArrayList(tileList); //return a clone to avoid concurrent modification to "tileList"
+        ArrayList<Tile> tiles = new ArrayList<Tile>(arena.size()); //a list of its own, so that the caller may sort it
+        for (int handle = arena.first(); handle != TileArena.NONE; handle = arena.next(handle))
+            tiles.add(tilesByHandle[handle]);
+        return tiles;
     }
 }
\ No newline at end of file
@@ -0,0 +1,197 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package Tetris2048;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The results of searches, shared by every thread searching, without any lock.
+ *
+ * An entry is 2 longs in one long[]: the key XOR the data, & the data. A thread may read an entry
+ * while another writes it, or 2 threads may write it at once, leaving the key of one & the data of the other.
+ * Either way, the key read back XOR the data read no longer gives the key probed, so a torn entry is a miss,
+ * never a wrong result. No entry is ever locked or compared-and-set.
+ *
+ * Entries are in buckets of BUCKET_SIZE, i.e. 64 bytes, one cache line. A store replaces, in its bucket:
+ * the entry of the same key, or else a free one, or else the one least worth keeping: of an older search, then shallower.
+ *
+ * Data packs:
+ *   bits 0-31    the value, as float bits
+ *   bits 32-39   the depth searched
+ *   bits 40-47   the best column
+ *   bits 48-55   the age, i.e. the search which stored it, see newSearch()
+ *   bit 56       set for a stored entry, so that no entry is all 0
+ *
+ * @author ILoveIdunna
+ */
+class TranspositionTable
+{
+    static final String MEMORY_MB_PROPERTY = "tetris2048.ai.tt.mb";   //memory budget of the table. 64 by default
+    static final int DEFAULT_MEMORY_MB = 64;
+    static final long MISS = 0;
+    static final int STORED = 0, REPLACED = 1, LOST = 2;               //results of store(..)
+    private static final int BUCKET_SIZE = 4;                          //entries
+    private static final long USED_BIT = 1L << 56;
+    private static final long MAX_NO_BUCKETS = 1L << 27;               //i.e. 8GB, as many longs as an array holds
+
+    private final long[] entries;       //key ^ data, data, ..
+    private final int bucketMask;
+    private volatile int age;
+    //**instrumentation, counted by the searchers & added up once per search, see addCounts(..)
+    private final AtomicLong noOfProbes, noOfHits, noOfStores, noOfReplacements, noOfLostStores;
+
+    /**
+     * @param memory_mb   rounded down to a power of 2 buckets
+     */
+    TranspositionTable(int memory_mb)
+    {
+        long noOfBuckets = Long.highestOneBit(Math.max(1, ((long) memory_mb << 20) / (16 * BUCKET_SIZE)));
+        noOfBuckets = Math.min(noOfBuckets, MAX_NO_BUCKETS);
+        entries = new long[(int) noOfBuckets * 2 * BUCKET_SIZE];
+        bucketMask = (int) noOfBuckets - 1;
+        noOfProbes = new AtomicLong();
+        noOfHits = new AtomicLong();
+        noOfStores = new AtomicLong();
+        noOfReplacements = new AtomicLong();
+        noOfLostStores = new AtomicLong();
+    }
+    static TranspositionTable fromSystemProperties()
+    {
+        return new TranspositionTable(Integer.getInteger(MEMORY_MB_PROPERTY, DEFAULT_MEMORY_MB));
+    }
+
+    //**  public methods  **//
+    //
+    /**
+     * @return   the data stored for the key, or MISS
+     */
+    public long probe(long key)
+    {
+        int first = firstOf(key);
+        for (int i = first; i < first + 2 * BUCKET_SIZE; i += 2)
+        {
+            long data = entries[i + 1];
+            if ((entries[i] ^ data) == key && data != 0)
+                return data;
+        }
+        return MISS;
+    }
+    /**
+     * @return   STORED, REPLACED if an entry of another key was replaced,
+     *           or LOST if the entry was overwritten by another thread at once
+     */
+    public int store(long key, float value, int depth, int bestCol)
+    {
+        int currAge = age;
+        long data = (Float.floatToRawIntBits(value) & 0xFFFFFFFFL) | ((long) (depth & 0xFF) << 32)
+                    | ((long) (bestCol & 0xFF) << 40) | ((long) (currAge & 0xFF) << 48) | USED_BIT;
+        int first = firstOf(key), victim = -1, victimWorth = Integer.MAX_VALUE;
+        boolean replacing = true;
+        for (int i = first; i < first + 2 * BUCKET_SIZE; i += 2)
+        {
+            long entryData = entries[i + 1];
+            if (entryData == 0 || (entries[i] ^ entryData) == key)
+            {
+                victim = i;
+                replacing = false;
+                break;
+            }
+            //an entry of an older search is worth less than any of this search, whatever its depth
+            int worth = depthOf(entryData) - 256 * ((currAge - ageOf(entryData)) & 0xFF);
+            if (worth < victimWorth)
+            {
+                victim = i;
+                victimWorth = worth;
+            }
+        }
+        entries[victim] = key ^ data;
+        entries[victim + 1] = data;
+        if ((entries[victim] ^ entries[victim + 1]) != key)
+            return LOST;
+        return replacing ? REPLACED : STORED;
+    }
+    //ages the entries stored so far, so that they are replaced before those of the new search
+    public void newSearch()
+    {
+        age = (age + 1) & 0xFF;
+    }
+    public void clear()
+    {
+        Arrays.fill(entries, 0);
+    }
+    public int getCapacity() { return entries.length / 2; }
+    public long getMemory_bytes() { return 8L * entries.length; }
+    //
+    //**  END of public methods  **//
+
+    //**  instrumentation  **//
+    //
+    public void addCounts(long probes, long hits, long stores, long replacements, long lostStores)
+    {
+        noOfProbes.addAndGet(probes);
+        noOfHits.addAndGet(hits);
+        noOfStores.addAndGet(stores);
+        noOfReplacements.addAndGet(replacements);
+        noOfLostStores.addAndGet(lostStores);
+    }
+    public long getNoOfProbes() { return noOfProbes.get(); }
+    public long getNoOfHits() { return noOfHits.get(); }
+    public long getNoOfStores() { return noOfStores.get(); }
+    //entries of another key replaced, i.e. how full the table is for the searches made
+    public long getNoOfReplacements() { return noOfReplacements.get(); }
+    //stores overwritten by another thread at once, i.e. the contention between the searchers
+    public long getNoOfLostStores() { return noOfLostStores.get(); }
+    //the share of the entries used, sampled from the first buckets
+    public double getFill()
+    {
+        int noOfSampled = Math.min(entries.length, 2 * 4096), noOfUsed = 0;
+        for (int i = 1; i < noOfSampled; i += 2)
+            if (entries[i] != 0)
+                noOfUsed++;
+        return 2.0 * noOfUsed / noOfSampled;
+    }
+    //as exported by GameMetrics, e.g. "ai.tt.hits"
+    public void register(MetricsRegistry registry)
+    {
+        registry.gauge("ai.tt.probes", new MetricsRegistry.Gauge() {
+            @Override
+            public long getValue() { return getNoOfProbes(); }
+        });
+        registry.gauge("ai.tt.hits", new MetricsRegistry.Gauge() {
+            @Override
+            public long getValue() { return getNoOfHits(); }
+        });
+        registry.gauge("ai.tt.stores", new MetricsRegistry.Gauge() {
+            @Override
+            public long getValue() { return getNoOfStores(); }
+        });
+        registry.gauge("ai.tt.replacements", new MetricsRegistry.Gauge() {
+            @Override
+            public long getValue() { return getNoOfReplacements(); }
+        });
+        registry.gauge("ai.tt.lostStores", new MetricsRegistry.Gauge() {
+            @Override
+            public long getValue() { return getNoOfLostStores(); }
+        });
+    }
+    //
+    //**  END of instrumentation  **//
+
+    //**  decoding of data  **//
+    //
+    static float valueOf(long data)  { return Float.intBitsToFloat((int) data); }
+    static int depthOf(long data)    { return (int) (data >>> 32) & 0xFF; }
+    static int bestColOf(long data)  { return (int) (data >>> 40) & 0xFF; }
+    static int ageOf(long data)      { return (int) (data >>> 48) & 0xFF; }
+    //
+    //**  END of decoding of data  **//
+
+    private int firstOf(long key)
+    {
+        return (((int) (key >>> 32) ^ (int) key) & bucketMask) * 2 * BUCKET_SIZE;
+    }
+}
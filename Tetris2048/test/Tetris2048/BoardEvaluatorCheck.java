@@ -0,0 +1,82 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package Tetris2048;
+
+import java.util.Random;
+
+/**
+ * Checks that BoardEvaluator counts the same within the long (SWAR) as cell by cell:
+ * java -cp ... Tetris2048.BoardEvaluatorCheck. Exits with 1 if any check fails, as a regression gate.
+ *
+ * Each board size fitting a long is checked on random boards, on which any cell holds any of 0-15,
+ * & on boards of the pairs the byte lanes get wrong first: equal cells, cells 1 apart, 0 against 15.
+ *
+ * @author ILoveIdunna
+ */
+class BoardEvaluatorCheck
+{
+    private static final int NO_OF_RANDOM_BOARDS = 1000000;
+    private static final int BATCH_SIZE = 16;       //as at the last ply of a search
+    private static final int[] EDGE_VALUES = {0, 1, 2, 14, 15};
+
+    private static int noOfFailures;
+
+    public static void main(String[] args)
+    {
+        Random random = new Random(2048);
+        for (int noOfRows = 2; noOfRows <= ColumnTable.MAX_NO_CELLS; noOfRows++)
+            for (int noOfCols = 1; noOfCols <= 16; noOfCols++)
+                if (Tablebase.fits(noOfRows, noOfCols))
+                    check(noOfRows, noOfCols, random);
+
+        System.out.println((noOfFailures == 0) ? "every check passed" : noOfFailures + " checks failed");
+        System.exit((noOfFailures == 0) ? 0 : 1);
+    }
+
+    private static void check(int noOfRows, int noOfCols, Random random)
+    {
+        //weights of powers of 2 apart, so that a count off by one in any feature changes the value
+        BoardEvaluator evaluator = new BoardEvaluator(noOfRows, noOfCols, 1, 256, -65536, true);
+        int noOfCells = (noOfRows - 1) * noOfCols;
+        String failure = null;
+        long[] boards = new long[BATCH_SIZE];
+        float[] values = new float[BATCH_SIZE];
+        for (int i = 0; failure == null && i < NO_OF_RANDOM_BOARDS; i++)
+        {
+            boards[i % BATCH_SIZE] = random.nextLong();
+            if (i % BATCH_SIZE == BATCH_SIZE - 1)
+                failure = checkBatch(evaluator, boards, values);
+        }
+        //every pair of edge values in every pair of cells, on a board of the other cells drawn at random
+        for (int cell = 0; failure == null && cell + 1 < noOfCells; cell++)
+            for (int lower : EDGE_VALUES)
+                for (int upper : EDGE_VALUES)
+                {
+                    long board = random.nextLong() & ~(0xFFL << (4 * cell));
+                    board |= ((long) lower << (4 * cell)) | ((long) upper << (4 * (cell + 1)));
+                    failure = (failure == null) ? checkBoard(evaluator, board) : failure;
+                }
+        System.out.println(String.format("%-32s %s", (noOfRows - 1) + "x" + noOfCols + " cells",
+                                         (failure == null) ? "pass" : "FAIL: " + failure));
+        noOfFailures += (failure == null) ? 0 : 1;
+    }
+    private static String checkBatch(BoardEvaluator evaluator, long[] boards, float[] values)
+    {
+        evaluator.evaluate(boards, boards.length, values);
+        for (int i = 0; i < boards.length; i++)
+            if (values[i] != evaluator.evaluateByCells(boards[i]))
+                return "board " + Long.toHexString(boards[i]) + " evaluated " + values[i] + " in a batch, "
+                       + evaluator.evaluateByCells(boards[i]) + " cell by cell";
+        return null;
+    }
+    private static String checkBoard(BoardEvaluator evaluator, long board)
+    {
+        if (evaluator.evaluate(board) != evaluator.evaluateByCells(board))
+            return "board " + Long.toHexString(board) + " evaluated " + evaluator.evaluate(board) + ", "
+                   + evaluator.evaluateByCells(board) + " cell by cell";
+        return null;
+    }
+}
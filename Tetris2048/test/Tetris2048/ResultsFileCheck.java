@@ -0,0 +1,106 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package Tetris2048;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * Checks that a results file is appended to after a run stopped while writing a block:
+ * java -cp ... Tetris2048.ResultsFileCheck. Exits with 1 if any check fails, as a regression gate.
+ *
+ * Each check writes a file of ResultsWriter, cuts some bytes off its end as a killed run would leave it,
+ * appends rows by another ResultsWriter, & reads the file back by ResultsReader, row by row.
+ *
+ * @author ILoveIdunna
+ */
+class ResultsFileCheck
+{
+    private static final int NO_OF_ROWS = 70000;            //a whole block & one cut short
+    private static final long APPENDED_FIRST_SEED = 1000000;
+    private static final int NO_OF_APPENDED_ROWS = 1000;
+
+    private static int noOfFailures;
+
+    public static void main(String[] args) throws IOException
+    {
+        File file = File.createTempFile("results", ".bin");
+        file.deleteOnExit();
+        //a block cut within its columns, within its header, & none
+        long lastBlockStart = write(file, NO_OF_ROWS);
+        check("block cut within its columns", file, file.length() - 100, ResultsWriter.BLOCK_SIZE);
+        write(file, NO_OF_ROWS);
+        check("block cut within its header", file, lastBlockStart + 5, ResultsWriter.BLOCK_SIZE);
+        write(file, NO_OF_ROWS);
+        check("no block cut", file, file.length(), NO_OF_ROWS);
+
+        System.out.println((noOfFailures == 0) ? "every check passed" : noOfFailures + " checks failed");
+        System.exit((noOfFailures == 0) ? 0 : 1);
+    }
+
+    //writes the rows of seeds 0.. to a new file
+    //@return   the position of the last block
+    private static long write(File file, int noOfRows) throws IOException
+    {
+        file.delete();
+        ResultsWriter writer = new ResultsWriter(file);
+        for (int seed = 0; seed < noOfRows; seed++)
+        {
+            add(writer, seed);
+            if (seed == noOfRows - noOfRows % ResultsWriter.BLOCK_SIZE - 1)
+                writer.flush();
+        }
+        long lastBlockStart = file.length();
+        writer.close();
+        return lastBlockStart;
+    }
+    //cuts the file to "length", appends rows, & checks the rows read are those kept then those appended
+    private static void check(String name, File file, long length, int noOfRowsKept) throws IOException
+    {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.setLength(length);
+        raf.close();
+        ResultsWriter writer = new ResultsWriter(file);
+        for (int i = 0; i < NO_OF_APPENDED_ROWS; i++)
+            add(writer, APPENDED_FIRST_SEED + i);
+        writer.close();
+
+        String failure = null;
+        long noOfRows = 0;
+        ResultsReader reader = new ResultsReader(file);
+        try
+        {
+            while (failure == null && reader.nextBlock())
+            {
+                long[] seeds = reader.column(ResultsWriter.SEED), scores = reader.column(ResultsWriter.SCORE);
+                for (int row = 0; failure == null && row < reader.getNoOfRows(); row++, noOfRows++)
+                {
+                    long seed = (noOfRows < noOfRowsKept) ? noOfRows : APPENDED_FIRST_SEED + noOfRows - noOfRowsKept;
+                    if (seeds[row] != seed || scores[row] != scoreOf(seed))
+                        failure = "row " + noOfRows + " holds seed " + seeds[row] + ", " + seed + " expected";
+                }
+            }
+            if (failure == null && noOfRows != noOfRowsKept + NO_OF_APPENDED_ROWS)
+                failure = noOfRows + " rows read, " + (noOfRowsKept + NO_OF_APPENDED_ROWS) + " expected";
+        }
+        catch (IOException ex)
+        {
+            failure = ex.toString();
+        }
+        finally
+        {
+            reader.close();
+        }
+        System.out.println(String.format("%-32s %s", name, (failure == null) ? "pass" : "FAIL: " + failure));
+        noOfFailures += (failure == null) ? 0 : 1;
+    }
+    private static void add(ResultsWriter writer, long seed) throws IOException
+    {
+        writer.add(seed, "check", TileList.EASY_MODE, scoreOf(seed), 64, 50);
+    }
+    private static int scoreOf(long seed) { return (int) (seed * 7 % 1000); }
+}
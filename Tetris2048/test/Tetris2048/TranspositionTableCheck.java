@@ -0,0 +1,140 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package Tetris2048;
+
+import java.util.Random;
+
+/**
+ * Checks that what TranspositionTable stores for a key is probed back for that key only:
+ * java -cp ... Tetris2048.TranspositionTableCheck. Exits with 1 if any check fails, as a regression gate.
+ *
+ * The keys of a bucket are made by flipping the same bits in both halves of a key, which leaves its bucket as is.
+ *
+ * @author ILoveIdunna
+ */
+class TranspositionTableCheck
+{
+    private static final int MEMORY_MB = 1;
+    private static final int ONE_BUCKET_MB = 0;     //rounded to 1 bucket
+    private static final int NO_OF_KEYS = 10000;
+    private static final int BUCKET_SIZE = 4;       //as of TranspositionTable
+
+    private static int noOfFailures;
+
+    public static void main(String[] args)
+    {
+        Random random = new Random(2048);
+        check("stored data probed back", storedProbedBack(random));
+        check("other keys of a bucket miss", otherKeysMiss(random));
+        check("older search replaced first", olderSearchReplaced(random));
+        check("cleared table misses", clearedMisses(random));
+
+        System.out.println((noOfFailures == 0) ? "every check passed" : noOfFailures + " checks failed");
+        System.exit((noOfFailures == 0) ? 0 : 1);
+    }
+
+    //any value, depth, column & age, of keys far apart in the table
+    private static String storedProbedBack(Random random)
+    {
+        TranspositionTable table = new TranspositionTable(MEMORY_MB);
+        for (int i = 0; i < NO_OF_KEYS; i++)
+        {
+            long key = random.nextLong();
+            float value = (i == 0) ? 0 : (float) random.nextGaussian() * 1000;  //all 0 but the used bit, first
+            int depth = random.nextInt(256), bestCol = random.nextInt(256), age = random.nextInt(256);
+            for (int j = 0; j < age; j++)
+                table.newSearch();
+            table.store(key, value, depth, bestCol);
+            long data = table.probe(key);
+            if (data == TranspositionTable.MISS)
+                return "key " + Long.toHexString(key) + " missed";
+            if (TranspositionTable.valueOf(data) != value || TranspositionTable.depthOf(data) != depth
+                || TranspositionTable.bestColOf(data) != bestCol || TranspositionTable.ageOf(data) != age)
+                return "key " + Long.toHexString(key) + " stored " + value + "/" + depth + "/" + bestCol + "/" + age
+                       + ", probed " + TranspositionTable.valueOf(data) + "/" + TranspositionTable.depthOf(data) + "/"
+                       + TranspositionTable.bestColOf(data) + "/" + TranspositionTable.ageOf(data);
+            for (int j = age; j < 256; j++)
+                table.newSearch();      //back to age 0
+        }
+        return null;
+    }
+    //a key of the same bucket, stored or not, never probes the data of another
+    private static String otherKeysMiss(Random random)
+    {
+        TranspositionTable table = new TranspositionTable(ONE_BUCKET_MB);
+        for (int i = 0; i < NO_OF_KEYS; i++)
+        {
+            table.clear();
+            long key = random.nextLong();
+            table.store(key, 1, 1, 1);
+            for (int bit = 0; bit < 32; bit++)
+            {
+                long otherKey = sameBucketKey(key, bit);
+                if (table.probe(otherKey) != TranspositionTable.MISS)
+                    return "key " + Long.toHexString(otherKey) + " probed the data of " + Long.toHexString(key);
+            }
+            table.store(sameBucketKey(key, i % 32), 2, 2, 2);
+            if (TranspositionTable.valueOf(table.probe(key)) != 1)
+                return "key " + Long.toHexString(key) + " lost by storing another of its bucket";
+        }
+        return null;
+    }
+    //a bucket full of entries of an older search takes one of this search in place of its shallowest
+    private static String olderSearchReplaced(Random random)
+    {
+        TranspositionTable table = new TranspositionTable(MEMORY_MB);
+        long key = random.nextLong();
+        for (int i = 0; i < BUCKET_SIZE; i++)
+            if (table.store(sameBucketKey(key, i), i, 10 + i, 0) != TranspositionTable.STORED)
+                return "entry " + i + " of a free bucket not stored";
+        if (table.store(sameBucketKey(key, BUCKET_SIZE), 0, 20, 0) != TranspositionTable.REPLACED)
+            return "no entry replaced in a full bucket";
+        if (table.probe(sameBucketKey(key, 0)) != TranspositionTable.MISS)
+            return "the shallowest entry kept";
+        //all older now: the shallowest, of depth 11, goes for one shallower still
+        table.newSearch();
+        if (table.store(sameBucketKey(key, BUCKET_SIZE + 1), 0, 1, 0) != TranspositionTable.REPLACED)
+            return "no entry replaced in a full bucket, by a new search";
+        if (table.probe(sameBucketKey(key, 1)) != TranspositionTable.MISS)
+            return "the shallowest entry of the older search kept";
+        for (int i = 2; i <= BUCKET_SIZE + 1; i++)
+            if (table.probe(sameBucketKey(key, i)) == TranspositionTable.MISS)
+                return "entry " + i + " lost";
+        //an entry of the older search goes, however deep, before the shallow one of this search
+        if (table.store(sameBucketKey(key, BUCKET_SIZE + 2), 0, 5, 0) != TranspositionTable.REPLACED)
+            return "no entry replaced in a full bucket, by a new search";
+        if (table.probe(sameBucketKey(key, 2)) != TranspositionTable.MISS
+            || table.probe(sameBucketKey(key, BUCKET_SIZE + 1)) == TranspositionTable.MISS)
+            return "an entry of this search replaced before one of the older search";
+        return null;
+    }
+    private static String clearedMisses(Random random)
+    {
+        TranspositionTable table = new TranspositionTable(MEMORY_MB);
+        long[] keys = new long[NO_OF_KEYS];
+        for (int i = 0; i < NO_OF_KEYS; i++)
+        {
+            keys[i] = random.nextLong();
+            table.store(keys[i], 0, 0, 0);
+        }
+        table.clear();
+        for (long key : keys)
+            if (table.probe(key) != TranspositionTable.MISS)
+                return "key " + Long.toHexString(key) + " probed after clear()";
+        return null;
+    }
+
+    //the same bucket, as the bit is flipped in both halves
+    private static long sameBucketKey(long key, int bit)
+    {
+        return key ^ (1L << bit) ^ (1L << (32 + bit));
+    }
+    private static void check(String name, String failure)
+    {
+        System.out.println(String.format("%-32s %s", name, (failure == null) ? "pass" : "FAIL: " + failure));
+        noOfFailures += (failure == null) ? 0 : 1;
+    }
+}